@@ -0,0 +1,147 @@
+package com.inventario.inventario.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.inventario.inventario.admision.AdmisionFilter;
+
+// prueba de carga en sobrecarga: CLIENTES_CATALOGO clientes piden sin pausa el listado completo mientras se mide
+// la distribucion de latencia (p99 en la salida de SampleTime) de una reserva de stock, con y sin control de
+// admision. La latencia de MySQL se simula con LatenciaBdInspector y el pool de conexiones es chico, asi los
+// listados saturan la base y sin admision ocupan todos los hilos de Tomcat esperando conexion. Un cliente
+// rechazado espera un poco antes de reintentar; al terminar se muestran las requests servidas y rechazadas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class AdmisionBenchmark {
+
+    private static final int CLIENTES_CATALOGO = 300;
+
+    private static final int CATALOGO = 1000;
+
+    @Param({ "false", "true" })
+    private boolean admision;
+
+    @Param({ "20" })
+    private long latenciaMs;
+
+    private ConfigurableApplicationContext contexto;
+
+    private ExecutorService clientes;
+
+    private final AtomicBoolean activo = new AtomicBoolean(true);
+
+    private final AtomicLong listadosServidos = new AtomicLong();
+
+    private final AtomicLong listadosRechazados = new AtomicLong();
+
+    private final AtomicLong reservasRechazadas = new AtomicLong();
+
+    private final AtomicLong reservas = new AtomicLong();
+
+    private URL catalogo;
+
+    private URL reserva;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        LatenciaBdInspector.latenciaMs = latenciaMs;
+        contexto = ContextoBenchmark.iniciarServidor(
+                "inventario.admision.habilitado=" + admision,
+                // se mide el limite de concurrencia, no la tasa de un cliente: todos salen de localhost
+                "inventario.admision.tasa-por-cliente=100000",
+                "inventario.admision.rafaga-por-cliente=100000",
+                "server.tomcat.threads.max=200",
+                "spring.datasource.hikari.maximum-pool-size=10",
+                "spring.datasource.hikari.connection-timeout=30000",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                        + LatenciaBdInspector.class.getName());
+        ContextoBenchmark.poblar(contexto, CATALOGO);
+        contexto.getBean(JdbcTemplate.class).update("update producto set stock = 1000000000");
+
+        String base = "http://localhost:" + ((WebServerApplicationContext) contexto).getWebServer().getPort();
+        catalogo = URI.create(base + "/api/v1/productos").toURL();
+        reserva = URI.create(base + "/api/v1/productos/id/1/reserve?cantidad=1").toURL();
+
+        clientes = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < CLIENTES_CATALOGO; i++) {
+            String cliente = "catalogo-" + i;
+            clientes.submit(() -> {
+                while (activo.get()) {
+                    if (pedir(catalogo, "GET", cliente) / 100 == 2) {
+                        listadosServidos.incrementAndGet();
+                    } else {
+                        listadosRechazados.incrementAndGet();
+                        Thread.sleep(50);
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        activo.set(false);
+        clientes.close();
+        contexto.close();
+        System.out.printf("%nlistados servidos %d, rechazados %d; reservas %d, rechazadas %d%n",
+                listadosServidos.get(), listadosRechazados.get(), reservas.get(), reservasRechazadas.get());
+    }
+
+    @Benchmark
+    public int reservar() {
+        int estado = pedir(reserva, "POST", "checkout");
+        reservas.incrementAndGet();
+        if (estado / 100 != 2) {
+            reservasRechazadas.incrementAndGet();
+        }
+        return estado;
+    }
+
+    private static int pedir(URL url, String metodo, String cliente) {
+        try {
+            HttpURLConnection conexion = (HttpURLConnection) url.openConnection();
+            conexion.setRequestMethod(metodo);
+            conexion.setRequestProperty(AdmisionFilter.CABECERA_CLIENTE, cliente);
+            int estado = conexion.getResponseCode();
+            try (InputStream cuerpo = estado < 400 ? conexion.getInputStream() : conexion.getErrorStream()) {
+                if (cuerpo != null) {
+                    cuerpo.readAllBytes();
+                }
+            }
+            return estado;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.inventario.inventario.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.h2.Driver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// tiempo hasta la primera respuesta de un proceso nuevo, como un pod que se suma en un pico: se lanza el jar del
+// perfil arranque (con sus dependencias en target/dependency) sobre una base H2 en archivo que ya tiene el
+// esquema, y se mide hasta la primera respuesta 2xx de GET /api/v1/productos.
+//  - actual: el arranque de antes, ddl-auto=update comparando el esquema y springdoc cargado
+//  - migraciones: perfil prod, Flyway solo verifica su historial, sin validar el esquema ni springdoc
+//  - aot: lo anterior con el contexto generado al compilar (spring.aot.enabled)
+//  - aot-cds: lo anterior con las clases cargadas del archivo CDS que deja la iteracion de calentamiento
+// Requiere empaquetar con los dos perfiles:
+// mvn -Pbenchmark,arranque package -DskipTests exec:exec -Djmh.args="Arranque"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArranqueBenchmark {
+
+    private static final Path DIRECTORIO = Path.of("target", "arranque");
+
+    private static final long ESPERA_MAXIMA_MS = 120_000;
+
+    @Param({ "actual", "migraciones", "aot", "aot-cds" })
+    private String modo;
+
+    private String classpath;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path jar;
+        try (Stream<Path> archivos = Files.list(Path.of("target"))) {
+            jar = archivos.filter(archivo -> archivo.getFileName().toString().matches("inventario-.*(?<!-exec)\\.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("falta el jar: empaquetar con -Pbenchmark,arranque"));
+        }
+        Files.createDirectories(DIRECTORIO);
+        // H2 es de las pruebas: no esta entre las dependencias del jar
+        String h2 = Path.of(Driver.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        classpath = jar + File.pathSeparator + h2;
+    }
+
+    @Benchmark
+    public long primeraRespuesta() throws Exception {
+        int puerto;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puerto = socket.getLocalPort();
+        }
+        long inicio = System.nanoTime();
+        Process proceso = new ProcessBuilder(comando(puerto))
+                .redirectErrorStream(true)
+                .redirectOutput(DIRECTORIO.resolve(modo + ".log").toFile())
+                .start();
+        try {
+            URL catalogo = URI.create("http://localhost:" + puerto + "/api/v1/productos").toURL();
+            while (!responde(catalogo)) {
+                if (!proceso.isAlive() || System.nanoTime() - inicio > TimeUnit.MILLISECONDS.toNanos(ESPERA_MAXIMA_MS)) {
+                    throw new IllegalStateException("la aplicacion no arranco, ver " + DIRECTORIO.resolve(modo + ".log"));
+                }
+                Thread.sleep(5);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        } finally {
+            // salida ordenada: con aot-cds la JVM escribe el archivo al terminar
+            proceso.destroy();
+            proceso.waitFor();
+        }
+    }
+
+    private List<String> comando(int puerto) {
+        List<String> comando = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        if (modo.equals("aot-cds")) {
+            comando.add("-XX:SharedArchiveFile=" + DIRECTORIO.resolve("inventario.jsa"));
+            comando.add("-XX:+AutoCreateSharedArchive");
+        }
+        if (modo.startsWith("aot")) {
+            comando.add("-Dspring.aot.enabled=true");
+        }
+        comando.addAll(List.of("-cp", classpath, "com.inventario.inventario.InventarioApplication",
+                "--server.port=" + puerto,
+                "--spring.main.banner-mode=off",
+                // una base por modo, que la iteracion de calentamiento deja con el esquema creado
+                "--spring.datasource.url=jdbc:h2:file:./" + DIRECTORIO.resolve(modo.equals("actual") ? "actual" : "prod")
+                        + ";MODE=MySQL;IGNORE_UNKNOWN_SETTINGS=TRUE",
+                "--spring.datasource.username=sa",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                "--inventario.stock.memoria.directorio=" + DIRECTORIO.resolve("diario-stock")));
+        if (modo.equals("actual")) {
+            comando.add("--spring.flyway.enabled=false");
+            comando.add("--spring.jpa.hibernate.ddl-auto=update");
+        } else {
+            comando.add("--spring.profiles.active=prod");
+        }
+        return comando;
+    }
+
+    private static boolean responde(URL url) throws IOException {
+        HttpURLConnection conexion = (HttpURLConnection) url.openConnection();
+        try {
+            return conexion.getResponseCode() / 100 == 2;
+        } catch (ConnectException e) {
+            return false;
+        } finally {
+            conexion.disconnect();
+        }
+    }
+}
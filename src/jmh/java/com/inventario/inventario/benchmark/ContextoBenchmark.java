@@ -0,0 +1,61 @@
+package com.inventario.inventario.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.inventario.inventario.InventarioApplication;
+import com.inventario.inventario.model.Producto;
+
+// arranca la aplicacion sin servidor web sobre la base H2 en memoria de src/test/resources,
+// para que los benchmarks corran sin MySQL y den numeros comparables entre maquinas
+final class ContextoBenchmark {
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext iniciar(String... propiedades) {
+        return iniciar(WebApplicationType.NONE, propiedades);
+    }
+
+    // arranca tambien Tomcat en un puerto libre, para benchmarks que pasan por HTTP
+    static ConfigurableApplicationContext iniciarServidor(String... propiedades) {
+        List<String> configuracion = new ArrayList<>(List.of(propiedades));
+        configuracion.add("server.port=0");
+        return iniciar(WebApplicationType.SERVLET, configuracion.toArray(new String[0]));
+    }
+
+    // las propiedades del benchmark se pasan como argumentos de linea de comandos para que prevalezcan
+    // sobre el application.properties de las pruebas
+    private static ConfigurableApplicationContext iniciar(WebApplicationType tipo, String... propiedades) {
+        String[] argumentos = Stream.of(propiedades).map(propiedad -> "--" + propiedad).toArray(String[]::new);
+
+        return new SpringApplicationBuilder(InventarioApplication.class)
+                .web(tipo)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run(argumentos);
+    }
+
+    // carga 'cantidad' productos con un batch JDBC; los ids quedan de 1 a cantidad en una base vacia
+    static void poblar(ConfigurableApplicationContext contexto, int cantidad) {
+        List<Object[]> filas = new ArrayList<>(cantidad);
+        for (int i = 1; i <= cantidad; i++) {
+            filas.add(new Object[] { true, "Perfume " + i, 10000L + i, 1000, "Marca " + (i % 50), (long) i });
+        }
+        contexto.getBean(JdbcTemplate.class).batchUpdate(
+                "insert into producto (activo, nombre, precio, stock, marca, version) values (?, ?, ?, ?, ?, ?)", filas);
+    }
+
+    static List<Producto> catalogo(int cantidad) {
+        List<Producto> productos = new ArrayList<>(cantidad);
+        for (long id = 1; id <= cantidad; id++) {
+            productos.add(new Producto(id, true, "Perfume " + id, 10000L + id, (int) (id % 100), "Marca " + (id % 50)));
+        }
+        return productos;
+    }
+}
@@ -0,0 +1,119 @@
+package com.inventario.inventario.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// prueba de carga HTTP: requests por segundo con CONCURRENCIA clientes simultaneos pidiendo una pagina del
+// catalogo, con hilos de plataforma (threads.max=hilosTomcat) frente a hilos virtuales. La latencia de MySQL se
+// simula con LatenciaBdInspector y el pool de conexiones es mayor que el de hilos, para que el limite
+// observado sea el de hilos de Tomcat y no el de conexiones. Con pocos nucleos ambos modos quedan limitados
+// por CPU salvo con latencias altas; subir latenciaMs para ver el techo de hilos
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HilosVirtualesBenchmark {
+
+    private static final int CONCURRENCIA = 1000;
+
+    @Param({ "false", "true" })
+    private boolean hilosVirtuales;
+
+    @Param({ "5", "100" })
+    private long latenciaMs;
+
+    // techo de hilos de plataforma; no aplica con hilos virtuales
+    @Param({ "200" })
+    private int hilosTomcat;
+
+    private ConfigurableApplicationContext contexto;
+
+    private ExecutorService clientes;
+
+    private URL pagina;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LatenciaBdInspector.latenciaMs = latenciaMs;
+        contexto = ContextoBenchmark.iniciarServidor(
+                "inventario.hilos-virtuales.habilitado=" + hilosVirtuales,
+                "server.tomcat.threads.max=" + hilosTomcat,
+                "server.tomcat.max-connections=" + (CONCURRENCIA * 2),
+                "server.tomcat.accept-count=" + CONCURRENCIA,
+                "spring.datasource.hikari.maximum-pool-size=" + CONCURRENCIA,
+                "spring.datasource.hikari.connection-timeout=30000",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                        + LatenciaBdInspector.class.getName());
+        ContextoBenchmark.poblar(contexto, 1_000);
+
+        int puerto = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+        // cada cliente es un hilo virtual con una conexion HTTP bloqueante (keep-alive reutilizado)
+        clientes = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            pagina = URI.create("http://localhost:" + puerto + "/api/v1/productos/page?size=20").toURL();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+        clientes.close();
+    }
+
+    // una rafaga de CONCURRENCIA requests simultaneas; el resultado se reporta por request
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCIA)
+    public int paginaConcurrente() throws Exception {
+        List<Callable<Integer>> requests = new ArrayList<>(CONCURRENCIA);
+        for (int i = 0; i < CONCURRENCIA; i++) {
+            requests.add(this::pedirPagina);
+        }
+        int bytes = 0;
+        for (Future<Integer> respuesta : clientes.invokeAll(requests)) {
+            bytes += respuesta.get();
+        }
+        return bytes;
+    }
+
+    private int pedirPagina() throws IOException {
+        HttpURLConnection conexion = (HttpURLConnection) pagina.openConnection();
+        if (conexion.getResponseCode() != 200) {
+            throw new IllegalStateException("status " + conexion.getResponseCode());
+        }
+        try (InputStream cuerpo = conexion.getInputStream()) {
+            return cuerpo.readAllBytes().length;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.inventario.inventario.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.inventario.inventario.dto.ResultadoImportacion;
+import com.inventario.inventario.service.ProductoImportService;
+
+// importacion CSV de 'filas' productos nuevos por operacion (filas por segundo = filas / tiempo por operacion)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImportacionBenchmark {
+
+    @Param({ "10000" })
+    private int filas;
+
+    private ConfigurableApplicationContext contexto;
+
+    private ProductoImportService productoImportService;
+
+    private byte[] archivo;
+
+    private int lote;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = ContextoBenchmark.iniciar();
+        productoImportService = contexto.getBean(ProductoImportService.class);
+    }
+
+    // cada operacion importa nombres nuevos para medir inserciones y no solo actualizaciones
+    @Setup(Level.Invocation)
+    public void prepararArchivo() {
+        lote++;
+        StringBuilder csv = new StringBuilder("nombre,marca,precio,stock,activo\n");
+        for (int i = 0; i < filas; i++) {
+            csv.append("Perfume ").append(lote).append('-').append(i).append(",Marca ").append(i % 50)
+                    .append(',').append(10000 + i).append(',').append(i % 100).append(",true\n");
+        }
+        archivo = csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public ResultadoImportacion importarCsv() throws IOException {
+        return productoImportService.importar(new ByteArrayInputStream(archivo), ProductoImportService.Formato.CSV);
+    }
+}
@@ -0,0 +1,21 @@
+package com.inventario.inventario.benchmark;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// simula la latencia de ida y vuelta a MySQL sobre la base H2 en memoria: cada sentencia espera unos
+// milisegundos con la conexion tomada, como lo haria el hilo bloqueado en el socket
+public class LatenciaBdInspector implements StatementInspector {
+
+    // lo fija el benchmark antes de arrancar el contexto
+    static volatile long latenciaMs = 5;
+
+    @Override
+    public String inspect(String sql) {
+        try {
+            Thread.sleep(latenciaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return sql;
+    }
+}
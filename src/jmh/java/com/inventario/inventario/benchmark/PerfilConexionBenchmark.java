@@ -0,0 +1,115 @@
+package com.inventario.inventario.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+
+import com.inventario.inventario.dto.FiltroProducto;
+import com.inventario.inventario.dto.ResultadoBusqueda;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.service.ProductoService;
+
+// configuracion por defecto frente al perfil prod (pool, cache de sentencias, planes de Hibernate) con clientes
+// concurrentes: lecturas por id sin cache, busquedas filtradas y reservas. Sobre H2 solo cuentan el pool y
+// Hibernate (H2 ignora las propiedades del driver MySQL); para medir el driver se pasa una base MySQL
+// desechable, que se recrea al arrancar: -Djmh.args="PerfilConexion -p url=jdbc:mysql://... -p usuario=..."
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class PerfilConexionBenchmark {
+
+    static final int CATALOGO = 10000;
+
+    private static final String URL_H2 =
+            "jdbc:h2:mem:db_inventario;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;IGNORE_UNKNOWN_SETTINGS=TRUE";
+
+    @Param({ "defecto", "prod" })
+    private String perfil;
+
+    @Param({ "" })
+    private String url;
+
+    @Param({ "sa" })
+    private String usuario;
+
+    @Param({ "" })
+    private String clave;
+
+    private ConfigurableApplicationContext contexto;
+
+    private ProductoService productoService;
+
+    private ProductoRepository productoRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> propiedades = new ArrayList<>(List.of(
+                "spring.datasource.url=" + (url.isEmpty() ? URL_H2 : url),
+                "spring.datasource.username=" + usuario,
+                "spring.datasource.password=" + clave));
+        if (!url.isEmpty()) {
+            propiedades.add("spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect");
+        }
+        if (perfil.equals("prod")) {
+            // el perfil prod no genera el esquema: lo crean las migraciones
+            propiedades.add("spring.profiles.active=prod");
+            propiedades.add("spring.flyway.enabled=true");
+        }
+        contexto = ContextoBenchmark.iniciar(propiedades.toArray(new String[0]));
+        ContextoBenchmark.poblar(contexto, CATALOGO);
+        productoService = contexto.getBean(ProductoService.class);
+        productoRepository = contexto.getBean(ProductoRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> consultaPorId() {
+        return productoRepository.findById(idAleatorio());
+    }
+
+    @Benchmark
+    public ResultadoBusqueda busqueda() {
+        FiltroProducto filtro = new FiltroProducto();
+        filtro.setMarca("Marca " + ThreadLocalRandom.current().nextInt(50));
+        return productoService.buscar(filtro, "precio", Sort.Direction.ASC, 0, 20);
+    }
+
+    @Benchmark
+    public void reserva() {
+        long id = idAleatorio();
+        productoService.reservarStock(id, 1);
+        productoService.liberarStock(id, 1);
+    }
+
+    private static long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, CATALOGO + 1);
+    }
+}
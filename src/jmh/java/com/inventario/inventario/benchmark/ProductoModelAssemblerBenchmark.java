@@ -0,0 +1,85 @@
+package com.inventario.inventario.benchmark;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.inventario.inventario.assemblers.ProductoModelAssembler;
+import com.inventario.inventario.controller.ProductoControllerV2;
+import com.inventario.inventario.model.Producto;
+
+// compara el assembler original (cuatro linkTo(methodOn(...)) por producto) con el actual,
+// que resuelve la URI base una vez por request; cada operacion arma el listado completo
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductoModelAssemblerBenchmark {
+
+    @Param({ "10000" })
+    private int productos;
+
+    private final ProductoModelAssembler productoAssembler = new ProductoModelAssembler();
+
+    private List<Producto> catalogo;
+
+    @Setup
+    public void setUp() {
+        catalogo = new ArrayList<>(productos);
+        for (long id = 1; id <= productos; id++) {
+            catalogo.add(new Producto(id, true, "Perfume " + id, 10000L + id, (int) (id % 100), "Marca " + (id % 50)));
+        }
+    }
+
+    @Benchmark
+    public List<EntityModel<Producto>> methodOnPorEnlace() {
+        nuevaRequest();
+        List<EntityModel<Producto>> resultado = new ArrayList<>(catalogo.size());
+        for (Producto producto : catalogo) {
+            EntityModel<Producto> resource = EntityModel.of(producto);
+            resource.add(linkTo(methodOn(ProductoControllerV2.class).findProducto(producto.getId(), null)).withSelfRel());
+            resource.add(linkTo(methodOn(ProductoControllerV2.class).updateProducto(producto.getId(), null)).withRel("update"));
+            resource.add(linkTo(methodOn(ProductoControllerV2.class).deleteProducto(producto.getId())).withRel("delete"));
+            resource.add(linkTo(methodOn(ProductoControllerV2.class).getProductos(null)).withRel("all-products"));
+            resultado.add(resource);
+        }
+        return resultado;
+    }
+
+    @Benchmark
+    public List<EntityModel<Producto>> baseResueltaPorRequest() {
+        nuevaRequest();
+        List<EntityModel<Producto>> resultado = new ArrayList<>(catalogo.size());
+        for (Producto producto : catalogo) {
+            resultado.add(productoAssembler.toModel(producto));
+        }
+        return resultado;
+    }
+
+    private static void nuevaRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v2/productos");
+        request.setServerPort(9000);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
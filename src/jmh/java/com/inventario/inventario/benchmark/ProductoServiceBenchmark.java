@@ -0,0 +1,99 @@
+package com.inventario.inventario.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.inventario.inventario.dto.ProductoResumen;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.service.ProductoService;
+
+// lecturas por id: a traves de ProductoService (con cache), directo al repositorio (una consulta por operacion)
+// y como proyeccion de resumen
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductoServiceBenchmark {
+
+    static final int CATALOGO = 10000;
+
+    @Param({ "10", "100", "1000" })
+    private int ids;
+
+    private ConfigurableApplicationContext contexto;
+
+    private ProductoService productoService;
+
+    private ProductoRepository productoRepository;
+
+    private List<Long> lote;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = ContextoBenchmark.iniciar();
+        ContextoBenchmark.poblar(contexto, CATALOGO);
+        productoService = contexto.getBean(ProductoService.class);
+        productoRepository = contexto.getBean(ProductoRepository.class);
+
+        lote = new ArrayList<>(ids);
+        for (long id = 1; id <= ids; id++) {
+            lote.add(id * (CATALOGO / ids));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Optional<Producto> findById() {
+        return productoService.findById(idAleatorio());
+    }
+
+    @Benchmark
+    public Optional<Producto> findByIdRepositorio() {
+        return productoRepository.findById(idAleatorio());
+    }
+
+    @Benchmark
+    public List<Producto> findAllById() {
+        return productoService.findAllById(lote);
+    }
+
+    @Benchmark
+    public List<Producto> findAllByIdRepositorio() {
+        return productoRepository.findAllById(lote);
+    }
+
+    // proyeccion id/precio/stock/activo en transaccion de solo lectura, sin entidades ni cache
+    @Benchmark
+    public List<ProductoResumen> findResumenByIds() {
+        return productoService.findResumenByIds(lote);
+    }
+
+    private static long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, CATALOGO + 1);
+    }
+}
@@ -0,0 +1,58 @@
+package com.inventario.inventario.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.inventario.inventario.stock.RuedaVencimientos;
+
+// un tic de la rueda de retenciones en regimen: 'pendientes' retenciones de 15 minutos repartidas en el tiempo,
+// y en cada tic de 1 s entran y vencen las de ese segundo. El costo por tic depende de las que vencen, no del total
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuedaVencimientosBenchmark {
+
+    private static final long RESOLUCION = 1000;
+
+    private static final int TICS_DURACION = 900;
+
+    @Param({ "10000", "500000" })
+    private int pendientes;
+
+    private RuedaVencimientos<Long> rueda;
+
+    private long ahora;
+
+    private long siguienteId;
+
+    @Setup
+    public void setUp() {
+        rueda = new RuedaVencimientos<>(4096, RESOLUCION, 0);
+        for (int i = 0; i < pendientes; i++) {
+            rueda.agregar(siguienteId++, (long) i * TICS_DURACION * RESOLUCION / pendientes);
+        }
+    }
+
+    @Benchmark
+    public int tic() {
+        ahora += RESOLUCION;
+        for (int i = 0; i < pendientes / TICS_DURACION; i++) {
+            rueda.agregar(siguienteId++, ahora + TICS_DURACION * RESOLUCION);
+        }
+        return rueda.avanzar(ahora).size();
+    }
+}
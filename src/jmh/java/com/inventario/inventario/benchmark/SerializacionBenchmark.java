@@ -0,0 +1,139 @@
+package com.inventario.inventario.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.hateoas.server.core.DelegatingLinkRelationProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.inventario.inventario.config.ProductosColumnaresConverter;
+import com.inventario.inventario.assemblers.ProductoModelAssembler;
+import com.inventario.inventario.model.Producto;
+
+// serializacion del listado completo: JSON plano de v1, HAL de v2 (assembler incluido), CBOR y JSON columnar,
+// con y sin gzip (nivel por defecto, el mismo que usa Tomcat). El tiempo es por listado; los bytes de cada
+// listado se imprimen al terminar cada combinacion
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializacionBenchmark {
+
+    @Param({ "10000" })
+    private int productos;
+
+    @Param({ "false", "true" })
+    private boolean gzip;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ObjectMapper halMapper = new ObjectMapper().registerModule(new Jackson2HalModule());
+
+    private final ProductoModelAssembler productoAssembler = new ProductoModelAssembler();
+
+    private final ObjectMapper cborMapper = new CBORMapper();
+
+    private final ProductosColumnaresConverter columnarConverter = new ProductosColumnaresConverter(objectMapper);
+
+    private List<Producto> catalogo;
+
+    // tamano del ultimo listado generado, informado al terminar cada benchmark
+    private int bytes;
+
+    @Setup
+    public void setUp() {
+        halMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                new DelegatingLinkRelationProvider(new DefaultLinkRelationProvider()), CurieProvider.NONE,
+                MessageResolver.DEFAULTS_ONLY));
+        catalogo = ContextoBenchmark.catalogo(productos);
+    }
+
+    @TearDown(Level.Trial)
+    public void informarBytes() {
+        System.out.printf("%n  bytes por listado (gzip=%s): %d%n", gzip, bytes);
+    }
+
+    @Benchmark
+    public byte[] listadoV1() throws IOException {
+        return medir(comprimir(objectMapper.writeValueAsBytes(catalogo)));
+    }
+
+    @Benchmark
+    public byte[] listadoV2() throws IOException {
+        return medir(comprimir(hal()));
+    }
+
+    @Benchmark
+    public byte[] listadoCbor() throws IOException {
+        return medir(comprimir(cborMapper.writeValueAsBytes(catalogo)));
+    }
+
+    @Benchmark
+    public byte[] listadoColumnar() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        columnarConverter.escribir(catalogo, salida);
+        return medir(comprimir(salida.toByteArray()));
+    }
+
+    private byte[] medir(byte[] cuerpo) {
+        bytes = cuerpo.length;
+        return cuerpo;
+    }
+
+    private byte[] comprimir(byte[] cuerpo) throws IOException {
+        if (!gzip) {
+            return cuerpo;
+        }
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(cuerpo.length / 4);
+        try (GZIPOutputStream comprimido = new GZIPOutputStream(salida)) {
+            comprimido.write(cuerpo);
+        }
+        return salida.toByteArray();
+    }
+
+    private byte[] hal() throws JsonProcessingException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v2/productos");
+        request.setServerPort(9000);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        List<EntityModel<Producto>> recursos = new ArrayList<>(catalogo.size());
+        for (Producto producto : catalogo) {
+            recursos.add(productoAssembler.toModel(producto));
+        }
+        String base = productoAssembler.baseProductos();
+        CollectionModel<EntityModel<Producto>> coleccion = CollectionModel.of(recursos,
+                Link.of(base).withSelfRel(), Link.of(base).withRel("create"));
+        return halMapper.writeValueAsBytes(coleccion);
+    }
+}
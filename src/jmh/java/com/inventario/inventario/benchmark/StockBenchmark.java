@@ -0,0 +1,74 @@
+package com.inventario.inventario.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.service.ProductoService;
+
+// descuentos concurrentes de stock sobre un mismo producto (SKU caliente), con el stock en la fila de producto,
+// repartido en 8 contadores independientes o en memoria con diario y escritura por detras. Sobre H2 la diferencia
+// entre los dos primeros es menor que en MySQL, donde cada descuento espera el bloqueo de fila hasta que la
+// transaccion anterior confirma
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class StockBenchmark {
+
+    @Param({ "fila", "fracciones", "memoria" })
+    private String modo;
+
+    private ConfigurableApplicationContext contexto;
+
+    private ProductoService productoService;
+
+    private Long productoCaliente;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        contexto = modo.equals("memoria")
+                ? ContextoBenchmark.iniciar("inventario.stock.memoria.habilitado=true",
+                        "inventario.stock.memoria.directorio=" + Files.createTempDirectory("diario-stock"))
+                : ContextoBenchmark.iniciar();
+        productoService = contexto.getBean(ProductoService.class);
+        productoCaliente = contexto.getBean(ProductoRepository.class)
+                .save(new Producto(null, true, "Perfume Lanzamiento", 50000L, Integer.MAX_VALUE, "Perfulandia"))
+                .getId();
+        if (modo.equals("fracciones")) {
+            productoService.fraccionarStock(productoCaliente, 8);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public ResultadoReserva reservarStock() {
+        return productoService.reservarStock(productoCaliente, 1);
+    }
+}
@@ -0,0 +1,189 @@
+package com.inventario.inventario.admision;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// control de admision delante de los controladores de /api: cada direccion remota tiene su cubeta de tokens
+// (la cabecera X-Cliente solo la reparte entre los clientes detras de esa direccion) y luego la request
+// necesita lugar en el LimiteAdaptativo segun su Prioridad. Lo rechazado falla enseguida sin tomar hilo ni
+// conexion: 429 si el cliente supero su tasa, 503 si no hay lugar, ambos con Retry-After. El feed de eventos
+// queda fuera: sus requests esperan cambios, no usan la base.
+public class AdmisionFilter extends OncePerRequestFilter {
+
+    public static final String CABECERA_CLIENTE = "X-Cliente";
+
+    private static final long DIRECCIONES_MAXIMO = 100_000;
+
+    // cada X-Cliente de una direccion tiene reservada esta fraccion de su tasa; un cliente que rota la cabecera
+    // no consigue reservas nuevas: pasado este numero solo usa la cubeta de la direccion
+    private static final int CLIENTES_POR_DIRECCION = 16;
+
+    private final LimiteAdaptativo limite;
+
+    private final Map<Prioridad, Double> fracciones;
+
+    private final double tasaPorCliente;
+
+    private final double rafagaPorCliente;
+
+    private final Cache<String, Direccion> direcciones = Caffeine.newBuilder()
+            .maximumSize(DIRECCIONES_MAXIMO)
+            .expireAfterAccess(Duration.ofMinutes(5))
+            .build();
+
+    private final MeterRegistry meterRegistry;
+
+    public AdmisionFilter(LimiteAdaptativo limite, double fraccionNormal, double fraccionBaja, double tasaPorCliente,
+            double rafagaPorCliente, MeterRegistry meterRegistry) {
+        this.limite = limite;
+        this.fracciones = new EnumMap<>(Map.of(Prioridad.CRITICA, 1.0, Prioridad.NORMAL, fraccionNormal,
+                Prioridad.BAJA, fraccionBaja));
+        this.tasaPorCliente = tasaPorCliente;
+        this.rafagaPorCliente = rafagaPorCliente;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = request.getRequestURI();
+        return !ruta.startsWith("/api/") || ruta.startsWith("/api/v1/productos/eventos");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain cadena)
+            throws ServletException, IOException {
+        Prioridad prioridad = Prioridad.de(request.getMethod(), request.getRequestURI());
+        long inicio = System.nanoTime();
+
+        long espera = direccion(request, inicio).tomar(request.getHeader(CABECERA_CLIENTE), inicio);
+        if (espera > 0) {
+            rechazar(response, HttpStatus.TOO_MANY_REQUESTS, espera, "cliente", prioridad);
+            return;
+        }
+        if (!limite.adquirir(fracciones.get(prioridad))) {
+            rechazar(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1), "limite", prioridad);
+            return;
+        }
+
+        // los listados completos tardan por su tamano, no por sobrecarga: no ajustan el limite
+        boolean muestra = prioridad != Prioridad.BAJA;
+        boolean asincrona = false;
+        try {
+            cadena.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // respuestas en streaming: el lugar se libera cuando termina de escribirse
+                request.getAsyncContext().addListener(new LiberarAlCompletar(inicio, muestra));
+                asincrona = true;
+            }
+        } finally {
+            if (!asincrona) {
+                limite.liberar(inicio, System.nanoTime(), muestra);
+            }
+        }
+    }
+
+    // la identidad es la direccion de la conexion (o la que resolvio un proxy de confianza, ver
+    // server.forward-headers-strategy): la cabecera la pone el cliente y no puede elegir la cubeta de otro
+    private Direccion direccion(HttpServletRequest request, long ahora) {
+        return direcciones.get(request.getRemoteAddr(), clave -> new Direccion(ahora));
+    }
+
+    private void rechazar(HttpServletResponse response, HttpStatus estado, long esperaNanos, String motivo,
+            Prioridad prioridad) {
+        response.setStatus(estado.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, (esperaNanos + 999_999_999) / 1_000_000_000)));
+        Counter.builder("inventario.admision.rechazos")
+                .description("Requests rechazadas por el control de admision")
+                .tag("motivo", motivo)
+                .tag("prioridad", prioridad.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // la cubeta de la direccion acota el total: toda request admitida la paga. Las reservas de los clientes
+    // suman a lo sumo esa misma tasa; una request que entra por la reserva de su cliente la paga igual en la
+    // cubeta de la direccion aunque la deje en deuda, asi un cliente que la vacio no deja sin lugar a los demas
+    private final class Direccion {
+
+        private final CubetaTokens total;
+
+        private final Map<String, CubetaTokens> reservas = new ConcurrentHashMap<>();
+
+        Direccion(long ahora) {
+            this.total = new CubetaTokens(tasaPorCliente, rafagaPorCliente, ahora);
+        }
+
+        // 0 si la request entra; si no, los nanosegundos que faltan para el proximo token de la direccion
+        long tomar(String cliente, long ahora) {
+            CubetaTokens reserva = reserva(cliente, ahora);
+            if (reserva != null && reserva.tomar(ahora) == 0) {
+                total.forzar(ahora);
+                return 0;
+            }
+            return total.tomar(ahora);
+        }
+
+        private CubetaTokens reserva(String cliente, long ahora) {
+            if (cliente == null || cliente.isBlank()) {
+                return null;
+            }
+            CubetaTokens reserva = reservas.get(cliente);
+            if (reserva != null || reservas.size() >= CLIENTES_POR_DIRECCION) {
+                return reserva;
+            }
+            return reservas.computeIfAbsent(cliente, clave -> new CubetaTokens(tasaPorCliente / CLIENTES_POR_DIRECCION,
+                    rafagaPorCliente / CLIENTES_POR_DIRECCION, ahora));
+        }
+    }
+
+    private final class LiberarAlCompletar implements AsyncListener {
+
+        private final long inicio;
+
+        private final boolean muestra;
+
+        LiberarAlCompletar(long inicio, boolean muestra) {
+            this.inicio = inicio;
+            this.muestra = muestra;
+        }
+
+        // tambien se llama despues de un error o de un timeout
+        @Override
+        public void onComplete(AsyncEvent evento) {
+            limite.liberar(inicio, System.nanoTime(), muestra);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent evento) {
+        }
+
+        @Override
+        public void onError(AsyncEvent evento) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent evento) {
+        }
+    }
+}
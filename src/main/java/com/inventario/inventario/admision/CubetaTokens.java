@@ -0,0 +1,41 @@
+package com.inventario.inventario.admision;
+
+// cubeta de tokens de un cliente: se recarga a 'tasa' tokens por segundo hasta acumular 'rafaga'
+public class CubetaTokens {
+
+    private final double tokensPorNano;
+
+    private final double rafaga;
+
+    private double tokens;
+
+    private long ultimaRecarga;
+
+    public CubetaTokens(double tasa, double rafaga, long ahora) {
+        this.tokensPorNano = tasa / 1_000_000_000d;
+        this.rafaga = rafaga;
+        this.tokens = rafaga;
+        this.ultimaRecarga = ahora;
+    }
+
+    // 0 si tomo un token; si no, los nanosegundos que faltan para el proximo
+    public synchronized long tomar(long ahora) {
+        recargar(ahora);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPorNano);
+    }
+
+    // toma un token aunque no haya: la deuda se paga con las recargas siguientes
+    public synchronized void forzar(long ahora) {
+        recargar(ahora);
+        tokens -= 1;
+    }
+
+    private void recargar(long ahora) {
+        tokens = Math.min(rafaga, tokens + (ahora - ultimaRecarga) * tokensPorNano);
+        ultimaRecarga = ahora;
+    }
+}
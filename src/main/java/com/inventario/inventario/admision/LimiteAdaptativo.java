@@ -0,0 +1,76 @@
+package com.inventario.inventario.admision;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// limite de requests concurrentes ajustado por AIMD segun la latencia observada: mientras las requests terminan
+// dentro de la latencia objetivo y el limite se esta usando crece de a uno por cada 'limite' requests, y cuando
+// una la supera se multiplica por el factor de reduccion. Las requests que empezaron antes de la ultima reduccion
+// no vuelven a reducirlo: su latencia es la del limite anterior. Cada admision puede usar solo una fraccion del
+// limite, asi las de menor prioridad quedan fuera antes que las criticas.
+public class LimiteAdaptativo {
+
+    private final int minimo;
+
+    private final int maximo;
+
+    private final long objetivoNanos;
+
+    private final double factorReduccion;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+
+    private volatile double limite;
+
+    // nanoTime de la ultima reduccion, protegido por this
+    private long ultimaReduccion;
+
+    public LimiteAdaptativo(int inicial, int minimo, int maximo, long objetivoNanos, double factorReduccion) {
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.objetivoNanos = objetivoNanos;
+        this.factorReduccion = factorReduccion;
+        this.limite = Math.max(minimo, Math.min(maximo, inicial));
+        this.ultimaReduccion = System.nanoTime();
+    }
+
+    // admite si las requests en curso no llegan a esta fraccion del limite (siempre al menos una)
+    public boolean adquirir(double fraccion) {
+        int tope = Math.max(1, (int) (limite * fraccion));
+        while (true) {
+            int actual = enCurso.get();
+            if (actual >= tope) {
+                return false;
+            }
+            if (enCurso.compareAndSet(actual, actual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // fin de una request admitida entre 'inicio' y 'fin' (nanoTime); sin 'muestra' no ajusta el limite
+    public void liberar(long inicio, long fin, boolean muestra) {
+        int enVuelo = enCurso.getAndDecrement();
+        if (!muestra) {
+            return;
+        }
+        synchronized (this) {
+            if (fin - inicio > objetivoNanos) {
+                if (inicio - ultimaReduccion > 0) {
+                    limite = Math.max(minimo, limite * factorReduccion);
+                    ultimaReduccion = fin;
+                }
+            } else if (enVuelo >= limite / 2) {
+                // sin uso no hay senal de que un limite mayor sirva
+                limite = Math.min(maximo, limite + 1 / limite);
+            }
+        }
+    }
+
+    public int limite() {
+        return (int) limite;
+    }
+
+    public int enCurso() {
+        return enCurso.get();
+    }
+}
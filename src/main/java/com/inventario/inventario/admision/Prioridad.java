@@ -0,0 +1,32 @@
+package com.inventario.inventario.admision;
+
+import java.util.regex.Pattern;
+
+// clase de prioridad de una request de la API: con el limite de concurrencia ocupado entran primero las
+// criticas (reservas, liberaciones, retenciones y consultas de un producto), luego las normales y por ultimo los
+// listados completos del catalogo y la importacion
+public enum Prioridad {
+    CRITICA,
+    NORMAL,
+    BAJA;
+
+    private static final Pattern STOCK = Pattern.compile("/api/v1/productos/id/\\d+/(reserve|release)");
+
+    private static final Pattern CONSULTA = Pattern.compile("/api/v[12]/productos(/resumen)?/id/\\d+");
+
+    private static final Pattern CATALOGO = Pattern.compile("/api/v[12]/productos/?|/api/v1/productos/(stream|import)");
+
+    public static Prioridad de(String metodo, String ruta) {
+        if (STOCK.matcher(ruta).matches() || ruta.startsWith("/api/v1/productos/retenciones")) {
+            return CRITICA;
+        }
+        if (metodo.equals("GET") && CONSULTA.matcher(ruta).matches()) {
+            return CRITICA;
+        }
+        // POST /api/v1/productos es un alta, no un listado
+        if (CATALOGO.matcher(ruta).matches() && (metodo.equals("GET") || ruta.endsWith("/import"))) {
+            return BAJA;
+        }
+        return NORMAL;
+    }
+}
@@ -1,31 +1,52 @@
 package com.inventario.inventario.assemblers;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import com.inventario.inventario.controller.ProductoControllerV2;
 import com.inventario.inventario.model.Producto;
 
+// Los enlaces de cada producto se arman concatenando el id sobre la URI base de ProductoControllerV2,
+// que se resuelve una sola vez por request. Produce los mismos href que linkTo(methodOn(...)) sin
+// crear un proxy ni volver a resolver el mapping por cada enlace.
 @Component
 public class ProductoModelAssembler implements RepresentationModelAssembler<Producto, EntityModel<Producto>> {
 
+    private static final String ATRIBUTO_BASE = ProductoModelAssembler.class.getName() + ".base";
+
     @Override
     public EntityModel<Producto> toModel(Producto producto) {
-        EntityModel<Producto> resource = EntityModel.of(producto);
-
-        resource.add(linkTo(methodOn(ProductoControllerV2.class).findProducto(producto.getId())).withSelfRel());
-
-        resource.add(
-                linkTo(methodOn(ProductoControllerV2.class).updateProducto(producto.getId(), null)).withRel("update"));
+        return toModel(producto, baseProductos());
+    }
 
-        resource.add(linkTo(methodOn(ProductoControllerV2.class).deleteProducto(producto.getId())).withRel("delete"));
+    public EntityModel<Producto> toModel(Producto producto, String base) {
+        String porId = base + "/id/" + producto.getId();
 
-        resource.add(linkTo(methodOn(ProductoControllerV2.class).getProductos()).withRel("all-products"));
+        return EntityModel.of(producto,
+                Link.of(porId).withSelfRel(),
+                Link.of(porId).withRel("update"),
+                Link.of(porId).withRel("delete"),
+                Link.of(base).withRel("all-products"));
+    }
 
-        return resource;
+    // URI base de /api/v2/productos para la request actual (respeta host y cabeceras X-Forwarded)
+    public String baseProductos() {
+        RequestAttributes atributos = RequestContextHolder.getRequestAttributes();
+        if (atributos == null) {
+            return linkTo(ProductoControllerV2.class).toUri().toString();
+        }
+
+        String base = (String) atributos.getAttribute(ATRIBUTO_BASE, RequestAttributes.SCOPE_REQUEST);
+        if (base == null) {
+            base = linkTo(ProductoControllerV2.class).toUri().toString();
+            atributos.setAttribute(ATRIBUTO_BASE, base, RequestAttributes.SCOPE_REQUEST);
+        }
+        return base;
     }
 }
@@ -0,0 +1,159 @@
+package com.inventario.inventario.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.inventario.inventario.model.Producto;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// cache en memoria de productos por id, con expiracion por tiempo y tamano maximo.
+// Guarda copias desacopladas de la entidad y entrega copias, asi ningun llamador modifica
+// el valor compartido. Las invalidaciones se repiten al terminar la transaccion en curso para
+// descartar lecturas concurrentes que hayan cargado el valor anterior al commit.
+// Es una cache asincrona para que la carga desde la base no corra dentro del compute del mapa
+// (un bloque synchronized), que fijaria el hilo virtual a su hilo portador durante la consulta.
+@Component
+public class ProductoCache {
+
+    private final AsyncCache<Long, Producto> asyncCache;
+
+    private final Cache<Long, Producto> cache;
+
+    // cache de segundo nivel de Hibernate, para las filas que se escriben por JDBC (ver invalidarFilas)
+    @Autowired(required = false)
+    private EntityManagerFactory entityManagerFactory;
+
+    public ProductoCache(@Value("${inventario.cache.tamano-maximo:10000}") long tamanoMaximo,
+            @Value("${inventario.cache.expiracion:60s}") Duration expiracion) {
+        this.asyncCache = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(expiracion)
+                .recordStats()
+                .buildAsync();
+        this.cache = asyncCache.synchronous();
+    }
+
+    // el primer llamador registra un futuro pendiente y lo completa con la carga hecha en su propio hilo;
+    // los llamadores concurrentes del mismo id esperan ese futuro en lugar de repetir la consulta
+    public Optional<Producto> get(Long id, Function<Long, Optional<Producto>> cargador) {
+        CompletableFuture<Producto> pendiente = new CompletableFuture<>();
+        CompletableFuture<Producto> futuro = asyncCache.get(id, (clave, executor) -> pendiente);
+        if (futuro == pendiente) {
+            try {
+                pendiente.complete(cargador.apply(id).map(ProductoCache::copiar).orElse(null));
+            } catch (RuntimeException e) {
+                pendiente.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return Optional.ofNullable(futuro.join()).map(ProductoCache::copiar);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException causa ? causa : e;
+        }
+    }
+
+    // devuelve los productos encontrados en el orden de los ids pedidos; los ausentes en cache se cargan juntos
+    public List<Producto> getAll(Collection<Long> ids, Function<List<Long>, List<Producto>> cargador) {
+        // la carga agrupada corre en el hilo del llamador, fuera de los bloqueos del mapa
+        Map<Long, Producto> encontrados = asyncCache.getAll(ids,
+                (faltantes, executor) -> CompletableFuture.completedFuture(cargarTodos(faltantes, cargador))).join();
+        List<Producto> productos = new ArrayList<>(encontrados.size());
+        encontrados.values().forEach(producto -> productos.add(copiar(producto)));
+        return productos;
+    }
+
+    public boolean contiene(Long id) {
+        return cache.getIfPresent(id) != null;
+    }
+
+    // version del producto en cache, sin copiarlo
+    public Optional<Long> version(Long id) {
+        return Optional.ofNullable(cache.getIfPresent(id)).map(Producto::getVersion);
+    }
+
+    public void invalidar(Long id) {
+        cache.invalidate(id);
+        alTerminarTransaccion(() -> cache.invalidate(id));
+    }
+
+    public void invalidar(Collection<Long> ids) {
+        List<Long> copia = List.copyOf(ids);
+        cache.invalidateAll(copia);
+        alTerminarTransaccion(() -> cache.invalidateAll(copia));
+    }
+
+    // para escrituras por JDBC, que Hibernate no ve: descarta tambien la entrada de cada fila en la cache de
+    // segundo nivel, sin vaciar la region ni invalidar las consultas cacheadas como un UPDATE masivo o nativo
+    public void invalidarFilas(Collection<Long> ids) {
+        List<Long> copia = List.copyOf(ids);
+        invalidar(copia);
+        if (entityManagerFactory != null) {
+            descartarFilas(copia);
+            alTerminarTransaccion(() -> descartarFilas(copia));
+        }
+    }
+
+    public void invalidarTodo() {
+        cache.invalidateAll();
+        alTerminarTransaccion(cache::invalidateAll);
+    }
+
+    public CacheStats estadisticas() {
+        return cache.stats();
+    }
+
+    public Cache<Long, Producto> getCache() {
+        return cache;
+    }
+
+    private void descartarFilas(List<Long> ids) {
+        ids.forEach(id -> entityManagerFactory.getCache().evict(Producto.class, id));
+    }
+
+    private static Map<Long, Producto> cargarTodos(Set<? extends Long> faltantes,
+            Function<List<Long>, List<Producto>> cargador) {
+        Map<Long, Producto> cargados = new HashMap<>();
+        for (Producto producto : cargador.apply(new ArrayList<>(faltantes))) {
+            cargados.put(producto.getId(), copiar(producto));
+        }
+        return cargados;
+    }
+
+    private static void alTerminarTransaccion(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accion.run();
+                }
+            });
+        }
+    }
+
+    public static Producto copiar(Producto producto) {
+        return new Producto(producto.getId(), producto.getActivo(), producto.getNombre(), producto.getPrecio(),
+                producto.getStock(), producto.getMarca(), producto.getVersion());
+    }
+}
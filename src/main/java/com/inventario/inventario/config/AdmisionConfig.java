@@ -0,0 +1,63 @@
+package com.inventario.inventario.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.inventario.inventario.admision.AdmisionFilter;
+import com.inventario.inventario.admision.LimiteAdaptativo;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// control de admision y descarte de carga (inventario.admision.habilitado=true): cuando MySQL se vuelve lento las
+// requests se descartan al entrar en lugar de acumularse en los hilos de Tomcat, y las criticas mantienen su
+// latencia. El limite maximo debe quedar por debajo de server.tomcat.threads.max para que siempre haya hilos
+// libres para rechazar.
+@Configuration
+@ConditionalOnProperty(name = "inventario.admision.habilitado", havingValue = "true")
+public class AdmisionConfig {
+
+    @Bean
+    public LimiteAdaptativo limiteAdaptativo(
+            @Value("${inventario.admision.limite-inicial}") int inicial,
+            @Value("${inventario.admision.limite-minimo}") int minimo,
+            @Value("${inventario.admision.limite-maximo}") int maximo,
+            @Value("${inventario.admision.latencia-objetivo}") Duration latenciaObjetivo,
+            @Value("${inventario.admision.factor-reduccion}") double factorReduccion) {
+        return new LimiteAdaptativo(inicial, minimo, maximo, latenciaObjetivo.toNanos(), factorReduccion);
+    }
+
+    // antes que el resto de los filtros, salvo el de codificacion de caracteres
+    @Bean
+    public FilterRegistrationBean<AdmisionFilter> admisionFilter(LimiteAdaptativo limiteAdaptativo,
+            MeterRegistry meterRegistry,
+            @Value("${inventario.admision.fraccion-normal}") double fraccionNormal,
+            @Value("${inventario.admision.fraccion-baja}") double fraccionBaja,
+            @Value("${inventario.admision.tasa-por-cliente}") double tasaPorCliente,
+            @Value("${inventario.admision.rafaga-por-cliente}") double rafagaPorCliente) {
+        FilterRegistrationBean<AdmisionFilter> registro = new FilterRegistrationBean<>(new AdmisionFilter(
+                limiteAdaptativo, fraccionNormal, fraccionBaja, tasaPorCliente, rafagaPorCliente, meterRegistry));
+        registro.addUrlPatterns("/api/*");
+        registro.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registro;
+    }
+
+    @Bean
+    public MeterBinder admisionMetrics(LimiteAdaptativo limiteAdaptativo) {
+        return registry -> {
+            Gauge.builder("inventario.admision.limite", limiteAdaptativo, LimiteAdaptativo::limite)
+                    .description("Limite adaptativo de requests concurrentes")
+                    .register(registry);
+            Gauge.builder("inventario.admision.en-curso", limiteAdaptativo, LimiteAdaptativo::enCurso)
+                    .description("Requests admitidas en curso")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.inventario.inventario.config;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+// cache de segundo nivel de Hibernate sobre JCache/Caffeine, con la region de productos creada aqui con tamano
+// y expiracion configurables (hibernate.javax.cache.missing_cache_strategy=fail evita regiones sin limite).
+// No hay regiones de consultas: la cache de consultas esta apagada porque el stock se escribe por JDBC sin
+// invalidar las consultas sobre la tabla. Hibernate cierra el CacheManager con la SessionFactory; cada
+// contexto usa el suyo para no compartir regiones entre contextos de prueba.
+@Configuration
+public class CacheSegundoNivelConfig {
+
+    public static final String REGION_PRODUCTO = "producto";
+
+    @Bean
+    public HibernatePropertiesCustomizer cacheSegundoNivelCustomizer(
+            @Value("${inventario.cache.segundo-nivel.producto.tamano-maximo:10000}") long tamanoProducto,
+            @Value("${inventario.cache.segundo-nivel.producto.expiracion:10m}") Duration expiracionProducto) {
+        return propiedades -> {
+            CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                    .getCacheManager(URI.create("inventario:segundo-nivel:" + UUID.randomUUID()),
+                            CacheSegundoNivelConfig.class.getClassLoader());
+            cacheManager.createCache(REGION_PRODUCTO, region(tamanoProducto, expiracionProducto));
+            propiedades.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long tamanoMaximo, Duration expiracion) {
+        CaffeineConfiguration<Object, Object> configuracion = new CaffeineConfiguration<>();
+        configuracion.setMaximumSize(OptionalLong.of(tamanoMaximo));
+        configuracion.setExpireAfterWrite(OptionalLong.of(expiracion.toNanos()));
+        return configuracion;
+    }
+}
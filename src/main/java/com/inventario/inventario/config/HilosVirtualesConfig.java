@@ -0,0 +1,31 @@
+package com.inventario.inventario.config;
+
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+// modo de ejecucion con hilos virtuales (inventario.hilos-virtuales.habilitado=true): cada request de Tomcat
+// y cada tarea asincrona (respuestas StreamingResponseBody, @Async) corre en su propio hilo virtual, que
+// libera su hilo portador mientras espera a MySQL. El limite de concurrencia contra la base pasa a ser el
+// pool de conexiones (spring.datasource.hikari.maximum-pool-size), no el pool de hilos de Tomcat.
+@Configuration
+@ConditionalOnProperty(name = "inventario.hilos-virtuales.habilitado", havingValue = "true")
+public class HilosVirtualesConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> hilosVirtualesTomcat() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    // reemplaza el executor por defecto de Spring Boot, que Spring MVC usa para el procesamiento asincrono
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -0,0 +1,54 @@
+package com.inventario.inventario.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.http.server.observation.ServerRequestObservationConvention;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.inventario.inventario.cache.ProductoCache;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// metricas expuestas en /actuator/metrics y /actuator/prometheus, ademas de las de HikariCP, Hibernate
+// (hibernate-micrometer con hibernate.generate_statistics=true) y http.server.requests que registra Spring Boot
+@Configuration
+public class MetricasConfig {
+
+    // agrega a http.server.requests la etiqueta 'handler' (Controlador.metodo) para separar timers por metodo
+    @Bean
+    public ServerRequestObservationConvention serverRequestObservationConvention() {
+        return new DefaultServerRequestObservationConvention() {
+            @Override
+            public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+                Object handler = context.getCarrier().getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+                String nombre = handler instanceof HandlerMethod metodo
+                        ? metodo.getBeanType().getSimpleName() + "." + metodo.getMethod().getName()
+                        : "none";
+                return super.getLowCardinalityKeyValues(context).and(KeyValue.of("handler", nombre));
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder productoCacheMetrics(ProductoCache productoCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, productoCache.getCache(), "productos");
+    }
+
+    // registro muestreado de sentencias SQL, desactivado por defecto (inventario.sql.muestreo=0)
+    @Bean
+    public HibernatePropertiesCustomizer sqlMuestreoCustomizer(@Value("${inventario.sql.muestreo:0}") double muestreo) {
+        return propiedades -> {
+            if (muestreo > 0) {
+                propiedades.put("hibernate.session_factory.statement_inspector", new SqlMuestreoInspector(muestreo));
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package com.inventario.inventario.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventario.inventario.model.Producto;
+
+// representacion columnar de listados de productos, pedida con Accept: application/vnd.inventario.columnar+json.
+// Los nombres de campo se escriben una sola vez y cada producto es un arreglo de valores en ese orden:
+// {"columnas":["id","activo",...],"filas":[[1,true,...],...]}. Se escribe con el generador de Jackson,
+// sin armar objetos intermedios.
+public class ProductosColumnaresConverter extends AbstractGenericHttpMessageConverter<List<Producto>> {
+
+    public static final MediaType COLUMNAR_JSON = MediaType.parseMediaType("application/vnd.inventario.columnar+json");
+
+    public static final List<String> COLUMNAS = List.of("id", "activo", "nombre", "precio", "stock", "marca", "version");
+
+    private final JsonFactory jsonFactory;
+
+    public ProductosColumnaresConverter(ObjectMapper objectMapper) {
+        super(COLUMNAR_JSON);
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz);
+    }
+
+    // solo listas de productos y solo si el cliente pidio este tipo: Jackson tambien acepta application/*+json
+    // y sin esta condicion el formato columnar se elegiria ante Accept: */*
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return type != null && ResolvableType.forType(type).asCollection().resolveGeneric(0) == Producto.class
+                && mediaType != null && mediaType.isConcrete() && COLUMNAR_JSON.includes(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected void writeInternal(List<Producto> productos, Type type, HttpOutputMessage salida) throws IOException {
+        escribir(productos, StreamUtils.nonClosing(salida.getBody()));
+    }
+
+    public void escribir(List<Producto> productos, OutputStream salida) throws IOException {
+        try (JsonGenerator generador = jsonFactory.createGenerator(salida, JsonEncoding.UTF8)) {
+            generador.writeStartObject();
+            generador.writeArrayFieldStart("columnas");
+            for (String columna : COLUMNAS) {
+                generador.writeString(columna);
+            }
+            generador.writeEndArray();
+
+            generador.writeArrayFieldStart("filas");
+            for (Producto producto : productos) {
+                generador.writeStartArray();
+                generador.writeNumber(producto.getId());
+                generador.writeBoolean(producto.getActivo());
+                generador.writeString(producto.getNombre());
+                generador.writeNumber(producto.getPrecio());
+                generador.writeNumber(producto.getStock());
+                generador.writeString(producto.getMarca());
+                generador.writeNumber(producto.getVersion());
+                generador.writeEndArray();
+            }
+            generador.writeEndArray();
+            generador.writeEndObject();
+        }
+    }
+
+    @Override
+    protected List<Producto> readInternal(Class<? extends List<Producto>> clazz, HttpInputMessage entrada) {
+        throw new HttpMessageNotReadableException("formato columnar solo de salida", entrada);
+    }
+
+    @Override
+    public List<Producto> read(Type type, Class<?> contextClass, HttpInputMessage entrada) {
+        throw new HttpMessageNotReadableException("formato columnar solo de salida", entrada);
+    }
+}
@@ -0,0 +1,99 @@
+package com.inventario.inventario.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.inventario.inventario.datasource.LecturaEnReplicaAspect;
+import com.inventario.inventario.datasource.RuteoDataSource;
+import com.inventario.inventario.datasource.SesionReplicaFilter;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// lecturas en replicas (inventario.replicas.habilitado=true): la primaria se configura con spring.datasource.*
+// y cada url de inventario.replicas.urls abre su propio pool con la misma configuracion, en modo solo lectura.
+// JPA usa el proxy perezoso sobre el RuteoDataSource, asi la conexion se elige cuando la transaccion ya sabe
+// si es de solo lectura.
+@Configuration
+@ConditionalOnProperty(name = "inventario.replicas.habilitado", havingValue = "true")
+public class ReplicasConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaria(DataSourceProperties propiedades) {
+        return propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public RuteoDataSource ruteoDataSource(HikariDataSource primaria,
+            ObjectProvider<EntityManagerFactory> entityManagerFactory,
+            @Value("${inventario.replicas.urls}") List<String> urls,
+            @Value("${inventario.replicas.retraso-maximo}") Duration retrasoMaximo,
+            @Value("${inventario.eventos.espera-hueco:30s}") Duration esperaHueco) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            primaria.copyStateTo(replica);
+            replica.setJdbcUrl(url);
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        RuteoDataSource ruteo = new RuteoDataSource(primaria, replicas, retrasoMaximo, esperaHueco);
+        ruteo.setAlLeerDeReplica(() -> sinGuardarEnCacheSegundoNivel(entityManagerFactory.getObject()));
+        return ruteo;
+    }
+
+    // lo leido de una replica puede estar atrasado: la sesion deja de guardar entidades en la cache de segundo
+    // nivel, compartida por todas las sesiones (las lecturas de findById solo usan replicas que ya tienen las
+    // escrituras de esta instancia)
+    private static void sinGuardarEnCacheSegundoNivel(EntityManagerFactory entityManagerFactory) {
+        if (TransactionSynchronizationManager.getResource(entityManagerFactory) instanceof EntityManagerHolder holder) {
+            holder.getEntityManager().unwrap(Session.class).setCacheMode(CacheMode.GET);
+        }
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(RuteoDataSource ruteoDataSource) {
+        return new LazyConnectionDataSourceProxy(ruteoDataSource);
+    }
+
+    // Spring retiene la conexion de la sesion de Hibernate entre transacciones (y open-in-view la mantiene toda
+    // la request): se libera al terminar cada transaccion para que cada una elija de nuevo primaria o replica
+    @Bean
+    public HibernatePropertiesCustomizer liberarConexionPorTransaccion() {
+        return propiedades -> propiedades.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    public LecturaEnReplicaAspect lecturaEnReplicaAspect() {
+        return new LecturaEnReplicaAspect();
+    }
+
+    @Bean
+    public SesionReplicaFilter sesionReplicaFilter(@Value("${inventario.replicas.retraso-maximo}") Duration retrasoMaximo) {
+        return new SesionReplicaFilter(retrasoMaximo);
+    }
+}
@@ -0,0 +1,74 @@
+package com.inventario.inventario.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// al terminar el arranque registra la configuracion efectiva de rendimiento (pool, driver, Hibernate), para
+// comprobar en el log que el perfil activo aplico lo esperado
+@Component
+public class ReporteConfiguracion {
+
+    private static final Logger log = LoggerFactory.getLogger(ReporteConfiguracion.class);
+
+    private static final List<String> AJUSTES_HIBERNATE = List.of(
+            "hibernate.jdbc.batch_size",
+            "hibernate.order_inserts",
+            "hibernate.order_updates",
+            "hibernate.jdbc.batch_versioned_data",
+            "hibernate.query.plan_cache_enabled",
+            "hibernate.query.plan_cache_max_size",
+            "hibernate.query.in_clause_parameter_padding",
+            "hibernate.cache.use_second_level_cache",
+            "hibernate.cache.use_query_cache",
+            "hibernate.show_sql",
+            "hibernate.format_sql",
+            "hibernate.generate_statistics");
+
+    @Autowired
+    private ApplicationContext contexto;
+
+    @Autowired
+    private Environment entorno;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportar() {
+        lineas().forEach(linea -> log.info(linea));
+    }
+
+    public List<String> lineas() {
+        List<String> lineas = new ArrayList<>();
+        lineas.add("perfiles activos: " + List.of(entorno.getActiveProfiles())
+                + ", open-in-view=" + entorno.getProperty("spring.jpa.open-in-view", "true"));
+
+        for (HikariDataSource pool : contexto.getBeansOfType(HikariDataSource.class).values()) {
+            lineas.add(String.format("pool %s: maximo=%d, minimo inactivas=%d, timeout=%dms, vida maxima=%dms, keepalive=%dms",
+                    pool.getPoolName(), pool.getMaximumPoolSize(), pool.getMinimumIdle(), pool.getConnectionTimeout(),
+                    pool.getMaxLifetime(), pool.getKeepaliveTime()));
+            lineas.add("driver " + pool.getPoolName() + ": " + new TreeMap<>(pool.getDataSourceProperties()));
+        }
+
+        Map<String, Object> propiedades = entityManagerFactory.getProperties();
+        Map<String, Object> hibernate = new TreeMap<>();
+        AJUSTES_HIBERNATE.forEach(ajuste -> hibernate.put(ajuste, propiedades.getOrDefault(ajuste, "(por defecto)")));
+        lineas.add("hibernate: " + hibernate);
+        return lineas;
+    }
+}
@@ -0,0 +1,30 @@
+package com.inventario.inventario.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// representaciones compactas de listados: CBOR (application/cbor) lo registra Spring MVC al estar
+// jackson-dataformat-cbor en el classpath. El formato columnar va antes del convertidor JSON de Jackson,
+// que tambien acepta application/*+json, y solo responde cuando se lo pide explicitamente
+@Configuration
+public class RepresentacionesConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        int jackson = 0;
+        while (jackson < converters.size() && !(converters.get(jackson) instanceof MappingJackson2HttpMessageConverter)) {
+            jackson++;
+        }
+        converters.add(jackson, new ProductosColumnaresConverter(objectMapper));
+    }
+}
@@ -0,0 +1,27 @@
+package com.inventario.inventario.config;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// registra una fraccion de las sentencias SQL en lugar de todas (reemplaza spring.jpa.show-sql)
+public class SqlMuestreoInspector implements StatementInspector {
+
+    private static final Logger log = LoggerFactory.getLogger("inventario.sql.muestreo");
+
+    private final double muestreo;
+
+    public SqlMuestreoInspector(double muestreo) {
+        this.muestreo = muestreo;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (ThreadLocalRandom.current().nextDouble() < muestreo) {
+            log.info(sql);
+        }
+        return sql;
+    }
+}
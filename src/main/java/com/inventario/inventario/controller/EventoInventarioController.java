@@ -0,0 +1,56 @@
+package com.inventario.inventario.controller;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.inventario.inventario.model.EventoInventario;
+import com.inventario.inventario.service.EventoInventarioFeed;
+
+// cambios de inventario para consumidores que mantienen una copia local del catalogo: se descarga el
+// catalogo una vez y luego se aplican los eventos con secuencia mayor a la ultima procesada
+@RequestMapping("/api/v1/productos/eventos")
+@RestController
+public class EventoInventarioController {
+
+    @Autowired
+    private EventoInventarioFeed eventoInventarioFeed;
+
+    @Value("${inventario.eventos.espera-maxima:30s}")
+    private Duration esperaMaxima = Duration.ofSeconds(30);
+
+    @Value("${inventario.eventos.duracion-sse:30m}")
+    private Duration duracionSse = Duration.ofMinutes(30);
+
+    // long-poll: eventos posteriores a 'desde'; 204 si no hubo cambios durante la espera (en segundos), 410 si
+    // la purga ya borro eventos posteriores a 'desde'
+    @GetMapping
+    public DeferredResult<ResponseEntity<List<EventoInventario>>> getEventos(@RequestParam(defaultValue = "0") long desde,
+            @RequestParam(defaultValue = "30") long espera) {
+        Duration duracion = Duration.ofSeconds(Math.max(0, espera));
+        return eventoInventarioFeed.esperar(desde, duracion.compareTo(esperaMaxima) < 0 ? duracion : esperaMaxima);
+    }
+
+    // Server-Sent Events desde 'desde' o desde la cabecera Last-Event-ID al reconectar; 410 como el long-poll
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEventos(@RequestParam(defaultValue = "0") long desde,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEvento) {
+        long cursor = ultimoEvento != null ? ultimoEvento : desde;
+        if (eventoInventarioFeed.vencido(cursor)) {
+            return new ResponseEntity<>(HttpStatus.GONE);
+        }
+        return new ResponseEntity<>(eventoInventarioFeed.suscribir(cursor, duracionSse), HttpStatus.OK);
+    }
+}
@@ -1,82 +1,398 @@
 package com.inventario.inventario.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.FiltroProducto;
+import com.inventario.inventario.dto.ProductoCambios;
+import com.inventario.inventario.dto.ProductoPagina;
+import com.inventario.inventario.dto.ProductoResumen;
+import com.inventario.inventario.dto.ReservaStock;
+import com.inventario.inventario.dto.ResultadoBusqueda;
+import com.inventario.inventario.dto.ResultadoImportacion;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.exception.ProductoNoEncontradoException;
+import com.inventario.inventario.exception.StockExcedidoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
 import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.service.ProductoImportService;
 import com.inventario.inventario.service.ProductoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RequestMapping("/api/v1/productos")
 @RestController
 
 public class ProductoController {
+    static final String CABECERA_IDS_NO_ENCONTRADOS = "X-Ids-No-Encontrados";
+
+    // tipos que escriben los convertidores de listados y productos, en su orden de registro
+    private static final List<MediaType> PRODUCIBLES = List.of(MediaType.APPLICATION_JSON,
+            new MediaType("application", "*+json"), MediaType.APPLICATION_CBOR);
+
     @Autowired
     private ProductoService productoService;
 
-    // obtener todos los productos
+    @Autowired
+    private ProductoImportService productoImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${inventario.multiget.maximo-ids:1000}")
+    private int maximoIds = 1000;
+
+    @Value("${inventario.stock.fracciones.maximo:64}")
+    private int maximoFracciones = 64;
+
+    @Value("${inventario.http.max-age:0s}")
+    private Duration maxAge = Duration.ZERO;
+
+    // obtener todos los productos; con If-None-Match responde 304 si el catalogo no cambio
     @GetMapping
-    public ResponseEntity<List<Producto>> getProductos() {
+    public ResponseEntity<List<Producto>> getProductos(WebRequest request) {
+        String etag = etagCatalogo(productoService.findVersionCatalogo(), request);
+        if (request.checkNotModified(etag)) {
+            return noModificado(etag, cacheControl(maxAge));
+        }
         List<Producto> productos = productoService.findAll();
 
         if (!productos.isEmpty()) {
-            return new ResponseEntity<>(productos, HttpStatus.OK);
+            return respuestaValidable(Optional.of(etag), cacheControl(maxAge)).body(productos);
         }
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
-    // obtener producto segun su id
-    @GetMapping("/id/{id}")
-    public ResponseEntity<Producto> findProducto(@PathVariable Long id) {
+    // obtener una pagina de productos a partir del cursor (id del ultimo producto recibido)
+    @GetMapping("/page")
+    public ResponseEntity<ProductoPagina> getPaginaProductos(@RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int size, WebRequest request) {
+        String etag = etagCatalogo(productoService.findVersionCatalogo(), request);
+        if (request.checkNotModified(etag)) {
+            return noModificado(etag, cacheControl(maxAge));
+        }
+        ProductoPagina pagina = productoService.findPage(after, size);
 
-        if (productoService.existsById(id)) {
-            return new ResponseEntity<>(productoService.findById(id).get(), HttpStatus.OK);
+        if (!pagina.getProductos().isEmpty()) {
+            return respuestaValidable(Optional.of(etag), cacheControl(maxAge)).body(pagina);
         }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    // buscar productos por marca, estado, rango de precio, stock bajo y prefijo de nombre, con orden y paginas
+    @GetMapping("/search")
+    public ResponseEntity<ResultadoBusqueda> buscarProductos(FiltroProducto filtro,
+            @RequestParam(defaultValue = "id") String orden,
+            @RequestParam(defaultValue = "asc") String direccion,
+            @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "100") int size) {
+        Optional<Sort.Direction> sentido = Sort.Direction.fromOptionalString(direccion);
+        if (!ProductoService.ORDENES_BUSQUEDA.contains(orden) || sentido.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        ResultadoBusqueda resultado = productoService.buscar(filtro, orden, sentido.get(), page, size);
+
+        if (!resultado.getProductos().isEmpty()) {
+            return new ResponseEntity<>(resultado, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
-    // obtener una lista de productos pasando sus id's
+    // obtener los productos modificados (incluidos los desactivados) despues del cursor ('desde', 'despuesDe');
+    // la respuesta trae la version y el id a usar como cursor en la siguiente sincronizacion
+    @GetMapping("/cambios")
+    public ResponseEntity<ProductoCambios> getCambios(@RequestParam(defaultValue = "0") long desde,
+            @RequestParam(defaultValue = "0") long despuesDe, @RequestParam(defaultValue = "100") int size) {
+        ProductoCambios cambios = productoService.findCambios(desde, despuesDe, size);
+
+        if (!cambios.getProductos().isEmpty()) {
+            return new ResponseEntity<>(cambios, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    // obtener todos los productos como NDJSON, escribiendo cada fila a medida que se lee
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProductos() {
+        StreamingResponseBody cuerpo = salida -> {
+            try (SequenceWriter escritor = objectMapper.writer().withRootValueSeparator("\n").writeValues(salida)) {
+                productoService.forEachProducto(producto -> {
+                    try {
+                        escritor.write(producto);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(cuerpo);
+    }
+
+    // obtener producto segun su id; con If-None-Match se compara solo la version, sin cargar ni
+    // serializar el producto
+    @GetMapping("/id/{id}")
+    public ResponseEntity<Producto> findProducto(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<String> etag = productoService.findVersionById(id).map(version -> etagProducto(version, request));
+            if (etag.isPresent() && request.checkNotModified(etag.get())) {
+                return noModificado(etag.get(), cacheControl(maxAge));
+            }
+        }
+        String enMemoria = productoService.marcaEnMemoria(id);
+        return productoService.findById(id)
+                .map(producto -> respuestaValidable(Optional.of(etagProducto(producto.getVersion() + enMemoria, request)), cacheControl(maxAge))
+                        .body(producto))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    // obtener una lista de productos pasando sus id's, en el orden pedido; los id's inexistentes se
+    // informan en la cabecera X-Ids-No-Encontrados
     @GetMapping("/by-id/")
     public ResponseEntity<List<Producto>> getProductosById(@RequestParam List<Long> ids) {
-        return new ResponseEntity<>(productoService.findAllById(ids), HttpStatus.OK);
+        if (ids.size() > maximoIds) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Producto> productos = productoService.findAllById(ids);
+        return ResponseEntity.ok().headers(cabeceraIdsNoEncontrados(ids, productos)).body(productos);
+    }
+
+    // resumen (id, precio, stock, activo) de un producto
+    @GetMapping("/resumen/id/{id}")
+    public ResponseEntity<ProductoResumen> findResumen(@PathVariable Long id) {
+        return productoService.findResumenById(id)
+                .map(resumen -> new ResponseEntity<>(resumen, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    // resumenes de una lista de productos, en el orden de los id's pedidos
+    @GetMapping("/resumen/by-id/")
+    public ResponseEntity<List<ProductoResumen>> getResumenesById(@RequestParam List<Long> ids) {
+        return new ResponseEntity<>(productoService.findResumenByIds(ids), HttpStatus.OK);
     }
 
-    // guardar producto si el id no esta utilizado
+    // pagina de resumenes a partir del cursor (id del ultimo producto recibido)
+    @GetMapping("/resumen/page")
+    public ResponseEntity<List<ProductoResumen>> getPaginaResumenes(@RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int size) {
+        List<ProductoResumen> resumenes = productoService.findResumenPage(after, size);
+
+        if (!resumenes.isEmpty()) {
+            return new ResponseEntity<>(resumenes, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    // guardar producto si el nombre no esta utilizado; 400 si falta un campo obligatorio
     @PostMapping
     public ResponseEntity<Producto> saveProducto(@RequestBody Producto producto) {
-        if (!productoService.existsById(producto.getId())) {
-            return new ResponseEntity<>(productoService.save(producto), HttpStatus.OK);
+        if (!ProductoService.esValido(producto)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        return new ResponseEntity<>(HttpStatus.CONFLICT);
+        return productoService.insertIfAbsent(producto)
+                .map(guardado -> new ResponseEntity<>(guardado, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.CONFLICT));
+    }
+
+    // importar productos desde un archivo CSV (con encabezado) o NDJSON, leido a medida que llega
+    @PostMapping(value = "/import", consumes = { "text/csv", MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<ResultadoImportacion> importarProductos(InputStream cuerpo,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String tipoContenido) throws IOException {
+        ProductoImportService.Formato formato = MediaType.parseMediaType(tipoContenido).isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? ProductoImportService.Formato.NDJSON
+                : ProductoImportService.Formato.CSV;
+        return new ResponseEntity<>(productoImportService.importar(cuerpo, formato), HttpStatus.OK);
     }
 
-    // actualizar producto por id
+    // actualizar producto por id; devuelve el producto guardado, 400 si falta un campo obligatorio
     @PutMapping("/id/{id}")
     public ResponseEntity<Producto> updateProducto(@PathVariable Long id, @RequestBody Producto producto) {
+        if (!ProductoService.esValido(producto)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return productoService.update(id, producto)
+                .map(actualizado -> new ResponseEntity<>(actualizado, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    // reservar stock de un producto; 409 si no hay stock suficiente
+    @PostMapping("/id/{id}/reserve")
+    public ResponseEntity<ReservaStock> reservarStock(@PathVariable Long id, @RequestParam int cantidad) {
+        if (cantidad <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return respuestaReserva(id, cantidad, productoService.reservarStock(id, cantidad));
+    }
+
+    // liberar stock reservado previamente; 409 si el stock pasaria el maximo admitido
+    @PostMapping("/id/{id}/release")
+    public ResponseEntity<ReservaStock> liberarStock(@PathVariable Long id, @RequestParam int cantidad) {
+        if (cantidad <= 0) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return respuestaReserva(id, cantidad, productoService.liberarStock(id, cantidad));
+    }
 
-        if (productoService.existsById(id)) {
-            return new ResponseEntity<>(productoService.update(id, producto), HttpStatus.OK);
+    // repartir el stock de un producto caliente en 'fracciones' contadores (1 vuelve a un unico contador);
+    // 409 si el stock en memoria esta habilitado
+    @PutMapping("/id/{id}/stock/fracciones")
+    public ResponseEntity<Void> fraccionarStock(@PathVariable Long id, @RequestParam int fracciones) {
+        if (fracciones < 1 || fracciones > maximoFracciones) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            if (productoService.fraccionarStock(id, fracciones)) {
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            }
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    // ajustar el stock de varios productos en una sola transaccion (todo o nada)
+    @PostMapping("/stock/batch")
+    public ResponseEntity<List<Producto>> ajustarStock(@RequestBody List<AjusteStock> ajustes) {
+        if (ajustes == null || ajustes.isEmpty() || ajustes.stream().anyMatch(ajuste -> ajuste.getId() == null)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(productoService.ajustarStock(ajustes), HttpStatus.OK);
+        } catch (ProductoNoEncontradoException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (StockInsuficienteException | StockExcedidoException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+
+    private ResponseEntity<ReservaStock> respuestaReserva(Long id, int cantidad, ResultadoReserva resultado) {
+        ReservaStock reserva = new ReservaStock(id, cantidad, resultado);
+        switch (resultado) {
+            case APLICADA:
+                return new ResponseEntity<>(reserva, HttpStatus.OK);
+            case STOCK_INSUFICIENTE:
+            case STOCK_EXCEDIDO:
+                return new ResponseEntity<>(reserva, HttpStatus.CONFLICT);
+            default:
+                return new ResponseEntity<>(reserva, HttpStatus.NOT_FOUND);
+        }
+    }
+
     // eliminar producto por id
     @DeleteMapping("/id/{id}")
     public ResponseEntity<Void> deleteProducto(@PathVariable Long id) {
-        if (productoService.existsById(id)) {
-            productoService.deleteById(id);
+        if (productoService.deleteById(id)) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    static HttpHeaders cabeceraIdsNoEncontrados(List<Long> ids, List<Producto> productos) {
+        Set<Long> faltantes = new LinkedHashSet<>(ids);
+        productos.forEach(producto -> faltantes.remove(producto.getId()));
+
+        HttpHeaders cabeceras = new HttpHeaders();
+        if (!faltantes.isEmpty()) {
+            cabeceras.set(CABECERA_IDS_NO_ENCONTRADOS,
+                    faltantes.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        }
+        return cabeceras;
+    }
+
+    // ETags derivados de la version de fila del producto y de la mayor version del catalogo (con el stock en
+    // memoria, seguidas de su marca; ver ProductoService.marcaEnMemoria). El de los listados es debil: Tomcat
+    // no comprime respuestas con ETag fuerte, y la version gzip y la sin comprimir son la misma representacion
+    // para If-None-Match
+    static String etagProducto(String version, WebRequest request) {
+        return "\"" + version + representacion(request) + "\"";
+    }
+
+    static String etagCatalogo(String version, WebRequest request) {
+        return "W/\"catalogo-" + version + representacion(request) + "\"";
+    }
+
+    // la misma version se sirve como JSON, CBOR o columnar segun Accept, que se negocia despues de validar el
+    // ETag: el sufijo es el tipo que elegiria esa negociacion (sin parametros ni calidades), asi dos Accept que
+    // llevan a la misma representacion comparten ETag y dos representaciones distintas nunca. JSON no lleva sufijo
+    static String representacion(WebRequest request) {
+        MediaType elegido = negociar(request.getHeader(HttpHeaders.ACCEPT));
+        return elegido == null || MediaType.APPLICATION_JSON.equalsTypeAndSubtype(elegido) ? "" : "-" + elegido.getSubtype();
+    }
+
+    // misma regla que Spring MVC al escribir el cuerpo: cruza lo aceptado con lo que escriben los convertidores
+    // (Jackson: application/json y application/*+json, que incluye al columnar; CBOR), se queda con el mas
+    // especifico de cada par, ordena por calidad y especificidad y toma el primero concreto. Un comodin
+    // termina en el tipo por defecto del convertidor, JSON; null si nada es compatible (406)
+    private static MediaType negociar(String accept) {
+        List<MediaType> aceptados;
+        try {
+            aceptados = accept == null || accept.isBlank() ? List.of(MediaType.ALL) : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        List<MediaType> compatibles = new ArrayList<>();
+        for (MediaType aceptado : aceptados) {
+            for (MediaType producible : PRODUCIBLES) {
+                if (aceptado.isCompatibleWith(producible)) {
+                    MediaType candidato = producible.copyQualityValue(aceptado);
+                    compatibles.add(aceptado.isLessSpecific(candidato) ? candidato : aceptado);
+                }
+            }
+        }
+        MimeTypeUtils.sortBySpecificity(compatibles);
+        for (MediaType compatible : compatibles) {
+            if (compatible.isConcrete()) {
+                return compatible.removeQualityValue();
+            }
+            if (MediaType.ALL.equalsTypeAndSubtype(compatible) || new MediaType("application").equalsTypeAndSubtype(compatible)) {
+                return MediaType.APPLICATION_JSON;
+            }
+        }
+        return null;
+    }
+
+    // publica para que los proxies de borde tambien guarden la respuesta; con max-age=0 cada uso se revalida
+    static CacheControl cacheControl(Duration maxAge) {
+        return CacheControl.maxAge(maxAge).cachePublic().mustRevalidate();
+    }
+
+    // Vary: Accept para que las caches compartidas guarden cada representacion por separado
+    static ResponseEntity.BodyBuilder respuestaValidable(Optional<String> etag, CacheControl cacheControl) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok().cacheControl(cacheControl).varyBy(HttpHeaders.ACCEPT);
+        etag.ifPresent(respuesta::eTag);
+        return respuesta;
+    }
+
+    static <T> ResponseEntity<T> noModificado(String etag, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT).build();
+    }
 }
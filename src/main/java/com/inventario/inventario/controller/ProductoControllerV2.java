@@ -1,14 +1,19 @@
 package com.inventario.inventario.controller;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import com.inventario.inventario.assemblers.ProductoModelAssembler;
+import com.inventario.inventario.dto.ProductoPagina;
 import com.inventario.inventario.model.Producto;
 import com.inventario.inventario.service.ProductoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -20,6 +25,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
@@ -33,8 +39,19 @@ public class ProductoControllerV2 {
     @Autowired
     private ProductoModelAssembler productoAssembler;
 
+    @Value("${inventario.multiget.maximo-ids:1000}")
+    private int maximoIds = 1000;
+
+    @Value("${inventario.http.max-age:0s}")
+    private Duration maxAge = Duration.ZERO;
+
+    // con If-None-Match responde 304 si el catalogo no cambio, antes de leer los productos
     @GetMapping
-    public ResponseEntity<CollectionModel<EntityModel<Producto>>> getProductos() {
+    public ResponseEntity<CollectionModel<EntityModel<Producto>>> getProductos(WebRequest request) {
+        String etag = ProductoController.etagCatalogo(productoService.findVersionCatalogo(), request);
+        if (request.checkNotModified(etag)) {
+            return ProductoController.noModificado(etag, ProductoController.cacheControl(maxAge));
+        }
         List<Producto> productos = productoService.findAll();
 
         if (!productos.isEmpty()) {
@@ -43,54 +60,98 @@ public class ProductoControllerV2 {
                     .collect(Collectors.toList());
 
             CollectionModel<EntityModel<Producto>> collectionModel = CollectionModel.of(productResources,
-                    linkTo(methodOn(ProductoControllerV2.class).getProductos()).withSelfRel(),
+                    linkTo(methodOn(ProductoControllerV2.class).getProductos(null)).withSelfRel(),
                     linkTo(methodOn(ProductoControllerV2.class).saveProducto(null)).withRel("create"));
 
-            return new ResponseEntity<>(collectionModel, HttpStatus.OK);
+            return ProductoController.respuestaValidable(Optional.of(etag), ProductoController.cacheControl(maxAge)).body(collectionModel);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    // obtener una pagina de productos a partir del cursor, con enlace 'next' a la pagina siguiente
+    @GetMapping("/page")
+    public ResponseEntity<CollectionModel<EntityModel<Producto>>> getPaginaProductos(
+            @RequestParam(required = false) Long after, @RequestParam(defaultValue = "100") int size,
+            WebRequest request) {
+        String etag = ProductoController.etagCatalogo(productoService.findVersionCatalogo(), request);
+        if (request.checkNotModified(etag)) {
+            return ProductoController.noModificado(etag, ProductoController.cacheControl(maxAge));
+        }
+        ProductoPagina pagina = productoService.findPage(after, size);
+
+        if (!pagina.getProductos().isEmpty()) {
+            List<EntityModel<Producto>> productResources = pagina.getProductos().stream()
+                    .map(productoAssembler::toModel)
+                    .collect(Collectors.toList());
+
+            CollectionModel<EntityModel<Producto>> collectionModel = CollectionModel.of(productResources,
+                    linkTo(methodOn(ProductoControllerV2.class).getPaginaProductos(after, size, null)).withSelfRel());
+
+            if (pagina.getSiguienteCursor() != null) {
+                collectionModel.add(linkTo(methodOn(ProductoControllerV2.class)
+                        .getPaginaProductos(pagina.getSiguienteCursor(), size, null)).withRel("next"));
+            }
+            return ProductoController.respuestaValidable(Optional.of(etag), ProductoController.cacheControl(maxAge)).body(collectionModel);
         }
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
-    // obtener producto segun su id
+    // obtener producto segun su id; con If-None-Match se compara solo la version, sin cargar el producto
+    // ni armar sus enlaces
     @GetMapping("/id/{id}")
-    public ResponseEntity<EntityModel<Producto>> findProducto(@PathVariable Long id) {
+    public ResponseEntity<EntityModel<Producto>> findProducto(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<String> etag = productoService.findVersionById(id).map(version -> ProductoController.etagProducto(version, request));
+            if (etag.isPresent() && request.checkNotModified(etag.get())) {
+                return ProductoController.noModificado(etag.get(), ProductoController.cacheControl(maxAge));
+            }
+        }
+        String enMemoria = productoService.marcaEnMemoria(id);
         return productoService.findById(id)
-                .map(productoAssembler::toModel)
-                .map(resource -> new ResponseEntity<>(resource, HttpStatus.OK))
+                .map(producto -> ProductoController.respuestaValidable(
+                        Optional.of(ProductoController.etagProducto(producto.getVersion() + enMemoria, request)),
+                        ProductoController.cacheControl(maxAge)).body(productoAssembler.toModel(producto)))
                 .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
-    // obtener una lista de productos pasando sus id's
+    // obtener una lista de productos pasando sus id's; los inexistentes van en X-Ids-No-Encontrados
     @GetMapping("/by-id/")
     public ResponseEntity<List<Producto>> getProductosById(@RequestParam List<Long> ids) {
-        return new ResponseEntity<>(productoService.findAllById(ids), HttpStatus.OK);
+        if (ids.size() > maximoIds) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Producto> productos = productoService.findAllById(ids);
+        return ResponseEntity.ok().headers(ProductoController.cabeceraIdsNoEncontrados(ids, productos)).body(productos);
     }
 
-    // guardar producto si el id no esta utilizado
+    // guardar producto si el nombre no esta utilizado; 400 si falta un campo obligatorio
     @PostMapping
     public ResponseEntity<EntityModel<Producto>> saveProducto(@RequestBody Producto producto) {
-        if (!productoService.existsById(producto.getId())) {
-            Producto savedProducto = productoService.save(producto);
-            return new ResponseEntity<>(productoAssembler.toModel(savedProducto), HttpStatus.OK);
+        if (!ProductoService.esValido(producto)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        return new ResponseEntity<>(HttpStatus.CONFLICT);
+        return productoService.insertIfAbsent(producto)
+                .map(productoAssembler::toModel)
+                .map(resource -> new ResponseEntity<>(resource, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.CONFLICT));
     }
 
-    // actualizar producto por id
+    // actualizar producto por id; devuelve el producto guardado, 400 si falta un campo obligatorio
     @PutMapping("/id/{id}")
     public ResponseEntity<EntityModel<Producto>> updateProducto(@PathVariable Long id, @RequestBody Producto producto) {
-        if (productoService.existsById(id)) {
-            Producto updatedProducto = productoService.update(id, producto);
-            return new ResponseEntity<>(productoAssembler.toModel(updatedProducto), HttpStatus.OK);
+        if (!ProductoService.esValido(producto)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return productoService.update(id, producto)
+                .map(productoAssembler::toModel)
+                .map(resource -> new ResponseEntity<>(resource, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     // eliminar producto por id (borrado logico)
     @DeleteMapping("/id/{id}")
     public ResponseEntity<Void> deleteProducto(@PathVariable Long id) {
-        if (productoService.existsById(id)) {
-            productoService.deleteById(id);
+        if (productoService.deleteById(id)) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -0,0 +1,76 @@
+package com.inventario.inventario.controller;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.inventario.inventario.dto.StockDisponible;
+import com.inventario.inventario.exception.ProductoNoEncontradoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.model.RetencionStock;
+import com.inventario.inventario.service.RetencionStockService;
+
+// retenciones temporales de stock para carritos: vencen solas si el checkout no las confirma
+@RequestMapping("/api/v1/productos/retenciones")
+@RestController
+public class RetencionStockController {
+
+    @Autowired
+    private RetencionStockService retencionStockService;
+
+    @Value("${inventario.stock.retenciones.minutos-maximo:60}")
+    private int minutosMaximo = 60;
+
+    // retener 'cantidad' del producto por 'minutos'; 404 si no existe, 409 si no hay stock suficiente
+    @PostMapping
+    public ResponseEntity<RetencionStock> retener(@RequestParam Long productoId, @RequestParam int cantidad,
+            @RequestParam(defaultValue = "15") int minutos) {
+        if (cantidad <= 0 || minutos < 1 || minutos > minutosMaximo) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(retencionStockService.retener(productoId, cantidad, Duration.ofMinutes(minutos)),
+                    HttpStatus.CREATED);
+        } catch (ProductoNoEncontradoException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (StockInsuficienteException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+
+    // checkout: el stock retenido queda descontado; 404 si la retencion ya no existe
+    @PostMapping("/{id}/confirmar")
+    public ResponseEntity<Void> confirmar(@PathVariable Long id) {
+        if (retencionStockService.confirmar(id)) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
+    // devolver el stock retenido antes de que venza
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancelar(@PathVariable Long id) {
+        if (retencionStockService.cancelar(id)) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
+    // stock, retenido y disponible (stock - retenido) de un producto
+    @GetMapping("/producto/{productoId}")
+    public ResponseEntity<StockDisponible> getDisponible(@PathVariable Long productoId) {
+        return retencionStockService.findDisponible(productoId)
+                .map(disponible -> new ResponseEntity<>(disponible, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+}
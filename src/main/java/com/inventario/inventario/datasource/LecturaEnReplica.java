@@ -0,0 +1,20 @@
+package com.inventario.inventario.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// marca una lectura de solo lectura que puede servirse desde una replica cuando inventario.replicas esta
+// habilitado; sin la marca, toda transaccion usa la primaria. No debe usarse en lecturas que avanzan una
+// marca de agua (versiones, outbox): el retraso de la replica podria hacer saltear filas.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LecturaEnReplica {
+
+    // el resultado termina en una cache compartida por todas las sesiones: solo se lee de una replica que ya
+    // reprodujo la ultima escritura de esta instancia, para no guardar en cache una copia atrasada
+    boolean cacheable() default false;
+}
@@ -0,0 +1,14 @@
+package com.inventario.inventario.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+@Aspect
+public class LecturaEnReplicaAspect {
+
+    @Around("@annotation(lectura)")
+    public Object enReplica(ProceedingJoinPoint punto, LecturaEnReplica lectura) throws Throwable {
+        return RuteoDataSource.enReplica(lectura.cacheable(), punto::proceed);
+    }
+}
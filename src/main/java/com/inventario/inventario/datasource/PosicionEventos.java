@@ -0,0 +1,60 @@
+package com.inventario.inventario.datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// posicion hasta la que una base (primaria o replica) tiene todos los eventos del outbox: la mayor secuencia S
+// tal que estan todas las anteriores, salteando los huecos mas viejos que la espera de huecos (la misma regla que
+// la marca de agua de EventoInventarioService). Cada escritura registra su evento en la misma transaccion, asi una
+// replica en la posicion S ya reprodujo todas las escrituras con version hasta S, aunque hayan confirmado fuera
+// de orden en la primaria
+final class PosicionEventos {
+
+    private static final int LOTE = 500;
+
+    private static final String ASENTADA =
+            "select secuencia from evento_inventario where fecha_millis <= ? order by secuencia desc limit 1";
+
+    private static final String POSTERIORES =
+            "select secuencia, fecha_millis from evento_inventario where secuencia > ? order by secuencia limit " + LOTE;
+
+    private PosicionEventos() {
+    }
+
+    // avanza desde 'desde' (una posicion ya medida, o 0 la primera vez)
+    static long medir(Connection conexion, long desde, long limiteHueco) throws SQLException {
+        long hasta = desde > 0 ? desde : asentada(conexion, limiteHueco);
+        try (PreparedStatement sentencia = conexion.prepareStatement(POSTERIORES)) {
+            while (true) {
+                sentencia.setLong(1, hasta);
+                int leidos = 0;
+                try (ResultSet filas = sentencia.executeQuery()) {
+                    while (filas.next()) {
+                        long secuencia = filas.getLong(1);
+                        if (secuencia != hasta + 1 && filas.getLong(2) > limiteHueco) {
+                            return hasta;
+                        }
+                        hasta = secuencia;
+                        leidos++;
+                    }
+                }
+                if (leidos < LOTE) {
+                    return hasta;
+                }
+            }
+        }
+    }
+
+    // la primera medicion arranca del ultimo evento anterior a la espera de huecos: por detras ya no hay huecos
+    // que puedan llenarse, y asi no se recorre todo lo retenido
+    private static long asentada(Connection conexion, long limiteHueco) throws SQLException {
+        try (PreparedStatement sentencia = conexion.prepareStatement(ASENTADA)) {
+            sentencia.setLong(1, limiteHueco);
+            try (ResultSet filas = sentencia.executeQuery()) {
+                return filas.next() ? filas.getLong(1) : 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.inventario.inventario.datasource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// enruta cada conexion a la primaria o a una replica. Va detras de un LazyConnectionDataSourceProxy: la
+// conexion real se pide en la primera sentencia, cuando la transaccion ya esta marcada como de solo lectura.
+// Una conexion va a una replica solo si la transaccion es de solo lectura, la lectura esta marcada con
+// @LecturaEnReplica y hay una replica sana que ya reprodujo la posicion que la lectura necesita (ver
+// PosicionEventos): la del token de la sesion para leer sus propias escrituras y, si el resultado termina en una
+// cache compartida, ademas la de la ultima escritura confirmada por esta instancia. En cualquier otro caso va a
+// la primaria. El chequeo periodico mide la posicion de cada replica y su retraso frente a la primaria: las que
+// fallan al conectar o se atrasan mas que el retraso maximo quedan fuera hasta que se recuperen.
+public class RuteoDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RuteoDataSource.class);
+
+    static final String PRIMARIA = "primaria";
+
+    // lectura marcada en curso en el hilo: null si no hay, si no indica si alimenta una cache compartida
+    private static final ThreadLocal<Boolean> LECTURA = new ThreadLocal<>();
+
+    static final ThreadLocal<Sesion> SESION = new ThreadLocal<>();
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final AtomicInteger turno = new AtomicInteger();
+
+    private final long retrasoMaximoNanos;
+
+    private final long esperaHuecoMillis;
+
+    // mayor posicion confirmada por una escritura de esta instancia
+    private final AtomicLong ultimaEscrita = new AtomicLong();
+
+    // posiciones de la primaria en cada chequeo (System.nanoTime(), posicion), de la mas vieja a la mas nueva:
+    // el retraso de una replica es el tiempo desde que la primaria paso la posicion que la replica aun no tiene
+    private final Deque<long[]> muestrasPrimaria = new ArrayDeque<>();
+
+    private long posicionPrimaria;
+
+    // se invoca cuando una lectura que no alimenta caches compartidas obtiene una conexion de replica
+    private Runnable alLeerDeReplica = () -> {
+    };
+
+    public RuteoDataSource(DataSource primaria, List<HikariDataSource> replicas, Duration retrasoMaximo,
+            Duration esperaHueco) {
+        Map<Object, Object> destinos = new HashMap<>();
+        destinos.put(PRIMARIA, primaria);
+        for (HikariDataSource replica : replicas) {
+            Replica entrada = new Replica(replica.getPoolName(), replica);
+            this.replicas.add(entrada);
+            destinos.put(entrada.clave, replica);
+        }
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primaria);
+        this.retrasoMaximoNanos = retrasoMaximo.toNanos();
+        this.esperaHuecoMillis = esperaHueco.toMillis();
+    }
+
+    public interface Lectura<T, E extends Throwable> {
+        T leer() throws E;
+    }
+
+    // ejecuta una lectura habilitada para replicas; la usan @LecturaEnReplica y las cargas que corren en otro hilo
+    public static <T, E extends Throwable> T enReplica(boolean cacheable, Lectura<T, E> lectura) throws E {
+        Boolean anterior = LECTURA.get();
+        LECTURA.set(cacheable);
+        try {
+            return lectura.leer();
+        } finally {
+            if (anterior == null) {
+                LECTURA.remove();
+            } else {
+                LECTURA.set(anterior);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Boolean cacheable = LECTURA.get();
+        if (cacheable == null || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARIA;
+        }
+        Sesion sesion = SESION.get();
+        long minima = sesion != null ? sesion.posicion : 0L;
+        if (cacheable) {
+            minima = Math.max(minima, ultimaEscrita.get());
+        }
+        Replica replica = siguienteReplicaSana(minima);
+        return replica != null ? replica.clave : PRIMARIA;
+    }
+
+    // si la replica elegida no entrega una conexion se la marca caida y la lectura sigue en la primaria
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object clave = determineCurrentLookupKey();
+        if (PRIMARIA.equals(clave)) {
+            return getResolvedDefaultDataSource().getConnection();
+        }
+        Replica replica = buscar(clave);
+        try {
+            Connection conexion = replica.dataSource.getConnection();
+            if (!Boolean.TRUE.equals(LECTURA.get())) {
+                alLeerDeReplica.run();
+            }
+            return conexion;
+        } catch (SQLException | RuntimeException e) {
+            marcar(replica, false, e.getMessage());
+            return getResolvedDefaultDataSource().getConnection();
+        }
+    }
+
+    // una transaccion de esta instancia confirmo eventos hasta 'posicion' (la llama EventoInventarioService): la
+    // sesion en curso la recibe como token y las lecturas cacheables esperan una replica que la tenga
+    public void confirmarPosicion(long posicion) {
+        ultimaEscrita.accumulateAndGet(posicion, Math::max);
+        Sesion sesion = SESION.get();
+        if (sesion != null) {
+            sesion.escribio(posicion);
+        }
+    }
+
+    // mide la posicion de la primaria y de cada replica; una replica queda sana si responde y su retraso no pasa
+    // el maximo tolerado
+    @Scheduled(fixedDelayString = "${inventario.replicas.intervalo-salud-ms:1000}")
+    public synchronized void verificarReplicas() {
+        long limiteHueco = System.currentTimeMillis() - esperaHuecoMillis;
+        try (Connection conexion = getResolvedDefaultDataSource().getConnection()) {
+            posicionPrimaria = PosicionEventos.medir(conexion, posicionPrimaria, limiteHueco);
+        } catch (SQLException | RuntimeException e) {
+            log.warn("no se pudo medir la posicion de la primaria: {}", e.getMessage());
+            return;
+        }
+        long ahora = System.nanoTime();
+        muestrasPrimaria.addLast(new long[] { ahora, posicionPrimaria });
+        // alcanza con una muestra anterior al retraso maximo: las mas viejas ya no cambian el resultado
+        while (muestrasPrimaria.size() > 1 && ahora - nanosDeLaSegunda() > retrasoMaximoNanos) {
+            muestrasPrimaria.removeFirst();
+        }
+
+        for (Replica replica : replicas) {
+            try (Connection conexion = replica.dataSource.getConnection()) {
+                if (!conexion.isValid(1)) {
+                    marcar(replica, false, "conexion invalida");
+                    continue;
+                }
+                replica.posicion = Math.max(replica.posicion, PosicionEventos.medir(conexion, replica.posicion, limiteHueco));
+                replica.retrasoNanos = retraso(replica.posicion, ahora);
+                marcar(replica, replica.retrasoNanos <= retrasoMaximoNanos, "atrasada "
+                        + Duration.ofNanos(replica.retrasoNanos).toMillis() + " ms (posicion " + replica.posicion
+                        + " de " + posicionPrimaria + ")");
+            } catch (SQLException | RuntimeException e) {
+                marcar(replica, false, e.getMessage());
+            }
+        }
+    }
+
+    public void setAlLeerDeReplica(Runnable alLeerDeReplica) {
+        this.alLeerDeReplica = alLeerDeReplica;
+    }
+
+    public int getReplicasSanas() {
+        return (int) replicas.stream().filter(replica -> replica.sana).count();
+    }
+
+    // retraso medido de cada replica en el ultimo chequeo
+    public Map<String, Duration> getRetrasos() {
+        Map<String, Duration> retrasos = new LinkedHashMap<>();
+        replicas.forEach(replica -> retrasos.put(replica.clave, Duration.ofNanos(replica.retrasoNanos)));
+        return retrasos;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private long nanosDeLaSegunda() {
+        Iterator<long[]> muestras = muestrasPrimaria.iterator();
+        muestras.next();
+        return muestras.next()[0];
+    }
+
+    // tiempo desde la muestra mas vieja en que la primaria ya pasaba la posicion de la replica (0 si la alcanzo)
+    private long retraso(long posicion, long ahora) {
+        for (long[] muestra : muestrasPrimaria) {
+            if (muestra[1] > posicion) {
+                return ahora - muestra[0];
+            }
+        }
+        return 0L;
+    }
+
+    private Replica siguienteReplicaSana(long posicionMinima) {
+        int cantidad = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), Math.max(1, cantidad));
+        for (int i = 0; i < cantidad; i++) {
+            Replica replica = replicas.get((inicio + i) % cantidad);
+            if (replica.sana && replica.posicion >= posicionMinima) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica buscar(Object clave) {
+        return replicas.stream().filter(replica -> replica.clave.equals(clave)).findFirst().orElseThrow();
+    }
+
+    private static void marcar(Replica replica, boolean sana, String causa) {
+        if (replica.sana != sana) {
+            if (sana) {
+                log.info("replica {} disponible", replica.clave);
+            } else {
+                log.warn("replica {} no disponible, las lecturas van a la primaria: {}", replica.clave, causa);
+            }
+        }
+        replica.sana = sana;
+    }
+
+    // lectura de las propias escrituras en una request: la posicion que debe tener la replica (la del token del
+    // cliente, y la de lo que la request ya escribio) y a quien avisar cuando una escritura la avanza
+    public static final class Sesion {
+
+        private long posicion;
+
+        private final LongConsumer alEscribir;
+
+        Sesion(long posicion, LongConsumer alEscribir) {
+            this.posicion = posicion;
+            this.alEscribir = alEscribir;
+        }
+
+        private void escribio(long confirmada) {
+            if (confirmada > posicion) {
+                posicion = confirmada;
+                alEscribir.accept(confirmada);
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final String clave;
+
+        private final HikariDataSource dataSource;
+
+        private volatile boolean sana = true;
+
+        // posicion reproducida medida en el ultimo chequeo; solo avanza
+        private volatile long posicion;
+
+        private volatile long retrasoNanos;
+
+        private Replica(String clave, HikariDataSource dataSource) {
+            this.clave = clave;
+            this.dataSource = dataSource;
+        }
+    }
+}
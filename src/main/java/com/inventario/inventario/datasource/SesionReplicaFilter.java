@@ -0,0 +1,64 @@
+package com.inventario.inventario.datasource;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// leer las propias escrituras: cada respuesta a una escritura lleva la posicion que confirmo (cabecera
+// X-Posicion-Inventario y cookie posicion-inventario), y una request que la devuelve solo lee de replicas que ya
+// la reprodujeron. El token vale en cualquier instancia. La cookie dura el retraso maximo: pasado ese tiempo toda
+// replica sana ya tiene la escritura
+public class SesionReplicaFilter extends OncePerRequestFilter {
+
+    public static final String CABECERA_POSICION = "X-Posicion-Inventario";
+
+    public static final String COOKIE_POSICION = "posicion-inventario";
+
+    private final Duration retrasoMaximo;
+
+    public SesionReplicaFilter(Duration retrasoMaximo) {
+        this.retrasoMaximo = retrasoMaximo;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain cadena)
+            throws ServletException, IOException {
+        RuteoDataSource.SESION.set(new RuteoDataSource.Sesion(posicion(request), confirmada -> {
+            if (!response.isCommitted()) {
+                response.setHeader(CABECERA_POSICION, Long.toString(confirmada));
+                response.addHeader("Set-Cookie", ResponseCookie.from(COOKIE_POSICION, Long.toString(confirmada))
+                        .path("/").maxAge(retrasoMaximo.toSeconds() + 1).httpOnly(true).sameSite("Lax").build().toString());
+            }
+        }));
+        try {
+            cadena.doFilter(request, response);
+        } finally {
+            RuteoDataSource.SESION.remove();
+        }
+    }
+
+    // la cabecera manda sobre la cookie; un token invalido se ignora
+    private static long posicion(HttpServletRequest request) {
+        String valor = request.getHeader(CABECERA_POSICION);
+        if (valor == null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE_POSICION.equals(cookie.getName())) {
+                    valor = cookie.getValue();
+                }
+            }
+        }
+        try {
+            return valor != null ? Math.max(0L, Long.parseLong(valor.trim())) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
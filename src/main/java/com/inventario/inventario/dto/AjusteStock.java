@@ -0,0 +1,15 @@
+package com.inventario.inventario.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// ajuste de stock de un producto dentro de un lote; delta negativo descuenta y positivo repone
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AjusteStock {
+    private Long id;
+
+    private int delta;
+}
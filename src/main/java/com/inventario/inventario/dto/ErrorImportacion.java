@@ -0,0 +1,15 @@
+package com.inventario.inventario.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// fila rechazada durante una importacion, con su numero de linea en el archivo
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ErrorImportacion {
+    private long linea;
+
+    private String mensaje;
+}
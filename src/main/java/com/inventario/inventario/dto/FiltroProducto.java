@@ -0,0 +1,25 @@
+package com.inventario.inventario.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// filtros de busqueda de productos; los campos nulos no filtran
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FiltroProducto {
+    private String marca;
+
+    private Boolean activo;
+
+    private Long precioMin;
+
+    private Long precioMax;
+
+    // productos con stock menor o igual a este umbral
+    private Integer stockMaximo;
+
+    // prefijo del nombre
+    private String nombre;
+}
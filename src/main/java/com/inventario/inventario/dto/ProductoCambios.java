@@ -0,0 +1,24 @@
+package com.inventario.inventario.dto;
+
+import java.util.List;
+
+import com.inventario.inventario.model.Producto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// productos modificados despues de un cursor (version, id), incluidos los desactivados; siguienteVersion y
+// siguienteId son el cursor de la proxima consulta y hayMas indica que conviene pedir otra pagina de inmediato
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductoCambios {
+    private List<Producto> productos;
+
+    private long siguienteVersion;
+
+    private long siguienteId;
+
+    private boolean hayMas;
+}
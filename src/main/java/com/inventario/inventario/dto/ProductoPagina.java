@@ -0,0 +1,19 @@
+package com.inventario.inventario.dto;
+
+import java.util.List;
+
+import com.inventario.inventario.model.Producto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// pagina de productos ordenada por id; siguienteCursor es null cuando no quedan mas filas
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductoPagina {
+    private List<Producto> productos;
+
+    private Long siguienteCursor;
+}
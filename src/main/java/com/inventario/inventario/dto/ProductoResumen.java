@@ -0,0 +1,20 @@
+package com.inventario.inventario.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// proyeccion liviana de producto para consumidores que solo necesitan precio y disponibilidad
+// (carrito, pedidos, precios); se construye directo desde la consulta, sin entidad administrada
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductoResumen {
+    private Long id;
+
+    private Long precio;
+
+    private int stock;
+
+    private Boolean activo;
+}
@@ -0,0 +1,17 @@
+package com.inventario.inventario.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// respuesta de las operaciones de reserva, liberacion y descuento de stock
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservaStock {
+    private Long productoId;
+
+    private int cantidad;
+
+    private ResultadoReserva resultado;
+}
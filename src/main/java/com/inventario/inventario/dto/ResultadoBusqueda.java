@@ -0,0 +1,23 @@
+package com.inventario.inventario.dto;
+
+import java.util.List;
+
+import com.inventario.inventario.model.Producto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// pagina numerada de una busqueda filtrada, con el total de productos que cumplen los filtros
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoBusqueda {
+    private List<Producto> productos;
+
+    private int pagina;
+
+    private int tamano;
+
+    private long totalElementos;
+}
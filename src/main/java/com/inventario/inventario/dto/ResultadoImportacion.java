@@ -0,0 +1,19 @@
+package com.inventario.inventario.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+// resumen de una importacion: filas guardadas, duplicadas dentro del archivo y rechazadas
+@Data
+public class ResultadoImportacion {
+    private long procesadas;
+
+    private long duplicadas;
+
+    private long rechazadas;
+
+    // se informan como maximo los primeros errores para no acumular el archivo en memoria
+    private List<ErrorImportacion> errores = new ArrayList<>();
+}
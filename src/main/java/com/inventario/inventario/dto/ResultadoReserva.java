@@ -0,0 +1,10 @@
+package com.inventario.inventario.dto;
+
+// resultado de una operacion de stock aplicada con un unico UPDATE condicional
+public enum ResultadoReserva {
+    APLICADA,
+    STOCK_INSUFICIENTE,
+    // el stock resultante no entra en la columna (int)
+    STOCK_EXCEDIDO,
+    NO_ENCONTRADO
+}
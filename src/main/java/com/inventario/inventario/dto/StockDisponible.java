@@ -0,0 +1,20 @@
+package com.inventario.inventario.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// stock de un producto frente a sus retenciones activas: disponible = stock - retenido
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockDisponible {
+    private Long productoId;
+
+    // existencias, incluido lo retenido por carritos
+    private int stock;
+
+    private int retenido;
+
+    private int disponible;
+}
@@ -0,0 +1,15 @@
+package com.inventario.inventario.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// stock total de un producto (suma de sus fracciones, o el de la fila para el stock en memoria)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockTotal {
+    private Long productoId;
+
+    private Long stock;
+}
@@ -0,0 +1,16 @@
+package com.inventario.inventario.exception;
+
+import java.util.Collection;
+
+import lombok.Getter;
+
+// uno o mas productos de la operacion no existen
+@Getter
+public class ProductoNoEncontradoException extends RuntimeException {
+    private final Collection<Long> ids;
+
+    public ProductoNoEncontradoException(Collection<Long> ids) {
+        super("Productos no encontrados: " + ids);
+        this.ids = ids;
+    }
+}
@@ -0,0 +1,14 @@
+package com.inventario.inventario.exception;
+
+import lombok.Getter;
+
+// el ajuste dejaria el stock de un producto por encima del maximo que admite la columna
+@Getter
+public class StockExcedidoException extends RuntimeException {
+    private final Long id;
+
+    public StockExcedidoException(Long id) {
+        super("El stock del producto " + id + " excederia el maximo admitido");
+        this.id = id;
+    }
+}
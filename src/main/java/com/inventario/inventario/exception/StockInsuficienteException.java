@@ -0,0 +1,14 @@
+package com.inventario.inventario.exception;
+
+import lombok.Getter;
+
+// el ajuste dejaria el stock de un producto en negativo
+@Getter
+public class StockInsuficienteException extends RuntimeException {
+    private final Long id;
+
+    public StockInsuficienteException(Long id) {
+        super("Stock insuficiente para el producto " + id);
+        this.id = id;
+    }
+}
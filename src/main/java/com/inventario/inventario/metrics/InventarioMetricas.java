@@ -0,0 +1,29 @@
+package com.inventario.inventario.metrics;
+
+import org.springframework.stereotype.Component;
+
+import com.inventario.inventario.dto.ResultadoReserva;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// contadores de negocio del servicio de inventario
+@Component
+public class InventarioMetricas {
+
+    private final MeterRegistry meterRegistry;
+
+    public InventarioMetricas(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // operacion: reservar, liberar o ajuste; resultado: APLICADA, STOCK_INSUFICIENTE o NO_ENCONTRADO
+    public void registrarOperacionStock(String operacion, ResultadoReserva resultado) {
+        Counter.builder("inventario.stock.operaciones")
+                .description("Operaciones de stock por resultado")
+                .tag("operacion", operacion)
+                .tag("resultado", resultado.name())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,68 @@
+package com.inventario.inventario.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// evento del outbox de inventario, escrito en la misma transaccion que el cambio del producto.
+// Los cambios completos llevan el estado resultante del producto; las reservas y liberaciones llevan
+// solo la cantidad, que el consumidor aplica sobre su copia en orden de secuencia.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "evento_inventario")
+public class EventoInventario {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long secuencia;
+
+    @Column(nullable = false)
+    private Long productoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private TipoEventoInventario tipo;
+
+    private Boolean activo;
+
+    @Column(length = 100)
+    private String nombre;
+
+    private Long precio;
+
+    private Integer stock;
+
+    @Column(length = 100)
+    private String marca;
+
+    // variacion de stock de reservas, liberaciones y ajustes
+    private Integer cantidad;
+
+    // instante de registro en milisegundos epoch
+    @Column(nullable = false)
+    private long fechaMillis;
+
+    public static EventoInventario deProducto(TipoEventoInventario tipo, Producto producto) {
+        return new EventoInventario(null, producto.getId(), tipo, producto.getActivo(), producto.getNombre(),
+                producto.getPrecio(), producto.getStock(), producto.getMarca(), null, System.currentTimeMillis());
+    }
+
+    public static EventoInventario deStock(TipoEventoInventario tipo, Long productoId, Integer stock, int cantidad) {
+        return new EventoInventario(null, productoId, tipo, null, null, null, stock, null, cantidad,
+                System.currentTimeMillis());
+    }
+
+    public static EventoInventario desactivado(Long productoId) {
+        return new EventoInventario(null, productoId, TipoEventoInventario.DESACTIVADO, false, null, null, null, null,
+                null, System.currentTimeMillis());
+    }
+}
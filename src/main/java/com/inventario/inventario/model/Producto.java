@@ -1,11 +1,17 @@
 package com.inventario.inventario.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,9 +20,23 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name= "producto")
+// cache de segundo nivel (CacheSegundoNivelConfig); las escrituras por JDBC descartan solo sus filas
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "producto")
+@Table(name= "producto", uniqueConstraints = @UniqueConstraint(name = Producto.RESTRICCION_NOMBRE, columnNames = "nombre"),
+        indexes = {
+    // busquedas por marca dentro de los productos activos (o inactivos)
+    @Index(name = "idx_producto_activo_marca", columnList = "activo, marca"),
+    @Index(name = "idx_producto_precio", columnList = "precio"),
+    @Index(name = "idx_producto_stock", columnList = "stock"),
+    // sincronizacion incremental: filas modificadas despues de una version
+    @Index(name = "idx_producto_version", columnList = "version")
+})
 
 public class Producto {
+    // nombre de la restriccion unica de 'nombre': su violacion es la unica que indica un producto duplicado
+    public static final String RESTRICCION_NOMBRE = "uk_producto_nombre";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -24,7 +44,7 @@ public class Producto {
     @Column(nullable = false)
     private Boolean activo;
     
-    @Column(length = 100, nullable = false, unique = true)
+    @Column(length = 100, nullable = false)
     private String nombre;
 
     @Column(length = 15, nullable = false)
@@ -35,4 +55,13 @@ public class Producto {
 
     @Column(length = 100, nullable = false)
     private String marca;
+
+    // version de la ultima modificacion: la secuencia de su evento en el outbox, renovada por cada escritura
+    // incluido el borrado logico; no es un @Version de bloqueo optimista
+    @Column(nullable = false)
+    private long version;
+
+    public Producto(Long id, Boolean activo, String nombre, Long precio, int stock, String marca) {
+        this(id, activo, nombre, precio, stock, marca, 0L);
+    }
 }
@@ -0,0 +1,40 @@
+package com.inventario.inventario.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// stock retenido temporalmente por un carrito: la cantidad ya se desconto del producto y vuelve a el si la
+// retencion vence o se cancela antes de confirmarse
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "retencion_stock", indexes = {
+    // stock retenido de un producto
+    @Index(name = "idx_retencion_producto", columnList = "producto_id"),
+    // barrido de respaldo de las vencidas
+    @Index(name = "idx_retencion_vence", columnList = "vence_en")
+})
+public class RetencionStock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private int cantidad;
+
+    // vencimiento en milisegundos desde epoch
+    @Column(name = "vence_en", nullable = false)
+    private long venceEn;
+}
@@ -0,0 +1,36 @@
+package com.inventario.inventario.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// fraccion del stock de un producto en modo fraccionado: el stock total es la suma de sus fracciones y cada
+// descuento actualiza una sola, asi las reservas concurrentes sobre un producto caliente no esperan la misma fila
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "producto_stock_fraccion", uniqueConstraints =
+        @UniqueConstraint(name = "uk_stock_fraccion_producto", columnNames = { "producto_id", "fraccion" }))
+public class StockFraccion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    // indice de la fraccion, de 0 a cantidad de fracciones - 1
+    @Column(nullable = false)
+    private int fraccion;
+
+    @Column(nullable = false)
+    private int stock;
+}
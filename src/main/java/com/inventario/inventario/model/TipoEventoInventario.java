@@ -0,0 +1,15 @@
+package com.inventario.inventario.model;
+
+// tipos de cambio registrados en el outbox de inventario
+public enum TipoEventoInventario {
+    CREADO,
+    ACTUALIZADO,
+    DESACTIVADO,
+    STOCK_RESERVADO,
+    STOCK_LIBERADO,
+    STOCK_AJUSTADO,
+    // secuencia de un evento revertido; no se entrega a los consumidores
+    DESCARTADO,
+    // ultimo evento borrado por la purga, conservado como limite de lo retenido; no se entrega
+    PURGADO
+}
@@ -0,0 +1,32 @@
+package com.inventario.inventario.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// instancia que tiene el stock en memoria habilitado: una unica fila que se renueva con la escritura por detras.
+// Otra instancia no arranca el motor mientras la vigencia no haya vencido
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "stock_memoria_titular")
+public class TitularStockMemoria {
+
+    public static final long UNICO = 1L;
+
+    @Id
+    private Long id;
+
+    // host y directorio del diario: la misma instancia que reinicia la retoma sin esperar el vencimiento
+    @Column(nullable = false, length = 255)
+    private String titular;
+
+    // vencimiento en milisegundos desde epoch
+    @Column(name = "vence_en", nullable = false)
+    private long venceEn;
+}
@@ -0,0 +1,43 @@
+package com.inventario.inventario.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.inventario.inventario.model.EventoInventario;
+import com.inventario.inventario.model.TipoEventoInventario;
+
+@Repository
+public interface EventoInventarioRepository extends JpaRepository<EventoInventario, Long> {
+
+    // eventos visibles posteriores al cursor, en orden de secuencia (puede haber huecos)
+    @Query("select e from EventoInventario e where e.secuencia > :desde order by e.secuencia")
+    List<EventoInventario> findPosteriores(@Param("desde") Long desde, Pageable pageable);
+
+    @Query("select count(e) from EventoInventario e where e.secuencia > :desde")
+    long countPosteriores(@Param("desde") long desde);
+
+    // secuencias registradas hasta 'limite', de la mas reciente hacia atras
+    @Query("select e.secuencia from EventoInventario e where e.fechaMillis <= :limite order by e.secuencia desc")
+    List<Long> findAsentadas(@Param("limite") long limite, Pageable pageable);
+
+    // primer evento retenido: tras una purga es su marca PURGADO
+    Optional<EventoInventario> findFirstByOrderBySecuenciaAsc();
+
+    @Query("select max(e.secuencia) from EventoInventario e where e.fechaMillis < :limite")
+    Optional<Long> findUltimaAnterior(@Param("limite") long limite);
+
+    @Modifying
+    @Query("delete from EventoInventario e where e.secuencia < :secuencia")
+    int deleteAnteriores(@Param("secuencia") long secuencia);
+
+    @Modifying
+    @Query("update EventoInventario e set e.tipo = :tipo where e.secuencia = :secuencia")
+    int updateTipo(@Param("secuencia") long secuencia, @Param("tipo") TipoEventoInventario tipo);
+}
@@ -0,0 +1,48 @@
+package com.inventario.inventario.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.inventario.inventario.dto.FiltroProducto;
+import com.inventario.inventario.model.Producto;
+
+import jakarta.persistence.criteria.Predicate;
+
+// condiciones de busqueda sobre columnas indexadas de producto: (activo, marca), precio, stock y nombre
+public final class ProductoEspecificaciones {
+
+    private ProductoEspecificaciones() {
+    }
+
+    public static Specification<Producto> conFiltro(FiltroProducto filtro) {
+        return (root, query, cb) -> {
+            List<Predicate> condiciones = new ArrayList<>();
+            if (filtro.getActivo() != null) {
+                condiciones.add(cb.equal(root.get("activo"), filtro.getActivo()));
+            }
+            if (filtro.getMarca() != null) {
+                condiciones.add(cb.equal(root.get("marca"), filtro.getMarca()));
+            }
+            if (filtro.getPrecioMin() != null) {
+                condiciones.add(cb.greaterThanOrEqualTo(root.get("precio"), filtro.getPrecioMin()));
+            }
+            if (filtro.getPrecioMax() != null) {
+                condiciones.add(cb.lessThanOrEqualTo(root.get("precio"), filtro.getPrecioMax()));
+            }
+            if (filtro.getStockMaximo() != null) {
+                condiciones.add(cb.lessThanOrEqualTo(root.get("stock"), filtro.getStockMaximo()));
+            }
+            // 'like prefijo%' sin comodin inicial, para que use el indice unico de nombre
+            if (filtro.getNombre() != null && !filtro.getNombre().isEmpty()) {
+                condiciones.add(cb.like(root.get("nombre"), escaparLike(filtro.getNombre()) + "%", '\\'));
+            }
+            return cb.and(condiciones.toArray(new Predicate[0]));
+        };
+    }
+
+    static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,11 +1,75 @@
 package com.inventario.inventario.repository;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.inventario.inventario.dto.ProductoResumen;
+import com.inventario.inventario.dto.StockTotal;
 import com.inventario.inventario.model.Producto;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long>{
-// los metodos on heredados de JpaRepository
+public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSpecificationExecutor<Producto>{
+// los metodos on heredados de JpaRepository; las busquedas filtradas usan ProductoEspecificaciones
+
+    // paginacion por cursor: siguiente bloque de productos con id mayor al cursor
+    List<Producto> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // proyecciones de solo lectura: id, precio, stock y activo, sin materializar la entidad; el stock de un
+    // producto fraccionado es la suma de sus fracciones
+    String RESUMEN = "select new com.inventario.inventario.dto.ProductoResumen(p.id, p.precio, "
+            + "cast(coalesce((select sum(f.stock) from StockFraccion f where f.productoId = p.id), p.stock) as Integer), "
+            + "p.activo) from Producto p ";
+
+    @Query(RESUMEN + "where p.id = :id")
+    Optional<ProductoResumen> findResumenById(@Param("id") Long id);
+
+    @Query(RESUMEN + "where p.id in :ids")
+    List<ProductoResumen> findResumenByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(RESUMEN + "where p.id > :id order by p.id")
+    List<ProductoResumen> findResumenByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    // stock de los productos, para cargarlo en el motor de stock en memoria
+    @Query("select new com.inventario.inventario.dto.StockTotal(p.id, cast(p.stock as Long)) from Producto p")
+    List<StockTotal> findStocks();
+
+    @Query("select p.stock from Producto p where p.id = :id")
+    Optional<Integer> findStockById(@Param("id") Long id);
+
+    // sincronizacion incremental: filas modificadas (incluidas las desactivadas) despues del cursor (version, id)
+    // y hasta la marca de agua; el id desempata las filas que comparten version (las anteriores a las versiones)
+    @Query("select p from Producto p where (p.version > :desde or (p.version = :desde and p.id > :despuesDe)) "
+            + "and p.version <= :hasta order by p.version, p.id")
+    List<Producto> findModificados(@Param("desde") long desde, @Param("despuesDe") long despuesDe,
+            @Param("hasta") long hasta, Pageable pageable);
+
+    // recorrido completo del catalogo leyendo filas por bloques, sin cargarlo entero en memoria
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Producto p order by p.id")
+    Stream<Producto> streamAll();
+
+    // bloquea los productos en orden de id para que lotes concurrentes no se bloqueen mutuamente
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Producto p where p.id in :ids order by p.id")
+    List<Producto> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,42 @@
+package com.inventario.inventario.repository;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.inventario.inventario.model.RetencionStock;
+
+import jakarta.persistence.QueryHint;
+
+@Repository
+public interface RetencionStockRepository extends JpaRepository<RetencionStock, Long> {
+
+    // devuelve 0 si otra instancia (o una confirmacion) ya la borro: solo quien la borra devuelve el stock
+    @Modifying
+    @Query("delete from RetencionStock r where r.id = :id")
+    int eliminar(@Param("id") Long id);
+
+    @Query("select coalesce(sum(r.cantidad), 0) from RetencionStock r where r.productoId = :productoId")
+    int sumarRetenido(@Param("productoId") Long productoId);
+
+    // todas las retenciones como copias no administradas, para recargar la rueda al arrancar sin que el
+    // contexto de persistencia crezca con ellas
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.inventario.inventario.model.RetencionStock(r.id, r.productoId, r.cantidad, r.venceEn) "
+            + "from RetencionStock r")
+    Stream<RetencionStock> streamAll();
+
+    // vencidas antes de 'limite' por el indice de vencimiento, las mas viejas primero
+    @Query("select new com.inventario.inventario.model.RetencionStock(r.id, r.productoId, r.cantidad, r.venceEn) "
+            + "from RetencionStock r where r.venceEn < :limite order by r.venceEn")
+    List<RetencionStock> findVencidas(@Param("limite") long limite, Pageable pageable);
+}
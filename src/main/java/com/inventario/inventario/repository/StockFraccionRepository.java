@@ -0,0 +1,47 @@
+package com.inventario.inventario.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.inventario.inventario.dto.StockTotal;
+import com.inventario.inventario.model.StockFraccion;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface StockFraccionRepository extends JpaRepository<StockFraccion, Long> {
+
+    @Query("select count(f) from StockFraccion f where f.productoId = :productoId")
+    int contarFracciones(@Param("productoId") Long productoId);
+
+    // descuenta de una fraccion solo si le alcanza; devuelve 0 si no alcanza o la fraccion no existe
+    @Modifying
+    @Query("update StockFraccion f set f.stock = f.stock - :cantidad "
+            + "where f.productoId = :productoId and f.fraccion = :fraccion and f.stock >= :cantidad")
+    int decrementar(@Param("productoId") Long productoId, @Param("fraccion") int fraccion, @Param("cantidad") int cantidad);
+
+    // suma a una fraccion solo si queda en 'maximo' o menos; devuelve 0 si no entra o la fraccion no existe
+    @Modifying
+    @Query("update StockFraccion f set f.stock = f.stock + :cantidad "
+            + "where f.productoId = :productoId and f.fraccion = :fraccion and f.stock <= :tope")
+    int incrementar(@Param("productoId") Long productoId, @Param("fraccion") int fraccion, @Param("cantidad") int cantidad,
+            @Param("tope") int tope);
+
+    // bloquea todas las fracciones de los productos en orden, para rebalancear o fijar su total
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from StockFraccion f where f.productoId in :productoIds order by f.productoId, f.fraccion")
+    List<StockFraccion> findByProductoIdInForUpdate(@Param("productoIds") Collection<Long> productoIds);
+
+    // productos cuyo stock en la tabla producto difiere de la suma de sus fracciones
+    @Query("select new com.inventario.inventario.dto.StockTotal(f.productoId, sum(f.stock)) "
+            + "from StockFraccion f, Producto p where p.id = f.productoId group by f.productoId, p.stock "
+            + "having sum(f.stock) <> p.stock")
+    List<StockTotal> findTotalesDesactualizados();
+}
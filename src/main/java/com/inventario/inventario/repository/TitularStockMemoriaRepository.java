@@ -0,0 +1,26 @@
+package com.inventario.inventario.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.inventario.inventario.model.TitularStockMemoria;
+
+@Repository
+public interface TitularStockMemoriaRepository extends JpaRepository<TitularStockMemoria, Long> {
+
+    // toma o renueva la titularidad si ya es propia o la anterior vencio; 0 si otra instancia la tiene vigente
+    // (o si la fila aun no existe)
+    @Modifying
+    @Query("update TitularStockMemoria t set t.titular = :titular, t.venceEn = :venceEn "
+            + "where t.id = :id and (t.titular = :titular or t.venceEn < :ahora)")
+    int tomar(@Param("id") Long id, @Param("titular") String titular, @Param("venceEn") long venceEn,
+            @Param("ahora") long ahora);
+
+    // la deja vencida para que otra instancia pueda tomarla enseguida
+    @Modifying
+    @Query("update TitularStockMemoria t set t.venceEn = 0 where t.id = :id and t.titular = :titular")
+    int soltar(@Param("id") Long id, @Param("titular") String titular);
+}
@@ -0,0 +1,250 @@
+package com.inventario.inventario.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.inventario.inventario.model.EventoInventario;
+import com.inventario.inventario.model.TipoEventoInventario;
+
+import jakarta.annotation.PreDestroy;
+
+// reparto de eventos del outbox a suscriptores SSE y de long-poll. Un unico sondeo periodico lee los
+// eventos nuevos desde el menor cursor pendiente y los entrega a todos los suscriptores, asi la carga
+// sobre la base no crece con la cantidad de consumidores. Los envios SSE corren fuera del hilo del sondeo:
+// un cliente lento no demora a los demas ni a los siguientes sondeos.
+// Un cursor anterior a la ultima purga no se continua: los eventos intermedios ya no existen. Se rechaza al
+// suscribir, y si la purga lo alcanza despues el long-poll responde 410 y el flujo SSE envia RESINCRONIZAR
+// y se cierra; en ambos casos el consumidor vuelve a descargar el catalogo.
+@Component
+public class EventoInventarioFeed {
+
+    public static final String RESINCRONIZAR = "RESINCRONIZAR";
+
+    @Autowired
+    private EventoInventarioService eventoInventarioService;
+
+    @Value("${inventario.eventos.tamano-lote:500}")
+    private int tamanoLote = 500;
+
+    private final List<Suscripcion> suscripciones = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService envios = Executors.newVirtualThreadPerTaskExecutor();
+
+    // el cursor quedo detras de la ultima purga
+    public boolean vencido(long desde) {
+        return desde < eventoInventarioService.purgadoHasta();
+    }
+
+    // flujo SSE desde el cursor; cada evento lleva su secuencia como id (reanudable con Last-Event-ID)
+    public SseEmitter suscribir(long desde, Duration duracion) {
+        SseEmitter emitter = new SseEmitter(duracion.toMillis());
+        SuscripcionSse suscripcion = new SuscripcionSse(desde, emitter);
+        emitter.onCompletion(() -> suscripciones.remove(suscripcion));
+        emitter.onTimeout(() -> suscripciones.remove(suscripcion));
+        emitter.onError(error -> suscripciones.remove(suscripcion));
+        suscripciones.add(suscripcion);
+        return emitter;
+    }
+
+    // long-poll: responde con los eventos posteriores al cursor apenas existan, o 204 al vencer la espera;
+    // 410 si el cursor es anterior a lo retenido
+    public DeferredResult<ResponseEntity<List<EventoInventario>>> esperar(long desde, Duration espera) {
+        DeferredResult<ResponseEntity<List<EventoInventario>>> resultado =
+                new DeferredResult<>(espera.toMillis(), new ResponseEntity<>(HttpStatus.NO_CONTENT));
+        if (vencido(desde)) {
+            resultado.setResult(new ResponseEntity<>(HttpStatus.GONE));
+            return resultado;
+        }
+        SuscripcionLongPoll suscripcion = new SuscripcionLongPoll(desde, resultado);
+        resultado.onCompletion(() -> suscripciones.remove(suscripcion));
+        suscripciones.add(suscripcion);
+        return resultado;
+    }
+
+    public int getSuscriptores() {
+        return suscripciones.size();
+    }
+
+    // se consulta desde el menor cursor; si el lote viene completo, los suscriptores que ya estaban al dia
+    // respecto de el se atienden con otra consulta desde su propio cursor
+    @Scheduled(fixedDelayString = "${inventario.eventos.intervalo-ms:500}")
+    public void despachar() {
+        List<Suscripcion> pendientes = vigentes(new ArrayList<>(suscripciones));
+        while (!pendientes.isEmpty()) {
+            long desde = pendientes.stream().mapToLong(Suscripcion::getCursor).min().getAsLong();
+            List<EventoInventario> eventos = eventoInventarioService.leer(desde, tamanoLote);
+            if (eventos.isEmpty()) {
+                return;
+            }
+
+            long ultimo = eventos.get(eventos.size() - 1).getSecuencia();
+            List<Suscripcion> alDia = new ArrayList<>();
+            for (Suscripcion suscripcion : pendientes) {
+                if (suscripcion.getCursor() >= ultimo) {
+                    alDia.add(suscripcion);
+                } else if (!suscripcion.entregar(posteriores(eventos, suscripcion.getCursor()), ultimo)) {
+                    suscripciones.remove(suscripcion);
+                }
+            }
+            if (eventos.size() < tamanoLote) {
+                return;
+            }
+            pendientes = alDia;
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        envios.shutdown();
+    }
+
+    // avisa a las suscripciones que la purga dejo atras y devuelve las demas
+    private List<Suscripcion> vigentes(List<Suscripcion> pendientes) {
+        if (pendientes.isEmpty()) {
+            return pendientes;
+        }
+        long purgado = eventoInventarioService.purgadoHasta();
+        List<Suscripcion> vigentes = new ArrayList<>(pendientes.size());
+        for (Suscripcion suscripcion : pendientes) {
+            if (suscripcion.getCursor() >= purgado) {
+                vigentes.add(suscripcion);
+            } else if (suscripcion.vencer(purgado)) {
+                suscripciones.remove(suscripcion);
+            }
+        }
+        return vigentes;
+    }
+
+    // eventos posteriores al cursor sin los descartados, que solo ocupan la secuencia de un rollback, ni la
+    // marca de la purga
+    private static List<EventoInventario> posteriores(List<EventoInventario> eventos, long cursor) {
+        List<EventoInventario> visibles = new ArrayList<>();
+        for (EventoInventario evento : eventos) {
+            if (evento.getSecuencia() > cursor && evento.getTipo() != TipoEventoInventario.DESCARTADO
+                    && evento.getTipo() != TipoEventoInventario.PURGADO) {
+                visibles.add(evento);
+            }
+        }
+        return visibles;
+    }
+
+    private abstract static class Suscripcion {
+        protected volatile long cursor;
+
+        Suscripcion(long cursor) {
+            this.cursor = cursor;
+        }
+
+        long getCursor() {
+            return cursor;
+        }
+
+        // entrega los eventos posteriores al cursor y lo deja en 'hasta'; la lista esta vacia si el tramo era
+        // solo de descartados. false si la suscripcion termino
+        abstract boolean entregar(List<EventoInventario> eventos, long hasta);
+
+        // avisa que el cursor quedo detras de la purga 'purgado'; false si no pudo hacerlo en esta ronda
+        abstract boolean vencer(long purgado);
+    }
+
+    private final class SuscripcionSse extends Suscripcion {
+        private final SseEmitter emitter;
+
+        private final AtomicBoolean enviando = new AtomicBoolean();
+
+        SuscripcionSse(long cursor, SseEmitter emitter) {
+            super(cursor);
+            this.emitter = emitter;
+        }
+
+        // mientras un envio sigue en curso el cursor no avanzo: se saltea la ronda en lugar de repetir eventos
+        @Override
+        boolean entregar(List<EventoInventario> eventos, long hasta) {
+            if (!enviando.compareAndSet(false, true)) {
+                return true;
+            }
+            if (eventos.isEmpty()) {
+                cursor = hasta;
+                enviando.set(false);
+                return true;
+            }
+            List<EventoInventario> lote = new ArrayList<>(eventos);
+            envios.execute(() -> {
+                try {
+                    for (EventoInventario evento : lote) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(evento.getSecuencia()))
+                                .name(evento.getTipo().name())
+                                .data(evento, MediaType.APPLICATION_JSON));
+                        cursor = evento.getSecuencia();
+                    }
+                    cursor = hasta;
+                } catch (IOException | IllegalStateException e) {
+                    suscripciones.remove(this);
+                    emitter.completeWithError(e);
+                } finally {
+                    enviando.set(false);
+                }
+            });
+            return true;
+        }
+
+        // despues del envio en curso, si lo hay, para no intercalar el aviso con sus eventos
+        @Override
+        boolean vencer(long purgado) {
+            if (!enviando.compareAndSet(false, true)) {
+                return false;
+            }
+            envios.execute(() -> {
+                try {
+                    emitter.send(SseEmitter.event().name(RESINCRONIZAR).data(purgado));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(e);
+                }
+            });
+            return true;
+        }
+    }
+
+    private static class SuscripcionLongPoll extends Suscripcion {
+        private final DeferredResult<ResponseEntity<List<EventoInventario>>> resultado;
+
+        SuscripcionLongPoll(long cursor, DeferredResult<ResponseEntity<List<EventoInventario>>> resultado) {
+            super(cursor);
+            this.resultado = resultado;
+        }
+
+        @Override
+        boolean entregar(List<EventoInventario> eventos, long hasta) {
+            if (eventos.isEmpty()) {
+                cursor = hasta;
+                return true;
+            }
+            resultado.setResult(new ResponseEntity<>(new ArrayList<>(eventos), HttpStatus.OK));
+            return false;
+        }
+
+        @Override
+        boolean vencer(long purgado) {
+            resultado.setResult(new ResponseEntity<>(HttpStatus.GONE));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.inventario.inventario.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inventario.inventario.datasource.RuteoDataSource;
+import com.inventario.inventario.model.EventoInventario;
+import com.inventario.inventario.model.TipoEventoInventario;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+
+import jakarta.annotation.PreDestroy;
+
+// outbox de cambios de inventario: los eventos se agregan dentro de la transaccion del cambio y se leen
+// por secuencia. La secuencia se asigna al insertar pero las transacciones confirman en otro orden, asi que
+// un hueco en la secuencia puede ser un evento aun sin confirmar: la lectura entrega solo el tramo contiguo
+// al cursor y se detiene en el primer hueco, salvo que sea definitivo (ver prefijoContiguo). La secuencia
+// del evento es tambien la version de la fila que cambia, y el tramo contiguo es la marca de agua en orden
+// de commit de esas versiones.
+@Service
+public class EventoInventarioService {
+
+    private static final Logger log = LoggerFactory.getLogger(EventoInventarioService.class);
+
+    private static final String INSERT = "insert into evento_inventario "
+            + "(producto_id, tipo, activo, nombre, precio, stock, marca, cantidad, fecha_millis) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // ocupa la secuencia de un evento revertido para que la lectura no lo espere
+    private static final String DESCARTAR = "insert into evento_inventario (secuencia, producto_id, tipo, fecha_millis) "
+            + "values (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // solo con inventario.replicas.habilitado
+    @Autowired(required = false)
+    private RuteoDataSource ruteoDataSource;
+
+    // duracion maxima de una transaccion que registra eventos: pasado ese tiempo un hueco ya no puede llenarse
+    @Value("${inventario.eventos.espera-hueco:30s}")
+    private Duration esperaHueco = Duration.ofSeconds(30);
+
+    @Value("${inventario.eventos.retencion:7d}")
+    private Duration retencion = Duration.ofDays(7);
+
+    @Value("${inventario.eventos.tamano-lote:500}")
+    private int tamanoLote = 500;
+
+    // ultima marca de agua calculada; solo avanza
+    private final AtomicLong marca = new AtomicLong();
+
+    private final ExecutorService descartes = Executors.newVirtualThreadPerTaskExecutor();
+
+    // devuelve la secuencia asignada, que el llamador usa como version de la fila
+    public long registrar(EventoInventario evento) {
+        registrar(List.of(evento));
+        return evento.getSecuencia();
+    }
+
+    // se envian como batch JDBC (la generacion IDENTITY impide a Hibernate agrupar los insert) y cada evento
+    // recibe su secuencia. Si la transaccion se revierte, las secuencias tomadas se ocupan con eventos DESCARTADO
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrar(List<EventoInventario> eventos) {
+        if (eventos.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) conexion -> {
+            try (PreparedStatement sentencia = conexion.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+                for (EventoInventario evento : eventos) {
+                    sentencia.setLong(1, evento.getProductoId());
+                    sentencia.setString(2, evento.getTipo().name());
+                    sentencia.setObject(3, evento.getActivo());
+                    sentencia.setString(4, evento.getNombre());
+                    sentencia.setObject(5, evento.getPrecio());
+                    sentencia.setObject(6, evento.getStock());
+                    sentencia.setString(7, evento.getMarca());
+                    sentencia.setObject(8, evento.getCantidad());
+                    sentencia.setLong(9, evento.getFechaMillis());
+                    sentencia.addBatch();
+                }
+                sentencia.executeBatch();
+                try (ResultSet secuencias = sentencia.getGeneratedKeys()) {
+                    for (EventoInventario evento : eventos) {
+                        secuencias.next();
+                        evento.setSecuencia(secuencias.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+        registrados().eventos.addAll(eventos);
+    }
+
+    @Transactional(readOnly = true)
+    public List<EventoInventario> leer(long desde, int limite) {
+        List<EventoInventario> eventos = eventoInventarioRepository.findPosteriores(desde, PageRequest.of(0, limite));
+        return prefijoContiguo(eventos, desde, System.currentTimeMillis() - esperaHueco.toMillis());
+    }
+
+    // marca de agua sumada a la cantidad de eventos ya confirmados por encima de ella: crece con cada commit que
+    // registra eventos aunque las transacciones confirmen fuera de orden, por lo que sirve de version del catalogo
+    @Transactional(readOnly = true)
+    public long versionCatalogo() {
+        List<EventoInventario> eventos;
+        long hasta = inicioMarca();
+        long posteriores = 0;
+        do {
+            eventos = eventoInventarioRepository.findPosteriores(hasta, PageRequest.of(0, tamanoLote));
+            List<EventoInventario> contiguos = prefijoContiguo(eventos, hasta,
+                    System.currentTimeMillis() - esperaHueco.toMillis());
+            if (!contiguos.isEmpty()) {
+                hasta = contiguos.get(contiguos.size() - 1).getSecuencia();
+            }
+            posteriores = eventos.size() - contiguos.size();
+        } while (posteriores == 0 && eventos.size() == tamanoLote);
+        if (posteriores > 0 && eventos.size() == tamanoLote) {
+            posteriores = eventoInventarioRepository.countPosteriores(hasta);
+        }
+        marca.accumulateAndGet(hasta, Math::max);
+        return hasta + posteriores;
+    }
+
+    // mayor secuencia hasta la que todos los eventos estan confirmados o descartados: ninguna transaccion en
+    // curso puede terminar con una version menor o igual
+    @Transactional(readOnly = true)
+    public long marcaDeAgua() {
+        long hasta = inicioMarca();
+        List<EventoInventario> contiguos;
+        do {
+            contiguos = leer(hasta, tamanoLote);
+            if (!contiguos.isEmpty()) {
+                hasta = contiguos.get(contiguos.size() - 1).getSecuencia();
+            }
+        } while (contiguos.size() == tamanoLote);
+        return marca.accumulateAndGet(hasta, Math::max);
+    }
+
+    // la primera vez se parte del ultimo evento registrado antes de la espera de huecos: todo lo anterior ya
+    // termino, y asi no se recorre el outbox retenido completo
+    private long inicioMarca() {
+        long desde = marca.get();
+        if (desde == 0) {
+            desde = eventoInventarioRepository.findAsentadas(System.currentTimeMillis() - esperaHueco.toMillis(),
+                    PageRequest.of(0, 1)).stream().findFirst().orElse(0L);
+        }
+        return desde;
+    }
+
+    // eventos desde el cursor hasta el primer hueco de secuencia. Las secuencias que faltan se tomaron antes
+    // de insertar el evento que las sigue: si ese evento se registro antes de 'limiteHueco', la transaccion
+    // que las tenia ya termino y el hueco es de un rollback (o de eventos purgados), y se saltea
+    static List<EventoInventario> prefijoContiguo(List<EventoInventario> eventos, long desde, long limiteHueco) {
+        long esperada = desde + 1;
+        int contiguos = 0;
+        for (EventoInventario evento : eventos) {
+            if (evento.getSecuencia() != esperada && evento.getFechaMillis() > limiteHueco) {
+                break;
+            }
+            esperada = evento.getSecuencia() + 1;
+            contiguos++;
+        }
+        return eventos.subList(0, contiguos);
+    }
+
+    // descarta los eventos mas antiguos que la retencion. El ultimo de ellos queda como marca PURGADO y se
+    // borra todo lo anterior a el, asi la marca es siempre el primer evento retenido; un consumidor con el
+    // cursor detras de ella perdio eventos y debe volver a descargar el catalogo completo (ver purgadoHasta)
+    @Scheduled(fixedDelayString = "${inventario.eventos.intervalo-purga-ms:3600000}")
+    @Transactional
+    public void purgar() {
+        eventoInventarioRepository.findUltimaAnterior(System.currentTimeMillis() - retencion.toMillis())
+                .ifPresent(ultima -> {
+                    eventoInventarioRepository.deleteAnteriores(ultima);
+                    eventoInventarioRepository.updateTipo(ultima, TipoEventoInventario.PURGADO);
+                });
+    }
+
+    // secuencia de la marca de la ultima purga, 0 si nunca se purgo: un cursor menor ya no se puede continuar
+    @Transactional(readOnly = true)
+    public long purgadoHasta() {
+        return eventoInventarioRepository.findFirstByOrderBySecuenciaAsc()
+                .filter(evento -> evento.getTipo() == TipoEventoInventario.PURGADO)
+                .map(EventoInventario::getSecuencia)
+                .orElse(0L);
+    }
+
+    private void descartar(List<EventoInventario> eventos) {
+        long ahora = System.currentTimeMillis();
+        try {
+            transactionTemplate.executeWithoutResult(estado -> jdbcTemplate.batchUpdate(DESCARTAR, eventos,
+                    eventos.size(), (sentencia, evento) -> {
+                        sentencia.setLong(1, evento.getSecuencia());
+                        sentencia.setLong(2, evento.getProductoId());
+                        sentencia.setString(3, TipoEventoInventario.DESCARTADO.name());
+                        sentencia.setLong(4, ahora);
+                    }));
+        } catch (RuntimeException e) {
+            log.warn("no se pudieron descartar {} eventos revertidos: {}", eventos.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        descartes.shutdown();
+    }
+
+    private Registrados registrados() {
+        Registrados registrados = (Registrados) TransactionSynchronizationManager.getResource(this);
+        if (registrados == null) {
+            registrados = new Registrados();
+            TransactionSynchronizationManager.bindResource(this, registrados);
+            TransactionSynchronizationManager.registerSynchronization(registrados);
+        }
+        return registrados;
+    }
+
+    // eventos registrados por la transaccion en curso
+    private final class Registrados implements TransactionSynchronization {
+
+        private final List<EventoInventario> eventos = new ArrayList<>();
+
+        // los descartes van en otro hilo: aca la conexion de la transaccion revertida sigue tomada, y pedir otra
+        // mientras tanto puede agotar el pool. Si fallan, el hueco se saltea igual al pasar la espera de huecos.
+        // Con replicas, la mayor secuencia confirmada es la posicion que la sesion debe leer de ahora en mas
+        @Override
+        public void afterCompletion(int estado) {
+            TransactionSynchronizationManager.unbindResource(EventoInventarioService.this);
+            if (estado == STATUS_ROLLED_BACK) {
+                descartes.execute(() -> descartar(eventos));
+            } else if (estado == STATUS_COMMITTED && ruteoDataSource != null && !eventos.isEmpty()) {
+                ruteoDataSource.confirmarPosicion(eventos.stream().mapToLong(EventoInventario::getSecuencia).max().getAsLong());
+            }
+        }
+    }
+}
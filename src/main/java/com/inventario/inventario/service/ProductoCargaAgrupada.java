@@ -0,0 +1,145 @@
+package com.inventario.inventario.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.inventario.inventario.datasource.RuteoDataSource;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+
+import jakarta.annotation.PreDestroy;
+
+// carga de productos por id para los multi-get:
+// - los ids se consultan ordenados en lotes de a lo sumo 'tamanoLote' (IN acotado; con
+//   hibernate.query.in_clause_parameter_padding el IN se rellena a potencias de 2 y se reutilizan los planes)
+// - con 'ventana' > 0 los ids pedidos por llamadores concurrentes durante la ventana se juntan en una
+//   sola carga, y un mismo id pedido varias veces se consulta una vez
+@Component
+public class ProductoCargaAgrupada {
+
+    private final ProductoRepository productoRepository;
+
+    private final int tamanoLote;
+
+    private final long ventanaNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final ScheduledExecutorService temporizador;
+
+    private final ExecutorService cargas;
+
+    private Map<Long, CompletableFuture<Producto>> pendientes = new HashMap<>();
+
+    public ProductoCargaAgrupada(ProductoRepository productoRepository,
+            @Value("${inventario.multiget.tamano-lote:128}") int tamanoLote,
+            @Value("${inventario.multiget.ventana:2ms}") Duration ventana) {
+        this.productoRepository = productoRepository;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.ventanaNanos = ventana.toNanos();
+        if (ventanaNanos > 0) {
+            temporizador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+                Thread hilo = new Thread(tarea, "carga-agrupada");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            cargas = Executors.newVirtualThreadPerTaskExecutor();
+        } else {
+            temporizador = null;
+            cargas = null;
+        }
+    }
+
+    // productos encontrados por id; los ids inexistentes no aparecen en el mapa
+    public Map<Long, Producto> cargar(Collection<Long> ids) {
+        if (ventanaNanos == 0) {
+            return cargarEnLotes(ids);
+        }
+
+        Map<Long, CompletableFuture<Producto>> futuros = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            boolean ventanaAbierta = !pendientes.isEmpty();
+            for (Long id : ids) {
+                futuros.put(id, pendientes.computeIfAbsent(id, clave -> new CompletableFuture<>()));
+            }
+            if (!ventanaAbierta && !pendientes.isEmpty()) {
+                temporizador.schedule(this::despachar, ventanaNanos, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Map<Long, Producto> cargados = new HashMap<>();
+        futuros.forEach((id, futuro) -> {
+            Producto producto = esperar(futuro);
+            if (producto != null) {
+                cargados.put(id, producto);
+            }
+        });
+        return cargados;
+    }
+
+    // cierra la ventana actual y carga sus ids fuera del hilo del temporizador
+    private void despachar() {
+        Map<Long, CompletableFuture<Producto>> lote;
+        lock.lock();
+        try {
+            lote = pendientes;
+            pendientes = new HashMap<>();
+        } finally {
+            lock.unlock();
+        }
+
+        cargas.execute(() -> {
+            try {
+                Map<Long, Producto> cargados = cargarEnLotes(lote.keySet());
+                lote.forEach((id, futuro) -> futuro.complete(cargados.get(id)));
+            } catch (RuntimeException e) {
+                lote.values().forEach(futuro -> futuro.completeExceptionally(e));
+            }
+        });
+    }
+
+    // cada lote es una lectura de solo lectura que alimenta la cache de productos: puede ir a una replica
+    Map<Long, Producto> cargarEnLotes(Collection<Long> ids) {
+        List<Long> ordenados = ids.stream().distinct().sorted().toList();
+        Map<Long, Producto> cargados = new HashMap<>();
+        for (int desde = 0; desde < ordenados.size(); desde += tamanoLote) {
+            List<Long> lote = ordenados.subList(desde, Math.min(desde + tamanoLote, ordenados.size()));
+            RuteoDataSource.enReplica(true, () -> productoRepository.findAllById(lote))
+                    .forEach(producto -> cargados.put(producto.getId(), producto));
+        }
+        return cargados;
+    }
+
+    private static Producto esperar(CompletableFuture<Producto> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException causa ? causa : e;
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (temporizador != null) {
+            temporizador.shutdownNow();
+            cargas.shutdown();
+        }
+    }
+}
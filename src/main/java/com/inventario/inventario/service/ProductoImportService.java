@@ -0,0 +1,319 @@
+package com.inventario.inventario.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventario.inventario.cache.ProductoCache;
+import com.inventario.inventario.dto.ErrorImportacion;
+import com.inventario.inventario.dto.ResultadoImportacion;
+import com.inventario.inventario.model.EventoInventario;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.TipoEventoInventario;
+import com.inventario.inventario.stock.MotorStock;
+
+// importacion masiva de productos desde CSV o NDJSON.
+// El archivo se lee linea a linea y se guarda por lotes con un upsert de varias filas por sentencia
+// sobre la columna unica 'nombre'; se usa JdbcTemplate porque la generacion IDENTITY de la
+// entidad obliga a Hibernate a insertar fila por fila.
+@Service
+public class ProductoImportService {
+
+    public enum Formato {
+        CSV,
+        NDJSON
+    }
+
+    static final int MAXIMO_ERRORES_INFORMADOS = 1000;
+
+    // las filas toman la version de su evento con VERSIONAR, una vez registrados los eventos del lote
+    private static final String UPSERT = "insert into producto (activo, nombre, precio, stock, marca, version) "
+            + "values :filas on duplicate key update activo = values(activo), precio = values(precio), "
+            + "stock = values(stock), marca = values(marca)";
+
+    // filas por sentencia, para no pasar el limite de parametros de MySQL con lotes grandes
+    private static final int MAXIMO_FILAS_POR_SENTENCIA = 1000;
+
+    private static final String VERSIONAR = "update producto set version = ? where id = ?";
+
+    private static final String SELECT_POR_NOMBRE = "select id, activo, nombre, precio, stock, marca from producto "
+            + "where nombre in (:nombres)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductoCache productoCache;
+
+    @Autowired
+    private EventoInventarioService eventoInventarioService;
+
+    @Autowired
+    private StockFraccionadoService stockFraccionadoService;
+
+    @Autowired
+    private MotorStock motorStock;
+
+    @Value("${inventario.importacion.tamano-lote:1000}")
+    private int tamanoLote = 1000;
+
+    public ResultadoImportacion importar(InputStream entrada, Formato formato) throws IOException {
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        // lote actual indexado por nombre: una fila repetida reemplaza a la anterior
+        Map<String, Producto> lote = new LinkedHashMap<>();
+
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        Map<String, Integer> columnas = null;
+        long numeroLinea = 0;
+        String linea;
+
+        while ((linea = lector.readLine()) != null) {
+            numeroLinea++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            if (formato == Formato.CSV && columnas == null) {
+                columnas = leerEncabezado(linea);
+                continue;
+            }
+
+            Producto producto;
+            try {
+                producto = formato == Formato.CSV ? leerCsv(linea, columnas) : leerNdjson(linea);
+                validar(producto);
+            } catch (IllegalArgumentException e) {
+                rechazar(resultado, numeroLinea, e.getMessage());
+                continue;
+            }
+
+            if (lote.put(producto.getNombre(), producto) != null) {
+                resultado.setDuplicadas(resultado.getDuplicadas() + 1);
+            }
+            if (lote.size() >= tamanoLote) {
+                guardarLote(lote, resultado);
+            }
+        }
+        guardarLote(lote, resultado);
+        return resultado;
+    }
+
+    private void guardarLote(Map<String, Producto> lote, ResultadoImportacion resultado) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        List<Producto> filas = new ArrayList<>(lote.values());
+        transactionTemplate.executeWithoutResult(estado -> {
+            for (int desde = 0; desde < filas.size(); desde += MAXIMO_FILAS_POR_SENTENCIA) {
+                upsert(filas.subList(desde, Math.min(desde + MAXIMO_FILAS_POR_SENTENCIA, filas.size())));
+            }
+            List<EventoInventario> eventos = eventosDelLote(lote.keySet());
+            eventoInventarioService.registrar(eventos);
+            jdbcTemplate.batchUpdate(VERSIONAR, eventos, eventos.size(), (sentencia, evento) -> {
+                sentencia.setLong(1, evento.getSecuencia());
+                sentencia.setLong(2, evento.getProductoId());
+            });
+            // el stock importado de los productos fraccionados se reparte entre sus fracciones
+            Map<Long, Integer> stockPorId = new HashMap<>();
+            eventos.forEach(evento -> stockPorId.put(evento.getProductoId(), evento.getStock()));
+            stockFraccionadoService.fijarTotales(stockPorId);
+            if (motorStock.isHabilitado()) {
+                motorStock.fijarAlConfirmar(stockPorId);
+            }
+            // el upsert va por JDBC: se descartan de las caches solo los productos del lote, releidos por nombre
+            productoCache.invalidarFilas(stockPorId.keySet());
+        });
+        resultado.setProcesadas(resultado.getProcesadas() + filas.size());
+        lote.clear();
+    }
+
+    private void upsert(List<Producto> productos) {
+        String filas = String.join(", ", Collections.nCopies(productos.size(), "(?, ?, ?, ?, ?, 0)"));
+        List<Object> parametros = new ArrayList<>(productos.size() * 5);
+        for (Producto producto : productos) {
+            parametros.add(producto.getActivo());
+            parametros.add(producto.getNombre());
+            parametros.add(producto.getPrecio());
+            parametros.add(producto.getStock());
+            parametros.add(producto.getMarca());
+        }
+        jdbcTemplate.update(UPSERT.replace(":filas", filas), parametros.toArray());
+    }
+
+    // el upsert no devuelve los ids, asi que el estado resultante del lote se relee por nombre en una consulta
+    private List<EventoInventario> eventosDelLote(Collection<String> nombres) {
+        String marcadores = String.join(", ", Collections.nCopies(nombres.size(), "?"));
+        return jdbcTemplate.query(SELECT_POR_NOMBRE.replace(":nombres", marcadores),
+                (fila, numero) -> EventoInventario.deProducto(TipoEventoInventario.ACTUALIZADO, new Producto(
+                        fila.getLong("id"), fila.getBoolean("activo"), fila.getString("nombre"), fila.getLong("precio"),
+                        fila.getInt("stock"), fila.getString("marca"))),
+                nombres.toArray());
+    }
+
+    private void rechazar(ResultadoImportacion resultado, long linea, String mensaje) {
+        resultado.setRechazadas(resultado.getRechazadas() + 1);
+        if (resultado.getErrores().size() < MAXIMO_ERRORES_INFORMADOS) {
+            resultado.getErrores().add(new ErrorImportacion(linea, mensaje));
+        }
+    }
+
+    private Map<String, Integer> leerEncabezado(String linea) {
+        List<String> nombres = separarCsv(linea);
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < nombres.size(); i++) {
+            columnas.put(nombres.get(i).trim().toLowerCase(), i);
+        }
+        return columnas;
+    }
+
+    private Producto leerCsv(String linea, Map<String, Integer> columnas) {
+        List<String> valores = separarCsv(linea);
+        Producto producto = new Producto();
+        producto.setNombre(valorCsv(valores, columnas, "nombre"));
+        producto.setMarca(valorCsv(valores, columnas, "marca"));
+        producto.setPrecio(aLong(valorCsv(valores, columnas, "precio"), "precio"));
+        producto.setStock(aStock(valorCsv(valores, columnas, "stock")));
+        producto.setActivo(aBoolean(valorCsv(valores, columnas, "activo")));
+        return producto;
+    }
+
+    private Producto leerNdjson(String linea) {
+        JsonNode nodo;
+        try {
+            nodo = objectMapper.readTree(linea);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON invalido");
+        }
+        if (!nodo.isObject()) {
+            throw new IllegalArgumentException("se esperaba un objeto JSON");
+        }
+        Producto producto = new Producto();
+        producto.setNombre(texto(nodo, "nombre"));
+        producto.setMarca(texto(nodo, "marca"));
+        producto.setPrecio(aLong(texto(nodo, "precio"), "precio"));
+        producto.setStock(aStock(texto(nodo, "stock")));
+        producto.setActivo(aBoolean(texto(nodo, "activo")));
+        return producto;
+    }
+
+    private void validar(Producto producto) {
+        if (producto.getNombre() == null || producto.getNombre().isBlank()) {
+            throw new IllegalArgumentException("nombre es obligatorio");
+        }
+        if (producto.getNombre().length() > 100) {
+            throw new IllegalArgumentException("nombre supera 100 caracteres");
+        }
+        if (producto.getMarca() == null || producto.getMarca().isBlank()) {
+            throw new IllegalArgumentException("marca es obligatoria");
+        }
+        if (producto.getMarca().length() > 100) {
+            throw new IllegalArgumentException("marca supera 100 caracteres");
+        }
+        if (producto.getPrecio() < 0) {
+            throw new IllegalArgumentException("precio no puede ser negativo");
+        }
+        if (producto.getStock() < 0) {
+            throw new IllegalArgumentException("stock no puede ser negativo");
+        }
+    }
+
+    private static String valorCsv(List<String> valores, Map<String, Integer> columnas, String columna) {
+        Integer indice = columnas.get(columna);
+        if (indice == null || indice >= valores.size()) {
+            return null;
+        }
+        String valor = valores.get(indice).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private static String texto(JsonNode nodo, String campo) {
+        JsonNode valor = nodo.get(campo);
+        return valor == null || valor.isNull() ? null : valor.asText();
+    }
+
+    private static Long aLong(String valor, String campo) {
+        if (valor == null) {
+            throw new IllegalArgumentException(campo + " es obligatorio");
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(campo + " debe ser un numero entero");
+        }
+    }
+
+    // se valida antes de pasar a int: un valor fuera de rango daria la vuelta y podria quedar positivo
+    private static int aStock(String valor) {
+        long numero = aLong(valor, "stock");
+        if (numero < 0 || numero > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("stock fuera de rango");
+        }
+        return (int) numero;
+    }
+
+    private static Boolean aBoolean(String valor) {
+        if (valor == null) {
+            return true;
+        }
+        if (valor.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (valor.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("activo debe ser true o false");
+    }
+
+    // separa una linea CSV respetando campos entre comillas y comillas escapadas ("")
+    static List<String> separarCsv(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+}
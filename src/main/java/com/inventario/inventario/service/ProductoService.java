@@ -1,63 +1,530 @@
 package com.inventario.inventario.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.inventario.inventario.cache.ProductoCache;
+import com.inventario.inventario.datasource.LecturaEnReplica;
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.FiltroProducto;
+import com.inventario.inventario.dto.ProductoCambios;
+import com.inventario.inventario.dto.ProductoPagina;
+import com.inventario.inventario.dto.ProductoResumen;
+import com.inventario.inventario.dto.ResultadoBusqueda;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.exception.ProductoNoEncontradoException;
+import com.inventario.inventario.exception.StockExcedidoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.metrics.InventarioMetricas;
+import com.inventario.inventario.model.EventoInventario;
 import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.TipoEventoInventario;
+import com.inventario.inventario.repository.ProductoEspecificaciones;
 import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.stock.MotorStock;
 
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
+// las escrituras usan la transaccion de clase; las lecturas van en transacciones de solo lectura, donde
+// Hibernate no hace flush ni guarda la copia de cada entidad para el dirty checking
 @Service
 @Transactional
 public class ProductoService {
+    // columnas por las que se permite ordenar una busqueda. id, nombre, precio y stock tienen indice propio;
+    // marca solo aparece en idx_producto_activo_marca, que da el orden sin filesort cuando el filtro fija activo
+    public static final Set<String> ORDENES_BUSQUEDA = Set.of("id", "nombre", "precio", "stock", "marca");
+
+    // el stock de un producto fraccionado vive en sus fracciones (ver StockFraccionadoService)
+    private static final String SIN_FRACCIONES =
+            "not exists (select 1 from producto_stock_fraccion f where f.producto_id = producto.id)";
+
+    // descuenta stock solo si alcanza; ninguna fila si no alcanza, el producto no existe o esta fraccionado
+    static final String DESCONTAR_STOCK = "update producto set stock = stock - ?, version = ? where id = ? "
+            + "and stock >= ? and " + SIN_FRACCIONES;
+
+    // devuelve stock; ninguna fila si el producto no existe, esta fraccionado o el stock pasaria el maximo de la
+    // columna (el ultimo parametro es Integer.MAX_VALUE - cantidad)
+    static final String DEVOLVER_STOCK = "update producto set stock = stock + ?, version = ? where id = ? "
+            + "and stock <= ? and " + SIN_FRACCIONES;
+
     @Autowired
     private ProductoRepository productoRepository;
 
     @Autowired
+    private ProductoCache productoCache;
+
+    @Autowired
+    private ProductoCargaAgrupada productoCargaAgrupada;
+
+    @Autowired
+    private InventarioMetricas inventarioMetricas;
+
+    // todo cambio de producto agrega su evento al outbox dentro de la misma transaccion
+    @Autowired
+    private EventoInventarioService eventoInventarioService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StockFraccionadoService stockFraccionadoService;
+
+    // con el motor de stock en memoria habilitado, el stock vigente es el suyo y la tabla lo sigue por detras
+    @Autowired
+    private MotorStock motorStock;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventario.paginacion.tamano-maximo:500}")
+    private int tamanoMaximoPagina = 500;
+
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
     public List<Producto> findAll(){
         return productoRepository.findAll();
     }
 
+    // pagina de productos con id mayor a 'despuesDe', el tamano se limita al maximo configurado
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
+    public ProductoPagina findPage(Long despuesDe, int tamano){
+        int limite = Math.max(1, Math.min(tamano, tamanoMaximoPagina));
+        long cursor = despuesDe != null ? despuesDe : 0L;
+        List<Producto> productos = productoRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, limite));
+
+        Long siguienteCursor = productos.size() < limite ? null : productos.get(productos.size() - 1).getId();
+        return new ProductoPagina(productos, siguienteCursor);
+    }
+
+    // productos modificados despues del cursor (version 'desde', id 'despuesDe'), en orden de version e id;
+    // la version y el id del ultimo devuelto son el cursor de la siguiente consulta. El cursor (0, 0) trae
+    // todo el catalogo, incluidas las filas que aun no tienen version. Solo se entregan versiones hasta la
+    // marca de agua del outbox: una escritura aun en curso no puede quedar por detras del cursor
+    @Transactional(readOnly = true)
+    public ProductoCambios findCambios(long desde, long despuesDe, int tamano){
+        int limite = Math.max(1, Math.min(tamano, tamanoMaximoPagina));
+        List<Producto> productos = productoRepository.findModificados(desde, despuesDe,
+                eventoInventarioService.marcaDeAgua(), PageRequest.of(0, limite));
+
+        if (productos.isEmpty()) {
+            return new ProductoCambios(productos, desde, despuesDe, false);
+        }
+        Producto ultimo = productos.get(productos.size() - 1);
+        return new ProductoCambios(productos, ultimo.getVersion(), ultimo.getId(), productos.size() == limite);
+    }
+
+    // busqueda filtrada paginada; el id desempata el orden para que las paginas sean estables
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
+    public ResultadoBusqueda buscar(FiltroProducto filtro, String orden, Sort.Direction direccion, int pagina, int tamano){
+        if (!ORDENES_BUSQUEDA.contains(orden)) {
+            throw new IllegalArgumentException("orden no permitido: " + orden);
+        }
+        int limite = Math.max(1, Math.min(tamano, tamanoMaximoPagina));
+        Sort sort = Sort.by(direccion, orden).and(Sort.by("id"));
+
+        Page<Producto> resultado = productoRepository.findAll(ProductoEspecificaciones.conFiltro(filtro),
+                PageRequest.of(Math.max(0, pagina), limite, sort));
+        return new ResultadoBusqueda(resultado.getContent(), resultado.getNumber(), limite, resultado.getTotalElements());
+    }
+
+    // recorre todo el catalogo entregando cada producto al consumidor a medida que se lee,
+    // desacoplandolo del contexto de persistencia para que la memoria no crezca con el catalogo
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
+    public void forEachProducto(Consumer<Producto> consumidor){
+        try (Stream<Producto> productos = productoRepository.streamAll()) {
+            productos.forEach(producto -> {
+                consumidor.accept(producto);
+                entityManager.detach(producto);
+            });
+        }
+    }
+
+    // lecturas por id servidas desde la cache; devuelven copias desacopladas de la entidad
+    @Transactional(readOnly = true)
+    @LecturaEnReplica(cacheable = true)
     public Optional<Producto> findById(Long id){
-        return productoRepository.findById(id);
+        return productoCache.get(id, productoRepository::findById).map(this::conStockEnMemoria);
     }
 
+    // sin transaccion propia: la carga agrupada consulta en otro hilo con su propia transaccion, y el
+    // llamador no debe retener una conexion mientras la espera
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<Producto> findAllById(List<Long> ids){
-        return productoRepository.findAllById(ids);
+        List<Producto> productos = productoCache.getAll(ids,
+                faltantes -> new ArrayList<>(productoCargaAgrupada.cargar(faltantes).values()));
+        productos.forEach(this::conStockEnMemoria);
+        return productos;
+    }
+
+    // version del producto para validar un ETag: desde la cache si esta, si no desde la entidad, que sale de la
+    // cache de segundo nivel (descartada por producto en cada escritura), seguida de marcaEnMemoria; sin
+    // transaccion propia para que un acierto en cache no tome una conexion
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<String> findVersionById(Long id){
+        String enMemoria = marcaEnMemoria(id);
+        Optional<Long> enCache = productoCache.version(id);
+        Optional<Long> version = enCache.isPresent() ? enCache : productoRepository.findById(id).map(Producto::getVersion);
+        return version.map(valor -> valor + enMemoria);
+    }
+
+    // con el motor en memoria la fila recien cambia con la escritura por detras: esta marca (vacia sin el motor)
+    // avanza con cada reserva y va despues de la version en el ETag. Se lee antes que el producto, asi la
+    // respuesta nunca es mas vieja que su ETag
+    public String marcaEnMemoria(Long id){
+        return motorStock.marca(id);
     }
 
+    // version del catalogo para validar listados: crece con cada escritura confirmada (ver
+    // EventoInventarioService.versionCatalogo)
+    @Transactional(readOnly = true)
+    public String findVersionCatalogo(){
+        return eventoInventarioService.versionCatalogo() + motorStock.marcaCatalogo();
+    }
+
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
     public Boolean existsById(Long id){
-        return productoRepository.existsById(id);
+        return productoCache.contiene(id) || productoRepository.existsById(id);
+    }
+
+    // resumen de precio y stock leido como proyeccion, sin pasar por la cache de entidades
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
+    public Optional<ProductoResumen> findResumenById(Long id){
+        return productoRepository.findResumenById(id).map(this::conStockEnMemoria);
+    }
+
+    // resumenes en el orden de los ids pedidos; los ids inexistentes se omiten
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
+    public List<ProductoResumen> findResumenByIds(List<Long> ids){
+        Map<Long, ProductoResumen> porId = new HashMap<>();
+        productoRepository.findResumenByIdIn(ids).forEach(resumen -> porId.put(resumen.getId(), conStockEnMemoria(resumen)));
+
+        List<ProductoResumen> resumenes = new ArrayList<>(porId.size());
+        for (Long id : new LinkedHashSet<>(ids)) {
+            ProductoResumen resumen = porId.get(id);
+            if (resumen != null) {
+                resumenes.add(resumen);
+            }
+        }
+        return resumenes;
+    }
+
+    // pagina de resumenes por cursor, con el mismo limite de tamano que findPage
+    @Transactional(readOnly = true)
+    @LecturaEnReplica
+    public List<ProductoResumen> findResumenPage(Long despuesDe, int tamano){
+        int limite = Math.max(1, Math.min(tamano, tamanoMaximoPagina));
+        List<ProductoResumen> resumenes = productoRepository.findResumenByIdGreaterThan(despuesDe != null ? despuesDe : 0L,
+                PageRequest.of(0, limite));
+        resumenes.forEach(this::conStockEnMemoria);
+        return resumenes;
     }
 
     public Producto save(Producto producto){
-        return productoRepository.save(producto);
+        Producto guardado = productoRepository.save(producto);
+        guardado.setVersion(eventoInventarioService.registrar(
+                EventoInventario.deProducto(TipoEventoInventario.ACTUALIZADO, guardado)));
+        productoCache.invalidar(guardado.getId());
+        if (motorStock.isHabilitado()) {
+            motorStock.fijarAlConfirmar(Map.of(guardado.getId(), guardado.getStock()));
+        }
+        return guardado;
+    }
+
+    // campos obligatorios de un producto nuevo, con los mismos limites que las columnas
+    public static boolean esValido(Producto producto){
+        return producto != null && producto.getActivo() != null
+                && producto.getNombre() != null && !producto.getNombre().isBlank() && producto.getNombre().length() <= 100
+                && producto.getMarca() != null && !producto.getMarca().isBlank() && producto.getMarca().length() <= 100
+                && producto.getPrecio() != null && producto.getPrecio() >= 0 && producto.getStock() >= 0;
+    }
+
+    // inserta el producto y deja que la restriccion unica de 'nombre' detecte el duplicado, sin consulta previa.
+    // Corre en su propia transaccion (producto y evento juntos) para que la violacion no marque para rollback
+    // la transaccion del servicio. Solo esa restriccion significa duplicado: cualquier otra violacion se propaga
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<Producto> insertIfAbsent(Producto producto){
+        if (!esValido(producto)) {
+            throw new IllegalArgumentException("producto incompleto o fuera de rango");
+        }
+        producto.setId(null);
+        try {
+            Producto guardado = transactionTemplate.execute(estado -> {
+                Producto insertado = productoRepository.save(producto);
+                insertado.setVersion(eventoInventarioService.registrar(
+                        EventoInventario.deProducto(TipoEventoInventario.CREADO, insertado)));
+                return insertado;
+            });
+            productoCache.invalidar(guardado.getId());
+            return Optional.of(guardado);
+        } catch (DataIntegrityViolationException e) {
+            if (esNombreDuplicado(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    // el nombre de la restriccion llega calificado segun la base (producto.uk_producto_nombre en MySQL)
+    private static boolean esNombreDuplicado(DataIntegrityViolationException e){
+        return e.getCause() instanceof ConstraintViolationException violacion && violacion.getConstraintName() != null
+                && violacion.getConstraintName().toLowerCase(Locale.ROOT).contains(Producto.RESTRICCION_NOMBRE);
+    }
+
+    // actualiza la entidad, leida de la cache de segundo nivel si esta, y devuelve el producto tal como queda
+    // guardado; vacio si el id no existe. Hibernate escribe el UPDATE al confirmar y refresca solo la entrada de
+    // este producto en la cache de segundo nivel. La version es la secuencia del evento. El reemplazo es completo,
+    // asi que exige los mismos campos que un producto nuevo
+    public Optional<Producto> update(Long id, Producto producto){
+        if (!esValido(producto)) {
+            throw new IllegalArgumentException("producto incompleto o fuera de rango");
+        }
+        Optional<Producto> encontrado = productoRepository.findById(id);
+        if (encontrado.isEmpty()) {
+            return Optional.empty();
+        }
+        Producto actual = encontrado.get();
+        actual.setActivo(producto.getActivo());
+        actual.setNombre(producto.getNombre());
+        actual.setPrecio(producto.getPrecio());
+        actual.setStock(producto.getStock());
+        actual.setMarca(producto.getMarca());
+        actual.setVersion(eventoInventarioService.registrar(
+                EventoInventario.deProducto(TipoEventoInventario.ACTUALIZADO, actual)));
+        productoCache.invalidar(id);
+
+        // si el stock esta fraccionado, el nuevo stock se reparte entre las fracciones
+        if (motorStock.isHabilitado()) {
+            motorStock.fijarAlConfirmar(Map.of(id, actual.getStock()));
+        } else if (stockFraccionadoService.esFraccionado(id)) {
+            stockFraccionadoService.fijarTotales(Map.of(id, actual.getStock()));
+        }
+        return Optional.of(ProductoCache.copiar(actual));
+    }
+
+    // reserva stock con un unico UPDATE condicional por JDBC, sin leer la entidad ni bloquearla mas alla de la
+    // sentencia; Hibernate no lo ve, asi que solo se descarta la entrada del producto en las caches.
+    // Los productos fraccionados descuentan de una de sus fracciones (sin tocar la fila de producto ni su version,
+    // que se consolidan despues); si el modo recordado ya no vale, se intenta en el otro. Si la fraccion elegida
+    // no alcanza, una segunda transaccion bloquea todas en orden y rebalancea: la primera termina antes para no
+    // esperar esos bloqueos reteniendo el de la fraccion que fallo. El evento se registra primero (su secuencia
+    // es la version de la fila) y una reserva que no se aplica lo revierte con la transaccion. Con el motor en
+    // memoria no hay transaccion: el cambio y su evento se escriben por detras
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ResultadoReserva reservarStock(Long id, int cantidad){
+        if (motorStock.isHabilitado()) {
+            ResultadoReserva resultado = motorStock.sumar(id, -cantidad);
+            inventarioMetricas.registrarOperacionStock("reservar", resultado);
+            return resultado;
+        }
+        ResultadoReserva resultado = transactionTemplate.execute(estado ->
+                revertirSiFalla(estado, reservar(id, cantidad, stockFraccionadoService::decrementar)));
+        if (resultado == ResultadoReserva.STOCK_INSUFICIENTE && stockFraccionadoService.esFraccionado(id)) {
+            resultado = transactionTemplate.execute(estado ->
+                    revertirSiFalla(estado, reservar(id, cantidad, stockFraccionadoService::rebalancear)));
+        }
+        inventarioMetricas.registrarOperacionStock("reservar", resultado);
+        return resultado;
+    }
+
+    private ResultadoReserva reservar(Long id, int cantidad, BiFunction<Long, Integer, ResultadoReserva> fraccionado){
+        long version = eventoInventarioService.registrar(
+                EventoInventario.deStock(TipoEventoInventario.STOCK_RESERVADO, id, null, -cantidad));
+        ResultadoReserva resultado = stockFraccionadoService.esFraccionado(id)
+                ? fraccionado.apply(id, cantidad) : ResultadoReserva.NO_ENCONTRADO;
+        if (resultado == ResultadoReserva.NO_ENCONTRADO) {
+            if (jdbcTemplate.update(DESCONTAR_STOCK, cantidad, version, id, cantidad) == 1) {
+                productoCache.invalidarFilas(List.of(id));
+                resultado = ResultadoReserva.APLICADA;
+            } else {
+                // solo en el camino de fallo se distingue entre producto inexistente, fraccionado y sin stock
+                resultado = fraccionado.apply(id, cantidad);
+                if (resultado == ResultadoReserva.NO_ENCONTRADO && productoRepository.existsById(id)) {
+                    resultado = ResultadoReserva.STOCK_INSUFICIENTE;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    // una operacion de stock que no se aplico revierte el evento que ya registro
+    private static ResultadoReserva revertirSiFalla(TransactionStatus estado, ResultadoReserva resultado){
+        if (resultado != ResultadoReserva.APLICADA) {
+            estado.setRollbackOnly();
+        }
+        return resultado;
+    }
+
+    // devuelve al producto stock previamente reservado; STOCK_EXCEDIDO si el stock pasaria el maximo de un int
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ResultadoReserva liberarStock(Long id, int cantidad){
+        ResultadoReserva resultado = motorStock.isHabilitado()
+                ? motorStock.sumar(id, cantidad)
+                : transactionTemplate.execute(estado -> revertirSiFalla(estado, liberar(id, cantidad)));
+        inventarioMetricas.registrarOperacionStock("liberar", resultado);
+        return resultado;
+    }
+
+    private ResultadoReserva liberar(Long id, int cantidad){
+        long version = eventoInventarioService.registrar(
+                EventoInventario.deStock(TipoEventoInventario.STOCK_LIBERADO, id, null, cantidad));
+        ResultadoReserva resultado = stockFraccionadoService.esFraccionado(id)
+                ? stockFraccionadoService.incrementar(id, cantidad) : ResultadoReserva.NO_ENCONTRADO;
+        if (resultado == ResultadoReserva.NO_ENCONTRADO) {
+            if (jdbcTemplate.update(DEVOLVER_STOCK, cantidad, version, id, Integer.MAX_VALUE - cantidad) == 1) {
+                productoCache.invalidarFilas(List.of(id));
+                resultado = ResultadoReserva.APLICADA;
+            } else {
+                resultado = stockFraccionadoService.incrementar(id, cantidad);
+                if (resultado == ResultadoReserva.NO_ENCONTRADO && productoRepository.existsById(id)) {
+                    resultado = ResultadoReserva.STOCK_EXCEDIDO;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    // pasa el stock del producto a 'fracciones' contadores independientes (1 lo vuelve a la fila de producto);
+    // devuelve false si el producto no existe. No aplica con el motor de stock en memoria
+    public boolean fraccionarStock(Long id, int fracciones){
+        if (motorStock.isHabilitado()) {
+            throw new IllegalStateException("el stock fraccionado no aplica con el stock en memoria habilitado");
+        }
+        if (!stockFraccionadoService.fraccionar(id, fracciones)) {
+            return false;
+        }
+        productoRepository.findById(id).ifPresent(producto -> producto.setVersion(eventoInventarioService.registrar(
+                EventoInventario.deProducto(TipoEventoInventario.ACTUALIZADO, producto))));
+        return true;
     }
 
-    public Producto update(Long id, Producto producto){
-        Producto holder = productoRepository.findById(id).get();
+    // aplica un lote de ajustes de stock todo o nada: los productos se bloquean en orden de id y
+    // los UPDATE se envian agrupados al hacer flush (hibernate.jdbc.batch_size, order_updates)
+    public List<Producto> ajustarStock(List<AjusteStock> ajustes){
+        Map<Long, Integer> deltas = new TreeMap<>();
+        for (AjusteStock ajuste : ajustes) {
+            deltas.merge(ajuste.getId(), ajuste.getDelta(), Integer::sum);
+        }
+        if (motorStock.isHabilitado()) {
+            return ajustarEnMemoria(deltas);
+        }
+
+        List<Producto> productos = productoRepository.findAllByIdForUpdate(deltas.keySet());
+        if (productos.size() != deltas.size()) {
+            Set<Long> faltantes = new HashSet<>(deltas.keySet());
+            productos.forEach(producto -> faltantes.remove(producto.getId()));
+            inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.NO_ENCONTRADO);
+            throw new ProductoNoEncontradoException(faltantes);
+        }
+
+        // los productos fraccionados parten de la suma de sus fracciones (bloqueadas) y reparten el resultado
+        Map<Long, Integer> fraccionados = stockFraccionadoService.bloquearTotales(deltas.keySet());
 
-        if (producto != null){
-            holder.setActivo(producto.getActivo());
-            holder.setNombre(producto.getNombre());
-            holder.setPrecio(producto.getPrecio());
-            holder.setStock(producto.getStock());
-            holder.setMarca(producto.getMarca());
+        List<EventoInventario> eventos = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            int delta = deltas.get(producto.getId());
+            long resultante = (long) fraccionados.getOrDefault(producto.getId(), producto.getStock()) + delta;
+            if (resultante < 0) {
+                inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.STOCK_INSUFICIENTE);
+                throw new StockInsuficienteException(producto.getId());
+            }
+            if (resultante > Integer.MAX_VALUE) {
+                inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.STOCK_EXCEDIDO);
+                throw new StockExcedidoException(producto.getId());
+            }
+            int nuevoStock = (int) resultante;
+            producto.setStock(nuevoStock);
+            fraccionados.computeIfPresent(producto.getId(), (id, total) -> nuevoStock);
+            eventos.add(EventoInventario.deStock(TipoEventoInventario.STOCK_AJUSTADO, producto.getId(), nuevoStock, delta));
+        }
+        stockFraccionadoService.fijarTotales(fraccionados);
+        eventoInventarioService.registrar(eventos);
+        for (int i = 0; i < productos.size(); i++) {
+            productos.get(i).setVersion(eventos.get(i).getSecuencia());
+        }
+        productoCache.invalidar(deltas.keySet());
+        inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.APLICADA);
+        return productos;
+    }
 
-            return productoRepository.save(holder);
+    // mismo todo o nada sobre el motor en memoria; devuelve los productos con el stock resultante
+    private List<Producto> ajustarEnMemoria(Map<Long, Integer> deltas){
+        try {
+            motorStock.ajustar(deltas);
+        } catch (ProductoNoEncontradoException e) {
+            inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.NO_ENCONTRADO);
+            throw e;
+        } catch (StockInsuficienteException e) {
+            inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.STOCK_INSUFICIENTE);
+            throw e;
+        } catch (StockExcedidoException e) {
+            inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.STOCK_EXCEDIDO);
+            throw e;
         }
-        return null;
+        inventarioMetricas.registrarOperacionStock("ajuste", ResultadoReserva.APLICADA);
+        return findAllById(new ArrayList<>(deltas.keySet()));
+    }
 
+    // borrado logico sobre la entidad, como update; devuelve false si el id no existe
+    public boolean deleteById(Long id){
+        Optional<Producto> encontrado = productoRepository.findById(id);
+        if (encontrado.isEmpty()) {
+            return false;
+        }
+        encontrado.get().setActivo(false);
+        encontrado.get().setVersion(eventoInventarioService.registrar(EventoInventario.desactivado(id)));
+        productoCache.invalidar(id);
+        return true;
     }
 
-    public void deleteById(Long id){
-        Producto holder = productoRepository.findById(id).get();
+    private Producto conStockEnMemoria(Producto producto){
+        OptionalInt stock = motorStock.stock(producto.getId());
+        if (stock.isPresent()) {
+            producto.setStock(stock.getAsInt());
+        }
+        return producto;
+    }
 
-        holder.setActivo(false);
-        productoRepository.save(holder);
+    private ProductoResumen conStockEnMemoria(ProductoResumen resumen){
+        OptionalInt stock = motorStock.stock(resumen.getId());
+        if (stock.isPresent()) {
+            resumen.setStock(stock.getAsInt());
+        }
+        return resumen;
     }
 }
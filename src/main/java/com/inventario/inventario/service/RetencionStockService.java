@@ -0,0 +1,195 @@
+package com.inventario.inventario.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.dto.StockDisponible;
+import com.inventario.inventario.exception.ProductoNoEncontradoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.model.RetencionStock;
+import com.inventario.inventario.repository.RetencionStockRepository;
+import com.inventario.inventario.stock.MotorStock;
+import com.inventario.inventario.stock.RuedaVencimientos;
+
+import jakarta.annotation.PostConstruct;
+
+// retenciones temporales de stock para carritos: retener reserva la cantidad (como reservarStock) y guarda la
+// retencion con su vencimiento; confirmarla en el checkout la borra dejando el stock descontado, y cancelarla o
+// dejarla vencer lo devuelve. Los vencimientos se programan en una RuedaVencimientos, recargada de la tabla al
+// arrancar, y cada tic libera en lotes las vencidas sin recorrer la tabla. El DELETE de la fila decide quien
+// devuelve el stock: una retencion confirmada, cancelada o liberada por otra instancia ya no afecta filas.
+@Service
+@Transactional
+public class RetencionStockService {
+
+    private static final String ELIMINAR = "delete from retencion_stock where id = ?";
+
+    @Autowired
+    private RetencionStockRepository retencionStockRepository;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MotorStock motorStock;
+
+    @Value("${inventario.stock.retenciones.tamano-lote:500}")
+    private int tamanoLote = 500;
+
+    private final RuedaVencimientos<RetencionStock> rueda;
+
+    public RetencionStockService(@Value("${inventario.stock.retenciones.ranuras:4096}") int ranuras,
+            @Value("${inventario.stock.retenciones.resolucion-ms:1000}") long resolucion) {
+        this.rueda = new RuedaVencimientos<>(ranuras, resolucion, System.currentTimeMillis());
+    }
+
+    // las retenciones sobreviven al reinicio: se vuelven a programar (las ya vencidas, para el proximo tic)
+    @PostConstruct
+    public void cargar() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            try (Stream<RetencionStock> retenciones = retencionStockRepository.streamAll()) {
+                retenciones.forEach(retencion -> rueda.agregar(retencion, retencion.getVenceEn()));
+            }
+        });
+    }
+
+    // reserva 'cantidad' del producto y la retiene por 'duracion'. Sobre la base la reserva y la retencion van en
+    // una misma transaccion; con el stock en memoria la reserva no es transaccional, y si la retencion no se puede
+    // guardar el stock se devuelve
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public RetencionStock retener(Long productoId, int cantidad, Duration duracion) {
+        RetencionStock nueva = new RetencionStock(null, productoId, cantidad, System.currentTimeMillis() + duracion.toMillis());
+        RetencionStock retencion;
+        if (!motorStock.isHabilitado()) {
+            retencion = transactionTemplate.execute(estado -> {
+                reservar(productoId, cantidad);
+                return retencionStockRepository.save(nueva);
+            });
+        } else {
+            reservar(productoId, cantidad);
+            try {
+                retencion = transactionTemplate.execute(estado -> retencionStockRepository.save(nueva));
+            } catch (RuntimeException e) {
+                productoService.liberarStock(productoId, cantidad);
+                throw e;
+            }
+        }
+        rueda.agregar(retencion, retencion.getVenceEn());
+        return retencion;
+    }
+
+    private void reservar(Long productoId, int cantidad) {
+        ResultadoReserva resultado = productoService.reservarStock(productoId, cantidad);
+        if (resultado == ResultadoReserva.NO_ENCONTRADO) {
+            throw new ProductoNoEncontradoException(List.of(productoId));
+        }
+        if (resultado == ResultadoReserva.STOCK_INSUFICIENTE) {
+            throw new StockInsuficienteException(productoId);
+        }
+    }
+
+    // checkout: el stock queda descontado. La entrada de la rueda se descarta al vencer; false si no existe
+    public boolean confirmar(Long id) {
+        return retencionStockRepository.eliminar(id) == 1;
+    }
+
+    // devuelve el stock retenido; false si no existe (ya vencio, se confirmo o se cancelo)
+    public boolean cancelar(Long id) {
+        Optional<RetencionStock> retencion = retencionStockRepository.findById(id);
+        if (retencion.isEmpty() || retencionStockRepository.eliminar(id) == 0) {
+            return false;
+        }
+        liberarStock(Map.of(retencion.get().getProductoId(), retencion.get().getCantidad()));
+        return true;
+    }
+
+    // stock del producto frente a sus retenciones activas; vacio si el producto no existe
+    @Transactional(readOnly = true)
+    public Optional<StockDisponible> findDisponible(Long productoId) {
+        return productoService.findResumenById(productoId).map(resumen -> {
+            int retenido = retencionStockRepository.sumarRetenido(productoId);
+            return new StockDisponible(productoId, resumen.getStock() + retenido, retenido, resumen.getStock());
+        });
+    }
+
+    // un tic de la rueda: libera lo vencido desde el tic anterior, cada lote en su transaccion
+    @Scheduled(fixedDelayString = "${inventario.stock.retenciones.resolucion-ms:1000}")
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void vencer() {
+        List<RetencionStock> vencidas = rueda.avanzar(System.currentTimeMillis());
+        for (int desde = 0; desde < vencidas.size(); desde += tamanoLote) {
+            liberar(vencidas.subList(desde, Math.min(desde + tamanoLote, vencidas.size())));
+        }
+    }
+
+    // respaldo para las vencidas que ninguna rueda libero (creadas en una instancia que cayo, o cuyo lote fallo):
+    // las recorre por el indice de vencimiento, sin leer las activas. Al arrancar no hace falta: cargar ya programo
+    // todas
+    @Scheduled(fixedDelayString = "${inventario.stock.retenciones.intervalo-barrido-ms:60000}",
+            initialDelayString = "${inventario.stock.retenciones.intervalo-barrido-ms:60000}")
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void barrer() {
+        List<RetencionStock> vencidas;
+        do {
+            vencidas = retencionStockRepository.findVencidas(System.currentTimeMillis(), PageRequest.of(0, tamanoLote));
+            liberar(vencidas);
+        } while (vencidas.size() == tamanoLote);
+    }
+
+    // borra el lote con un batch JDBC y devuelve, con una liberacion por producto, lo de las filas que borro
+    private void liberar(List<RetencionStock> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(estado -> {
+            int[][] borradas = jdbcTemplate.batchUpdate(ELIMINAR, lote, lote.size(),
+                    (sentencia, retencion) -> sentencia.setLong(1, retencion.getId()));
+            Map<Long, Integer> porProducto = new TreeMap<>();
+            for (int i = 0; i < lote.size(); i++) {
+                if (borradas[0][i] == 1) {
+                    porProducto.merge(lote.get(i).getProductoId(), lote.get(i).getCantidad(), Integer::sum);
+                }
+            }
+            liberarStock(porProducto);
+        });
+    }
+
+    // devuelve el stock de las retenciones borradas por la transaccion en curso. Con el stock en memoria la
+    // liberacion no es transaccional: se aplica al confirmar el DELETE que la decide, asi un rollback no devuelve
+    // stock de una retencion que sigue en pie
+    private void liberarStock(Map<Long, Integer> porProducto) {
+        if (!motorStock.isHabilitado()) {
+            porProducto.forEach(productoService::liberarStock);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                porProducto.forEach(productoService::liberarStock);
+            }
+        });
+    }
+}
@@ -0,0 +1,203 @@
+package com.inventario.inventario.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.inventario.inventario.cache.ProductoCache;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.dto.StockTotal;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.StockFraccion;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.repository.StockFraccionRepository;
+
+// stock fraccionado para productos calientes (opcional por producto): el stock se reparte en N filas de
+// producto_stock_fraccion y cada reserva descuenta de una elegida al azar, asi las reservas concurrentes no
+// esperan el bloqueo de una misma fila. Ninguna fraccion baja de cero, por lo que el total tampoco; si la
+// fraccion elegida no alcanza pero el total si, se bloquean todas y se rebalancean.
+// Mientras un producto esta fraccionado su stock en la tabla producto es una foto que se consolida
+// periodicamente; los resumenes (/resumen) suman las fracciones.
+@Service
+@Transactional
+public class StockFraccionadoService {
+
+    private static final String FIJAR_STOCK = "update producto set stock = ? where id = ?";
+
+    @Autowired
+    private StockFraccionRepository stockFraccionRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ProductoCache productoCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // cantidad de fracciones de cada producto fraccionado (son pocos), releida periodicamente para ver los cambios
+    // de modo hechos en otras instancias; mientras tanto las reservas fallan en el modo recordado y
+    // ProductoService reintenta en el otro, asi que solo se consulta la base en los caminos de fallo
+    private volatile Map<Long, Integer> fracciones = new ConcurrentHashMap<>();
+
+    public boolean esFraccionado(Long productoId) {
+        return fracciones.containsKey(productoId);
+    }
+
+    @Scheduled(fixedDelayString = "${inventario.stock.fracciones.intervalo-modo-ms:5000}")
+    @Transactional(readOnly = true)
+    public void refrescarModos() {
+        Map<Long, Integer> actuales = new ConcurrentHashMap<>();
+        stockFraccionRepository.findAll().forEach(fila -> actuales.merge(fila.getProductoId(), 1, Integer::sum));
+        fracciones = actuales;
+    }
+
+    // descuenta de una fraccion elegida al azar con una sola sentencia. STOCK_INSUFICIENTE si a esa fraccion no
+    // le alcanza (el total podria alcanzar: ver rebalancear); NO_ENCONTRADO si el producto no tiene fracciones
+    public ResultadoReserva decrementar(Long productoId, int cantidad) {
+        int cantidadFracciones = fraccionesActuales(productoId);
+        if (cantidadFracciones == 0) {
+            return ResultadoReserva.NO_ENCONTRADO;
+        }
+        int fraccion = ThreadLocalRandom.current().nextInt(cantidadFracciones);
+        return stockFraccionRepository.decrementar(productoId, fraccion, cantidad) == 1
+                ? ResultadoReserva.APLICADA : ResultadoReserva.STOCK_INSUFICIENTE;
+    }
+
+    // bloquea todas las fracciones en orden, descuenta del total y lo vuelve a repartir en partes iguales. Debe
+    // correr en una transaccion que no retenga bloqueos de fracciones tomados fuera de orden (ver decrementar)
+    public ResultadoReserva rebalancear(Long productoId, int cantidad) {
+        List<StockFraccion> filas = stockFraccionRepository.findByProductoIdInForUpdate(List.of(productoId));
+        recordar(productoId, filas.size());
+        if (filas.isEmpty()) {
+            return ResultadoReserva.NO_ENCONTRADO;
+        }
+        long total = suma(filas);
+        if (total < cantidad) {
+            return ResultadoReserva.STOCK_INSUFICIENTE;
+        }
+        repartir(filas, total - cantidad);
+        return ResultadoReserva.APLICADA;
+    }
+
+    // NO_ENCONTRADO si el producto no tiene fracciones. Cada fraccion admite hasta su parte del maximo de un int,
+    // asi la suma nunca lo excede; STOCK_EXCEDIDO si la elegida lo pasaria
+    public ResultadoReserva incrementar(Long productoId, int cantidad) {
+        int cantidadFracciones = fraccionesActuales(productoId);
+        if (cantidadFracciones > 0 && stockFraccionRepository.incrementar(productoId,
+                ThreadLocalRandom.current().nextInt(cantidadFracciones), cantidad,
+                Integer.MAX_VALUE / cantidadFracciones - cantidad) == 1) {
+            return ResultadoReserva.APLICADA;
+        }
+        int actuales = stockFraccionRepository.contarFracciones(productoId);
+        recordar(productoId, actuales);
+        // con otra cantidad de fracciones el modo cambio: el llamador reintenta con el recordado
+        return actuales > 0 && actuales == cantidadFracciones
+                ? ResultadoReserva.STOCK_EXCEDIDO : ResultadoReserva.NO_ENCONTRADO;
+    }
+
+    // bloquea las fracciones de los productos indicados y devuelve el stock total de los que estan fraccionados
+    public Map<Long, Integer> bloquearTotales(Collection<Long> productoIds) {
+        Map<Long, Integer> totales = new LinkedHashMap<>();
+        porProducto(stockFraccionRepository.findByProductoIdInForUpdate(productoIds))
+                .forEach((productoId, filas) -> totales.put(productoId, (int) suma(filas)));
+        return totales;
+    }
+
+    // reparte el nuevo stock total de los productos fraccionados entre sus fracciones; ignora los demas
+    public void fijarTotales(Map<Long, Integer> totales) {
+        if (totales.isEmpty()) {
+            return;
+        }
+        porProducto(stockFraccionRepository.findByProductoIdInForUpdate(totales.keySet()))
+                .forEach((productoId, filas) -> repartir(filas, totales.get(productoId)));
+    }
+
+    // pasa el producto a 'cantidad' fracciones con su stock repartido en partes iguales; con 1 vuelve el stock
+    // entero a la fila de producto. Devuelve false si el producto no existe
+    public boolean fraccionar(Long productoId, int cantidad) {
+        List<Producto> productos = productoRepository.findAllByIdForUpdate(List.of(productoId));
+        if (productos.isEmpty()) {
+            return false;
+        }
+        Producto producto = productos.get(0);
+        List<StockFraccion> actuales = stockFraccionRepository.findByProductoIdInForUpdate(List.of(productoId));
+        long total = actuales.isEmpty() ? producto.getStock() : suma(actuales);
+        stockFraccionRepository.deleteAllInBatch(actuales);
+
+        if (cantidad > 1) {
+            List<StockFraccion> nuevas = new ArrayList<>(cantidad);
+            for (int fraccion = 0; fraccion < cantidad; fraccion++) {
+                nuevas.add(new StockFraccion(null, productoId, fraccion, 0));
+            }
+            repartir(nuevas, total);
+            stockFraccionRepository.saveAll(nuevas);
+        }
+        producto.setStock((int) total);
+        productoCache.invalidar(productoId);
+        recordar(productoId, cantidad > 1 ? cantidad : 0);
+        return true;
+    }
+
+    // actualiza la foto de stock de la tabla producto con la suma de las fracciones. Es una foto: no cambia la
+    // version (ni el ETag) del producto, y se escribe por JDBC para que Hibernate no descarte toda la region de
+    // productos como con un UPDATE masivo; solo se descartan las entradas de los productos consolidados. Sin transaccion: cada fila es independiente y las caches se limpian ya escritas
+    @Scheduled(fixedDelayString = "${inventario.stock.fracciones.intervalo-consolidacion-ms:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void consolidar() {
+        List<StockTotal> totales = stockFraccionRepository.findTotalesDesactualizados();
+        if (totales.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(FIJAR_STOCK, totales.stream()
+                .map(total -> new Object[] { total.getStock().intValue(), total.getProductoId() }).toList());
+        productoCache.invalidarFilas(totales.stream().map(StockTotal::getProductoId).toList());
+    }
+
+    // cantidad de fracciones recordada, o contada en la base si el producto figura sin fracciones
+    private int fraccionesActuales(Long productoId) {
+        Integer cantidad = fracciones.get(productoId);
+        if (cantidad == null) {
+            cantidad = stockFraccionRepository.contarFracciones(productoId);
+            recordar(productoId, cantidad);
+        }
+        return cantidad;
+    }
+
+    private void recordar(Long productoId, int cantidad) {
+        if (cantidad > 0) {
+            fracciones.put(productoId, cantidad);
+        } else {
+            fracciones.remove(productoId);
+        }
+    }
+
+    private static void repartir(List<StockFraccion> filas, long total) {
+        int cantidad = filas.size();
+        for (int i = 0; i < cantidad; i++) {
+            filas.get(i).setStock((int) (total / cantidad + (i < total % cantidad ? 1 : 0)));
+        }
+    }
+
+    private static long suma(List<StockFraccion> filas) {
+        return filas.stream().mapToLong(StockFraccion::getStock).sum();
+    }
+
+    private static Map<Long, List<StockFraccion>> porProducto(List<StockFraccion> filas) {
+        Map<Long, List<StockFraccion>> porProducto = new LinkedHashMap<>();
+        filas.forEach(fila -> porProducto.computeIfAbsent(fila.getProductoId(), id -> new ArrayList<>()).add(fila));
+        return porProducto;
+    }
+}
@@ -0,0 +1,221 @@
+package com.inventario.inventario.stock;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// diario de cambios de stock en dos segmentos de archivo mapeados en memoria (stock-0.diario y stock-1.diario).
+// Cada cambio se agrega como un registro de 24 bytes (id, palabra, control) en una posicion reservada con un
+// contador atomico, sin bloqueos entre escritores. El registro lleva la palabra completa (stock y version del
+// producto): al reproducir gana la de mayor version aunque los registros hayan quedado fuera de orden, y el
+// control descarta los que quedaron a medio escribir. Lo escrito en el mapeo sobrevive a la caida del proceso;
+// con forzar=true cada registro se baja ademas al disco antes de confirmarse (sobrevive a la del sistema).
+// Al llenarse la mitad del segmento activo se rota al otro, y el anterior se vacia una vez escritos en la base
+// los cambios que registro. Al abrir, ambos segmentos deben reproducirse y vaciarse antes de registrar.
+// Un solo proceso puede usar el directorio: se bloquea stock.lock mientras el diario esta abierto.
+public class DiarioStock implements AutoCloseable {
+
+    static final int TAMANO_REGISTRO = 24;
+
+    private static final long MARCA = 0x53544F434B444941L;
+
+    @FunctionalInterface
+    public interface Lector {
+        void registro(long id, long palabra);
+    }
+
+    private final Segmento[] segmentos = new Segmento[2];
+
+    private final FileChannel canalBloqueo;
+
+    private final FileLock bloqueo;
+
+    private final boolean forzar;
+
+    private final long esperaNanos;
+
+    private volatile int activo;
+
+    public DiarioStock(Path directorio, int tamanoSegmento, boolean forzar, Duration espera) throws IOException {
+        Files.createDirectories(directorio);
+        canalBloqueo = FileChannel.open(directorio.resolve("stock.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock tomado;
+        try {
+            tomado = canalBloqueo.tryLock();
+        } catch (OverlappingFileLockException e) {
+            tomado = null;
+        }
+        if (tomado == null) {
+            canalBloqueo.close();
+            throw new IllegalStateException("el diario de stock en " + directorio + " esta en uso por otro proceso");
+        }
+        bloqueo = tomado;
+        int registros = Math.max(1, tamanoSegmento / TAMANO_REGISTRO);
+        for (int i = 0; i < segmentos.length; i++) {
+            segmentos[i] = new Segmento(directorio.resolve("stock-" + i + ".diario"), registros * TAMANO_REGISTRO);
+        }
+        this.forzar = forzar;
+        this.esperaNanos = espera.toNanos();
+    }
+
+    // agrega el registro al segmento activo; si esta lleno espera a que se rote
+    public void registrar(long id, long palabra) {
+        reservar().escribir(id, palabra);
+    }
+
+    // reserva la posicion de un registro en el segmento activo; si esta lleno espera a que se rote y falla si no
+    // hay lugar a tiempo. Se reserva antes de aplicar el cambio en memoria, asi un diario lleno falla sin haber
+    // cambiado nada y escribir la reserva ya no puede fallar
+    public Reserva reservar() {
+        long limite = System.nanoTime() + esperaNanos;
+        while (true) {
+            Segmento segmento = segmentos[activo];
+            segmento.escritores.incrementAndGet();
+            // si se roto mientras tanto, el segmento anterior ya no admite escritores nuevos
+            if (segmento == segmentos[activo]) {
+                long posicion = segmento.posicion.getAndAdd(TAMANO_REGISTRO);
+                if (posicion + TAMANO_REGISTRO <= segmento.capacidad) {
+                    return new Reserva(segmento, (int) posicion);
+                }
+            }
+            segmento.escritores.decrementAndGet();
+            if (System.nanoTime() > limite) {
+                throw new IllegalStateException("diario de stock lleno: aumentar inventario.stock.memoria.tamano-segmento");
+            }
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    // entrega los registros validos de ambos segmentos, en el orden del archivo
+    public void reproducir(Lector lector) {
+        for (Segmento segmento : segmentos) {
+            segmento.leer(lector);
+        }
+    }
+
+    public double ocupacion() {
+        Segmento segmento = segmentos[activo];
+        return (double) Math.min(segmento.posicion.get(), segmento.capacidad) / segmento.capacidad;
+    }
+
+    // los registros nuevos pasan al otro segmento, que debe estar vacio; devuelve el indice del anterior una vez
+    // cerradas sus reservas, asi todo cambio registrado en el ya esta aplicado en memoria
+    public synchronized int rotar() {
+        int anterior = activo;
+        activo = 1 - anterior;
+        while (segmentos[anterior].escritores.get() > 0) {
+            Thread.onSpinWait();
+        }
+        return anterior;
+    }
+
+    // espera a los escritores que aun escriben en el segmento y lo deja en ceros
+    public void vaciar(int indice) {
+        Segmento segmento = segmentos[indice];
+        while (segmento.escritores.get() > 0) {
+            Thread.onSpinWait();
+        }
+        segmento.vaciar();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segmento segmento : segmentos) {
+            segmento.cerrar();
+        }
+        bloqueo.release();
+        canalBloqueo.close();
+    }
+
+    // posicion reservada en un segmento; mientras no se escribe o descarta el segmento no se rota ni se vacia.
+    // Una reserva descartada queda en ceros, que la reproduccion saltea
+    public final class Reserva {
+
+        private final Segmento segmento;
+
+        private final int posicion;
+
+        private Reserva(Segmento segmento, int posicion) {
+            this.segmento = segmento;
+            this.posicion = posicion;
+        }
+
+        public void escribir(long id, long palabra) {
+            try {
+                segmento.escribir(posicion, id, palabra, forzar);
+            } finally {
+                segmento.escritores.decrementAndGet();
+            }
+        }
+
+        public void descartar() {
+            segmento.escritores.decrementAndGet();
+        }
+    }
+
+    private static final class Segmento {
+
+        private final FileChannel canal;
+
+        private final MappedByteBuffer mapeo;
+
+        private final int capacidad;
+
+        private final AtomicLong posicion = new AtomicLong();
+
+        private final AtomicInteger escritores = new AtomicInteger();
+
+        Segmento(Path archivo, int capacidad) throws IOException {
+            this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.mapeo = canal.map(FileChannel.MapMode.READ_WRITE, 0, capacidad);
+            this.capacidad = capacidad;
+            // al abrir no se sabe hasta donde se escribio: se considera lleno hasta que se vacie
+            posicion.set(capacidad);
+        }
+
+        // escrituras absolutas sobre rangos distintos: no comparten estado del buffer
+        void escribir(int posicion, long id, long palabra, boolean forzar) {
+            mapeo.putLong(posicion, id);
+            mapeo.putLong(posicion + 8, palabra);
+            mapeo.putLong(posicion + 16, id ^ palabra ^ MARCA);
+            if (forzar) {
+                mapeo.force(posicion, TAMANO_REGISTRO);
+            }
+        }
+
+        // recorre todo el segmento: una posicion reservada por un escritor que no llego a escribir queda en ceros
+        // y no corta la lectura de las siguientes
+        void leer(Lector lector) {
+            for (int posicion = 0; posicion + TAMANO_REGISTRO <= capacidad; posicion += TAMANO_REGISTRO) {
+                long id = mapeo.getLong(posicion);
+                long palabra = mapeo.getLong(posicion + 8);
+                if (id != 0 && mapeo.getLong(posicion + 16) == (id ^ palabra ^ MARCA)) {
+                    lector.registro(id, palabra);
+                }
+            }
+        }
+
+        void vaciar() {
+            int usado = (int) Math.min(posicion.get(), capacidad);
+            for (int i = 0; i + 8 <= usado; i += 8) {
+                mapeo.putLong(i, 0L);
+            }
+            mapeo.force();
+            posicion.set(0);
+        }
+
+        void cerrar() throws IOException {
+            mapeo.force();
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.inventario.inventario.stock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// mapa de id de producto (mayor que 0) a una palabra de 64 bits, con direccionamiento abierto y sondeo lineal
+// sobre arreglos primitivos: sin un objeto por entrada y con cada cambio como un CAS sobre su celda. La
+// capacidad es fija (potencia de 2, ocupada hasta 3/4) y las claves no se borran. Junto a cada palabra guarda
+// la ultima escrita en la base, para encontrar las pendientes sin un registro aparte.
+public class MapaStock {
+
+    // palabra de una celda reservada cuyo valor aun no se publico (nunca es una palabra valida: stock negativo)
+    private static final long SIN_VALOR = -1L;
+
+    private final int mascara;
+
+    private final int maximoOcupadas;
+
+    private final AtomicLongArray claves;
+
+    private final AtomicLongArray valores;
+
+    private final AtomicLongArray persistidos;
+
+    private final AtomicInteger ocupadas = new AtomicInteger();
+
+    public MapaStock(int capacidad) {
+        int celdas = Integer.highestOneBit(Math.max(2, capacidad - 1)) << 1;
+        this.mascara = celdas - 1;
+        this.maximoOcupadas = celdas / 4 * 3;
+        this.claves = new AtomicLongArray(celdas);
+        this.valores = new AtomicLongArray(celdas);
+        this.persistidos = new AtomicLongArray(celdas);
+        for (int i = 0; i < celdas; i++) {
+            valores.set(i, SIN_VALOR);
+        }
+    }
+
+    public int capacidad() {
+        return mascara + 1;
+    }
+
+    // celda del id, o -1 si no esta
+    public int buscar(long id) {
+        for (int i = celdaInicial(id), intentos = 0; intentos <= mascara; i = (i + 1) & mascara, intentos++) {
+            long clave = claves.get(i);
+            if (clave == id) {
+                return i;
+            }
+            if (clave == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    // celda del id; si no estaba la reserva con 'inicial' como palabra actual y persistida. Si otro hilo lo
+    // inserto antes gana su valor
+    public int insertar(long id, long inicial) {
+        for (int i = celdaInicial(id), intentos = 0; intentos <= mascara; i = (i + 1) & mascara, intentos++) {
+            long clave = claves.get(i);
+            if (clave == 0) {
+                if (ocupadas.incrementAndGet() > maximoOcupadas) {
+                    ocupadas.decrementAndGet();
+                    throw new IllegalStateException("mapa de stock lleno: aumentar inventario.stock.memoria.capacidad");
+                }
+                if (claves.compareAndSet(i, 0, id)) {
+                    persistidos.set(i, inicial);
+                    valores.set(i, inicial);
+                    return i;
+                }
+                ocupadas.decrementAndGet();
+                clave = claves.get(i);
+            }
+            if (clave == id) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("mapa de stock lleno: aumentar inventario.stock.memoria.capacidad");
+    }
+
+    public long clave(int celda) {
+        return claves.get(celda);
+    }
+
+    public long valor(int celda) {
+        long valor;
+        // la celda recien reservada por otro hilo publica su valor enseguida
+        while ((valor = valores.get(celda)) == SIN_VALOR) {
+            Thread.onSpinWait();
+        }
+        return valor;
+    }
+
+    public boolean cambiar(int celda, long esperado, long nuevo) {
+        return valores.compareAndSet(celda, esperado, nuevo);
+    }
+
+    // true si la palabra actual no es la ultima escrita en la base
+    public boolean pendiente(int celda) {
+        return claves.get(celda) != 0 && valor(celda) != persistidos.get(celda);
+    }
+
+    public void marcarPersistido(int celda, long valor) {
+        persistidos.set(celda, valor);
+    }
+
+    private int celdaInicial(long id) {
+        long dispersion = id * 0x9E3779B97F4A7C15L;
+        return (int) (dispersion ^ (dispersion >>> 32)) & mascara;
+    }
+}
@@ -0,0 +1,487 @@
+package com.inventario.inventario.stock;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import com.inventario.inventario.cache.ProductoCache;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.exception.ProductoNoEncontradoException;
+import com.inventario.inventario.exception.StockExcedidoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.model.EventoInventario;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.StockFraccion;
+import com.inventario.inventario.model.TipoEventoInventario;
+import com.inventario.inventario.model.TitularStockMemoria;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.repository.StockFraccionRepository;
+import com.inventario.inventario.repository.TitularStockMemoriaRepository;
+import com.inventario.inventario.service.EventoInventarioService;
+import com.inventario.inventario.service.StockFraccionadoService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// stock vigente en memoria (opcional, inventario.stock.memoria.habilitado) para eventos de alta demanda:
+// reservar, liberar o ajustar es un CAS sobre la celda del producto en MapaStock seguido de un registro en
+// DiarioStock, sin ida y vuelta a la base. Cada intervalo-escritura-ms los productos cuyo stock cambio se
+// escriben por detras en la tabla producto, en lotes y con un unico evento STOCK_AJUSTADO por producto con el
+// cambio acumulado. Al arrancar se carga el stock de la base y se reproduce el diario encima, asi ningun cambio
+// confirmado al llamador se pierde si el proceso cae antes de escribirlo.
+// Mientras esta habilitado el stock en memoria manda: una sola instancia puede atender las operaciones de stock.
+// Una segunda sobre el mismo directorio de diario no arranca, y en otro host tampoco mientras la titularidad
+// registrada en la base (stock_memoria_titular, renovada con cada escritura por detras) siga vigente.
+// La version de fila y los eventos recien avanzan con la escritura por detras; para que el ETag no quede atras,
+// marca() agrega la version del cambio en memoria.
+@Component
+public class MotorStock {
+
+    private static final Logger log = LoggerFactory.getLogger(MotorStock.class);
+
+    // con esta fraccion del segmento activo ocupada se rota el diario en la siguiente escritura
+    private static final double OCUPACION_ROTACION = 0.5;
+
+    // tiempo maximo que un registro espera lugar en el diario antes de fallar
+    private static final Duration ESPERA_DIARIO = Duration.ofSeconds(5);
+
+    // resultados de aplicar() que no son una palabra
+    private static final long SIN_STOCK = palabra(0, -1);
+
+    private static final long EXCEDIDO = palabra(0, -2);
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private StockFraccionRepository stockFraccionRepository;
+
+    @Autowired
+    private StockFraccionadoService stockFraccionadoService;
+
+    @Autowired
+    private EventoInventarioService eventoInventarioService;
+
+    @Autowired
+    private ProductoCache productoCache;
+
+    @Autowired
+    private TitularStockMemoriaRepository titularRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${inventario.stock.memoria.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${inventario.stock.memoria.directorio:./diario-stock}")
+    private Path directorio;
+
+    @Value("${inventario.stock.memoria.tamano-segmento:64MB}")
+    private DataSize tamanoSegmento;
+
+    @Value("${inventario.stock.memoria.forzar-disco:false}")
+    private boolean forzarDisco;
+
+    @Value("${inventario.stock.memoria.capacidad:1048576}")
+    private int capacidad;
+
+    @Value("${inventario.stock.memoria.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${inventario.stock.memoria.vigencia-titular:30s}")
+    private Duration vigenciaTitular;
+
+    private MapaStock mapa;
+
+    private DiarioStock diario;
+
+    // segmento rotado cuyos cambios aun no se escribieron en la base, o -1
+    private int segmentoPorVaciar = -1;
+
+    private String titular;
+
+    // System.nanoTime() a partir del cual la escritura por detras renueva la titularidad
+    private long renovarEn;
+
+    // arranque y cambios aplicados en memoria desde entonces, para la marca del catalogo
+    private String arranque;
+
+    private final AtomicLong cambios = new AtomicLong();
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    @PostConstruct
+    public synchronized void iniciar() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+        // primero el diario, que bloquea su directorio: si otro proceso lo tiene abierto el arranque falla antes
+        // de tocar la base
+        diario = new DiarioStock(directorio, (int) tamanoSegmento.toBytes(), forzarDisco, ESPERA_DIARIO);
+        titular = InetAddress.getLocalHost().getHostName() + ":" + directorio.toAbsolutePath().normalize();
+        try {
+            tomarTitularidad();
+        } catch (RuntimeException e) {
+            diario.close();
+            diario = null;
+            throw e;
+        }
+        arranque = Long.toString(System.currentTimeMillis(), 36);
+
+        // con el stock en memoria no hay contencion sobre la fila: los fraccionados vuelven a un unico contador
+        stockFraccionRepository.findAll().stream().map(StockFraccion::getProductoId).distinct()
+                .forEach(id -> stockFraccionadoService.fraccionar(id, 1));
+
+        mapa = new MapaStock(capacidad);
+        productoRepository.findStocks().forEach(total ->
+                mapa.insertar(total.getProductoId(), palabra(0, total.getStock().intValue())));
+
+        // de cada producto vale el registro de mayor version; queda pendiente de escribir en la base
+        Map<Long, Long> reproducidas = new HashMap<>();
+        diario.reproducir((id, palabra) -> reproducidas.merge(id, palabra, MotorStock::posterior));
+        reproducidas.forEach((id, palabra) -> {
+            int celda = mapa.buscar(id);
+            if (celda >= 0) {
+                mapa.cambiar(celda, mapa.valor(celda), palabra);
+            }
+        });
+        escribir();
+        diario.vaciar(0);
+        diario.vaciar(1);
+        segmentoPorVaciar = -1;
+        log.info("stock en memoria iniciado: {} cambios reproducidos del diario en {}", reproducidas.size(), directorio);
+    }
+
+    @PreDestroy
+    public synchronized void cerrar() throws IOException {
+        if (diario == null) {
+            return;
+        }
+        // si la base no responde los cambios quedan en el diario para el proximo arranque
+        try {
+            escribirPendientes();
+            transactionTemplate.executeWithoutResult(estado -> titularRepository.soltar(TitularStockMemoria.UNICO, titular));
+        } finally {
+            diario.close();
+            diario = null;
+        }
+    }
+
+    // toma la titularidad del stock en memoria o falla si otra instancia la tiene vigente
+    private void tomarTitularidad() {
+        long ahora = System.currentTimeMillis();
+        long venceEn = ahora + vigenciaTitular.toMillis();
+        boolean tomada;
+        try {
+            tomada = Boolean.TRUE.equals(transactionTemplate.execute(estado -> {
+                if (titularRepository.tomar(TitularStockMemoria.UNICO, titular, venceEn, ahora) == 1) {
+                    return true;
+                }
+                if (titularRepository.existsById(TitularStockMemoria.UNICO)) {
+                    return false;
+                }
+                titularRepository.saveAndFlush(new TitularStockMemoria(TitularStockMemoria.UNICO, titular, venceEn));
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // otra instancia inserto la fila al mismo tiempo
+            tomada = false;
+        }
+        if (!tomada) {
+            String otro = titularRepository.findById(TitularStockMemoria.UNICO).map(TitularStockMemoria::getTitular).orElse("?");
+            throw new IllegalStateException("el stock en memoria ya esta habilitado en " + otro
+                    + ": solo una instancia puede tenerlo (inventario.stock.memoria.vigencia-titular)");
+        }
+        renovarEn = System.nanoTime() + vigenciaTitular.toNanos() / 3;
+    }
+
+    // suma 'delta' al stock del producto. STOCK_INSUFICIENTE si quedaria negativo, STOCK_EXCEDIDO si pasaria el
+    // maximo de un int, NO_ENCONTRADO si no existe.
+    // El lugar en el diario se reserva antes del CAS: si el diario esta lleno falla sin cambiar la memoria
+    public ResultadoReserva sumar(Long id, int delta) {
+        int celda = celda(id);
+        if (celda < 0) {
+            return ResultadoReserva.NO_ENCONTRADO;
+        }
+        // sin stock no se reserva lugar: los rechazos de una preventa agotada no ocupan el diario
+        long previo = (long) stockDe(mapa.valor(celda)) + delta;
+        if (previo < 0) {
+            return ResultadoReserva.STOCK_INSUFICIENTE;
+        }
+        if (previo > Integer.MAX_VALUE) {
+            return ResultadoReserva.STOCK_EXCEDIDO;
+        }
+        DiarioStock.Reserva registro = diario.reservar();
+        long nueva = aplicar(celda, delta);
+        if (rechazada(nueva)) {
+            registro.descartar();
+            return nueva == SIN_STOCK ? ResultadoReserva.STOCK_INSUFICIENTE : ResultadoReserva.STOCK_EXCEDIDO;
+        }
+        registro.escribir(id, nueva);
+        return ResultadoReserva.APLICADA;
+    }
+
+    // CAS de 'delta' sobre la celda; devuelve la palabra nueva, o SIN_STOCK / EXCEDIDO si el stock quedaria
+    // negativo o no entraria en un int (no se trunca: el cambio se rechaza)
+    private long aplicar(int celda, int delta) {
+        long actual;
+        long nueva;
+        do {
+            actual = mapa.valor(celda);
+            long stock = (long) stockDe(actual) + delta;
+            if (stock < 0) {
+                return SIN_STOCK;
+            }
+            if (stock > Integer.MAX_VALUE) {
+                return EXCEDIDO;
+            }
+            nueva = palabra(versionDe(actual) + 1, (int) stock);
+        } while (!mapa.cambiar(celda, actual, nueva));
+        cambios.incrementAndGet();
+        return nueva;
+    }
+
+    // las palabras de rechazo llevan stock negativo, que ninguna celda tiene
+    private static boolean rechazada(long palabra) {
+        return stockDe(palabra) < 0;
+    }
+
+    // reemplaza el stock del producto (actualizacion o importacion ya escrita en la base)
+    public void fijar(Long id, int stock) {
+        DiarioStock.Reserva registro = diario.reservar();
+        int celda = mapa.insertar(id, palabra(0, stock));
+        long actual;
+        long nueva;
+        do {
+            actual = mapa.valor(celda);
+            nueva = palabra(versionDe(actual) + 1, stock);
+        } while (!mapa.cambiar(celda, actual, nueva));
+        cambios.incrementAndGet();
+        registro.escribir(id, nueva);
+    }
+
+    // fija el stock al confirmar la transaccion en curso, que es la que lo escribe en la base: si se revierte la
+    // memoria no cambia. Sin transaccion se fija de inmediato
+    public void fijarAlConfirmar(Map<Long, Integer> stockPorId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stockPorId.forEach(this::fijar);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stockPorId.forEach(MotorStock.this::fijar);
+            }
+        });
+    }
+
+    // aplica los deltas todo o nada. Primero se reserva en el diario un registro por producto, asi un diario
+    // lleno falla sin haber cambiado nada. Los negativos van primero: si uno no alcanza (o un positivo excederia
+    // el maximo) se devuelven los ya aplicados y cada producto deja en su registro la palabra final
+    public void ajustar(Map<Long, Integer> deltas) {
+        Map<Long, Integer> celdas = new HashMap<>();
+        Set<Long> faltantes = new HashSet<>();
+        for (Long id : deltas.keySet()) {
+            int celda = celda(id);
+            if (celda < 0) {
+                faltantes.add(id);
+            } else {
+                celdas.put(id, celda);
+            }
+        }
+        if (!faltantes.isEmpty()) {
+            throw new ProductoNoEncontradoException(faltantes);
+        }
+
+        List<DiarioStock.Reserva> registros = new ArrayList<>(deltas.size());
+        try {
+            for (int i = 0; i < deltas.size(); i++) {
+                registros.add(diario.reservar());
+            }
+        } catch (RuntimeException e) {
+            registros.forEach(DiarioStock.Reserva::descartar);
+            throw e;
+        }
+
+        List<Map.Entry<Long, Integer>> orden = new ArrayList<>(deltas.entrySet());
+        orden.sort(Map.Entry.comparingByValue());
+        long[] nuevas = new long[orden.size()];
+        for (int i = 0; i < orden.size(); i++) {
+            int celda = celdas.get(orden.get(i).getKey());
+            nuevas[i] = aplicar(celda, orden.get(i).getValue());
+            if (rechazada(nuevas[i])) {
+                long fallo = nuevas[i];
+                for (int j = 0; j < i; j++) {
+                    nuevas[j] = devolver(celdas.get(orden.get(j).getKey()), orden.get(j).getValue());
+                }
+                for (int j = i; j < orden.size(); j++) {
+                    registros.get(j).descartar();
+                }
+                for (int j = 0; j < i; j++) {
+                    registros.get(j).escribir(orden.get(j).getKey(), nuevas[j]);
+                }
+                Long id = orden.get(i).getKey();
+                throw fallo == SIN_STOCK ? new StockInsuficienteException(id) : new StockExcedidoException(id);
+            }
+        }
+        for (int i = 0; i < orden.size(); i++) {
+            registros.get(i).escribir(orden.get(i).getKey(), nuevas[i]);
+        }
+    }
+
+    // deshace un delta ya aplicado por ajustar; devuelve la palabra resultante. Solo falla si entre medio otra
+    // operacion llevo el stock al limite: entonces el delta queda aplicado, y la palabra sigue siendo la actual
+    private long devolver(int celda, int delta) {
+        long nueva = aplicar(celda, -delta);
+        if (rechazada(nueva)) {
+            log.warn("no se pudo deshacer un ajuste de {} en memoria: el stock cambio mientras tanto", delta);
+            return mapa.valor(celda);
+        }
+        return nueva;
+    }
+
+    // sufijo para la version (ETag) del producto: la version de su ultimo cambio en memoria, que avanza con cada
+    // reserva aunque la fila aun no se haya escrito. Vacio si el motor esta deshabilitado
+    public String marca(Long id) {
+        if (!habilitado || id == null) {
+            return "";
+        }
+        int celda = mapa.buscar(id);
+        return celda < 0 ? "" : "." + arranque + "." + Integer.toUnsignedString(versionDe(mapa.valor(celda)));
+    }
+
+    // sufijo para la version del catalogo: cambios aplicados en memoria desde el arranque
+    public String marcaCatalogo() {
+        return habilitado ? "." + arranque + "." + cambios.get() : "";
+    }
+
+    // stock en memoria del producto; vacio si el motor esta deshabilitado o el producto aun no se cargo
+    public OptionalInt stock(Long id) {
+        if (!habilitado || id == null) {
+            return OptionalInt.empty();
+        }
+        int celda = mapa.buscar(id);
+        return celda < 0 ? OptionalInt.empty() : OptionalInt.of(stockDe(mapa.valor(celda)));
+    }
+
+    // escritura por detras: rota el diario si hace falta (esperando los registros en curso del segmento rotado),
+    // escribe los pendientes y recien entonces vacia el segmento rotado, cuyos cambios ya estan en la base
+    @Scheduled(fixedDelayString = "${inventario.stock.memoria.intervalo-escritura-ms:200}")
+    public synchronized void escribirPendientes() {
+        if (diario == null) {
+            return;
+        }
+        // si otra instancia tomo la titularidad (esta quedo detenida mas que la vigencia) no se escribe: los
+        // cambios siguen en el diario
+        if (System.nanoTime() - renovarEn >= 0) {
+            tomarTitularidad();
+        }
+        if (segmentoPorVaciar < 0 && diario.ocupacion() >= OCUPACION_ROTACION) {
+            segmentoPorVaciar = diario.rotar();
+        }
+        escribir();
+        if (segmentoPorVaciar >= 0) {
+            diario.vaciar(segmentoPorVaciar);
+            segmentoPorVaciar = -1;
+        }
+    }
+
+    private void escribir() {
+        Map<Integer, Long> lote = new LinkedHashMap<>();
+        for (int celda = 0; celda < mapa.capacidad(); celda++) {
+            if (mapa.pendiente(celda)) {
+                lote.put(celda, mapa.valor(celda));
+                if (lote.size() >= tamanoLote) {
+                    escribirLote(lote);
+                    lote.clear();
+                }
+            }
+        }
+        if (!lote.isEmpty()) {
+            escribirLote(lote);
+        }
+    }
+
+    // un UPDATE por producto cuyo stock cambio, agrupados al hacer flush, y su evento en la misma transaccion
+    private void escribirLote(Map<Integer, Long> lote) {
+        Map<Long, Integer> stockPorId = new HashMap<>();
+        lote.forEach((celda, palabra) -> stockPorId.put(mapa.clave(celda), stockDe(palabra)));
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            List<EventoInventario> eventos = new ArrayList<>();
+            List<Producto> cambiados = new ArrayList<>();
+            for (Producto producto : productoRepository.findAllByIdForUpdate(stockPorId.keySet())) {
+                int stock = stockPorId.get(producto.getId());
+                if (stock != producto.getStock()) {
+                    eventos.add(EventoInventario.deStock(TipoEventoInventario.STOCK_AJUSTADO, producto.getId(), stock,
+                            stock - producto.getStock()));
+                    producto.setStock(stock);
+                    cambiados.add(producto);
+                }
+            }
+            eventoInventarioService.registrar(eventos);
+            for (int i = 0; i < cambiados.size(); i++) {
+                cambiados.get(i).setVersion(eventos.get(i).getSecuencia());
+            }
+        });
+        productoCache.invalidar(stockPorId.keySet());
+        lote.forEach(mapa::marcarPersistido);
+    }
+
+    // celda del producto, cargando su stock de la base la primera vez; -1 si el producto no existe
+    private int celda(Long id) {
+        int celda = mapa.buscar(id);
+        if (celda < 0) {
+            Optional<Integer> stock = productoRepository.findStockById(id);
+            if (stock.isEmpty()) {
+                return -1;
+            }
+            celda = mapa.insertar(id, palabra(0, stock.get()));
+        }
+        return celda;
+    }
+
+    // palabra de una celda: version del cambio en los 32 bits altos y stock en los bajos
+    static long palabra(int version, int stock) {
+        return ((long) version << 32) | (stock & 0xFFFFFFFFL);
+    }
+
+    static int versionDe(long palabra) {
+        return (int) (palabra >>> 32);
+    }
+
+    static int stockDe(long palabra) {
+        return (int) palabra;
+    }
+
+    // la de version mas reciente, tolerando que el contador de 32 bits de la vuelta
+    static long posterior(long una, long otra) {
+        return versionDe(otra) - versionDe(una) > 0 ? otra : una;
+    }
+}
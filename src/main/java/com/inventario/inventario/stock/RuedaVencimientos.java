@@ -0,0 +1,66 @@
+package com.inventario.inventario.stock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// rueda de tiempos (hashed timing wheel) para vencimientos: una ranura por cada tic de 'resolucion' ms, recorridas
+// en circulo. Agregar es O(1) y cada tic revisa solo su ranura, sin ordenar ni recorrer todos los pendientes; un
+// vencimiento a mas de una vuelta espera en su ranura a la vuelta que le toca. Nada vence antes de su hora y como
+// mucho un tic despues
+public class RuedaVencimientos<T> {
+
+    private record Entrada<T>(T valor, long tic) {
+    }
+
+    private final long resolucion;
+
+    private final int mascara;
+
+    private final List<List<Entrada<T>>> ranuras;
+
+    // proximo tic a revisar
+    private long tic;
+
+    private int pendientes;
+
+    public RuedaVencimientos(int ranuras, long resolucion, long ahora) {
+        int cantidad = Integer.highestOneBit(Math.max(2, ranuras - 1)) << 1;
+        this.resolucion = resolucion;
+        this.mascara = cantidad - 1;
+        this.ranuras = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            this.ranuras.add(new ArrayList<>());
+        }
+        this.tic = Math.floorDiv(ahora, resolucion);
+    }
+
+    // lo ya vencido queda en el proximo tic
+    public synchronized void agregar(T valor, long venceEn) {
+        long ticVence = Math.max(tic, Math.floorDiv(venceEn + resolucion - 1, resolucion));
+        ranuras.get((int) (ticVence & mascara)).add(new Entrada<>(valor, ticVence));
+        pendientes++;
+    }
+
+    // quita y devuelve lo vencido hasta 'ahora'. Tras una pausa de mas de una vuelta basta revisar cada ranura
+    // una vez
+    public synchronized List<T> avanzar(long ahora) {
+        long hasta = Math.floorDiv(ahora, resolucion);
+        List<T> vencidos = new ArrayList<>();
+        for (long t = Math.max(tic, hasta - mascara); t <= hasta; t++) {
+            ranuras.get((int) (t & mascara)).removeIf(entrada -> {
+                if (entrada.tic() > hasta) {
+                    return false;
+                }
+                vencidos.add(entrada.valor());
+                return true;
+            });
+        }
+        tic = Math.max(tic, hasta + 1);
+        pendientes -= vencidos.size();
+        return vencidos;
+    }
+
+    public synchronized int pendientes() {
+        return pendientes;
+    }
+}
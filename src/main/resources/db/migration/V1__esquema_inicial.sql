@@ -0,0 +1,14 @@
+-- esquema inicial del inventario: la tabla producto tal como la creaba ddl-auto=update antes de las migraciones
+-- (incluido el nombre generado de su restriccion unica). Con "if not exists" tambien sirve para esas bases,
+-- tomadas como version 0 por baseline-on-migrate
+
+create table if not exists producto (
+    id bigint not null auto_increment,
+    activo bit not null,
+    marca varchar(100) not null,
+    nombre varchar(100) not null,
+    precio bigint not null,
+    stock integer not null,
+    primary key (id),
+    unique key UK_9su14n91mtgcg5ehl658v4afx (nombre)
+) engine=InnoDB;
@@ -0,0 +1,51 @@
+-- version de fila, restriccion unica con nombre propio, indices de busqueda y las tablas de eventos, stock
+-- fraccionado y retenciones
+
+-- las filas existentes quedan en version 0: la sincronizacion inicial (/cambios sin cursor) tambien las entrega
+alter table producto add column version bigint not null default 0;
+
+-- ProductoService reconoce el duplicado por el nombre de la restriccion
+alter table producto drop index UK_9su14n91mtgcg5ehl658v4afx;
+alter table producto add constraint uk_producto_nombre unique (nombre);
+
+-- busquedas por marca dentro de los productos activos (o inactivos)
+create index idx_producto_activo_marca on producto (activo, marca);
+create index idx_producto_precio on producto (precio);
+create index idx_producto_stock on producto (stock);
+-- sincronizacion incremental: filas modificadas despues de una version
+create index idx_producto_version on producto (version);
+
+create table evento_inventario (
+    secuencia bigint not null auto_increment,
+    producto_id bigint not null,
+    tipo enum ('ACTUALIZADO','CREADO','DESACTIVADO','DESCARTADO','PURGADO','STOCK_AJUSTADO','STOCK_LIBERADO','STOCK_RESERVADO') not null,
+    activo bit,
+    nombre varchar(100),
+    precio bigint,
+    stock integer,
+    marca varchar(100),
+    cantidad integer,
+    fecha_millis bigint not null,
+    primary key (secuencia)
+) engine=InnoDB;
+
+create table producto_stock_fraccion (
+    id bigint not null auto_increment,
+    producto_id bigint not null,
+    fraccion integer not null,
+    stock integer not null,
+    primary key (id),
+    unique key uk_stock_fraccion_producto (producto_id, fraccion)
+) engine=InnoDB;
+
+create table retencion_stock (
+    id bigint not null auto_increment,
+    producto_id bigint not null,
+    cantidad integer not null,
+    vence_en bigint not null,
+    primary key (id),
+    -- stock retenido de un producto
+    index idx_retencion_producto (producto_id),
+    -- barrido de respaldo de las vencidas
+    index idx_retencion_vence (vence_en)
+) engine=InnoDB;
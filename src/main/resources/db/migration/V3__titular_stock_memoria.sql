@@ -0,0 +1,8 @@
+-- instancia que tiene el stock en memoria habilitado (una unica fila, id 1): otra no arranca el motor mientras
+-- la vigencia no venza
+create table stock_memoria_titular (
+    id bigint not null,
+    titular varchar(255) not null,
+    vence_en bigint not null,
+    primary key (id)
+) engine=InnoDB;
@@ -0,0 +1,159 @@
+package com.inventario.inventario.admision;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.service.ProductoService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// limite de 4 requests concurrentes (los listados usan hasta 2) y cubetas de 32 requests por direccion, con
+// 2 reservadas para cada X-Cliente
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:db_inventario_admision;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "inventario.admision.habilitado=true",
+        "inventario.admision.limite-inicial=4",
+        "inventario.admision.limite-minimo=4",
+        "inventario.admision.limite-maximo=4",
+        "inventario.admision.fraccion-baja=0.5",
+        "inventario.admision.tasa-por-cliente=0.001",
+        "inventario.admision.rafaga-por-cliente=32"
+})
+@AutoConfigureMockMvc
+public class AdmisionFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LimiteAdaptativo limiteAdaptativo;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    @Test
+    void testClienteSobreSuTasa_Recibe429ConRetryAfter() throws Exception {
+        double rechazos = rechazosPorCliente();
+        // un cliente solo gasta la cubeta completa de su direccion: su reserva y la parte comun
+        assertThat(admitidas("10.0.0.1", "tienda-1", 40)).isEqualTo(32);
+        mockMvc.perform(get("/api/v1/productos/page").with(desde("10.0.0.1"))
+                .header(AdmisionFilter.CABECERA_CLIENTE, "tienda-1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+
+        // otro cliente de la misma direccion conserva su reserva, aunque la cubeta comun este vacia
+        assertThat(admitidas("10.0.0.1", "tienda-2", 5)).isEqualTo(2);
+        // y la cabecera no alcanza para gastar la cubeta de otra direccion
+        mockMvc.perform(get("/api/v1/productos/page").with(desde("10.0.0.2"))
+                .header(AdmisionFilter.CABECERA_CLIENTE, "tienda-1"))
+                .andExpect(status().is2xxSuccessful());
+        assertThat(rechazosPorCliente() - rechazos).isEqualTo(8 + 1 + 3);
+    }
+
+    @Test
+    void testClienteQueRotaLaCabecera_NoPasaLaCubetaDeSuDireccion() throws Exception {
+        int admitidas = 0;
+        for (int i = 0; i < 80; i++) {
+            admitidas += admitidas("10.0.0.3", "rotada-" + i, 1);
+        }
+        // las reservas de los primeros 16 tambien se pagan en la cubeta de la direccion: el total es su rafaga
+        assertThat(admitidas).isEqualTo(32);
+    }
+
+    @Test
+    void testLimiteOcupado_DescartaListadosYAdmiteReservas() throws Exception {
+        Producto producto = productoService.save(new Producto(null, true, "Perfume Admision", 50000L, 10, "Armani"));
+        // dos requests en curso: los listados ya no entran, las criticas si
+        limiteAdaptativo.adquirir(1.0);
+        limiteAdaptativo.adquirir(1.0);
+        try {
+            mockMvc.perform(get("/api/v1/productos").header(AdmisionFilter.CABECERA_CLIENTE, "catalogo"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+            mockMvc.perform(post("/api/v1/productos/id/" + producto.getId() + "/reserve").param("cantidad", "1")
+                    .header(AdmisionFilter.CABECERA_CLIENTE, "checkout"))
+                    .andExpect(status().isOk());
+        } finally {
+            long ahora = System.nanoTime();
+            limiteAdaptativo.liberar(ahora, ahora, false);
+            limiteAdaptativo.liberar(ahora, ahora, false);
+        }
+        assertThat(limiteAdaptativo.enCurso()).isZero();
+    }
+
+    @Test
+    void testFueraDeLaApi_NoSeFiltra() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/actuator/health").header(AdmisionFilter.CABECERA_CLIENTE, "monitor"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    private int admitidas(String direccion, String cliente, int requests) throws Exception {
+        int admitidas = 0;
+        for (int i = 0; i < requests; i++) {
+            int estado = mockMvc.perform(get("/api/v1/productos/page").with(desde(direccion))
+                    .header(AdmisionFilter.CABECERA_CLIENTE, cliente))
+                    .andReturn().getResponse().getStatus();
+            if (estado / 100 == 2) {
+                admitidas++;
+            }
+        }
+        return admitidas;
+    }
+
+    private double rechazosPorCliente() {
+        Counter rechazos = meterRegistry.find("inventario.admision.rechazos").tag("motivo", "cliente").counter();
+        return rechazos != null ? rechazos.count() : 0;
+    }
+
+    private static RequestPostProcessor desde(String direccion) {
+        return request -> {
+            request.setRemoteAddr(direccion);
+            return request;
+        };
+    }
+
+    @Test
+    void testPrioridades() {
+        assertThat(Prioridad.de("POST", "/api/v1/productos/id/7/reserve")).isEqualTo(Prioridad.CRITICA);
+        assertThat(Prioridad.de("GET", "/api/v2/productos/id/7")).isEqualTo(Prioridad.CRITICA);
+        assertThat(Prioridad.de("GET", "/api/v1/productos/resumen/id/7")).isEqualTo(Prioridad.CRITICA);
+        assertThat(Prioridad.de("POST", "/api/v1/productos/retenciones")).isEqualTo(Prioridad.CRITICA);
+        assertThat(Prioridad.de("GET", "/api/v1/productos/page")).isEqualTo(Prioridad.NORMAL);
+        assertThat(Prioridad.de("POST", "/api/v1/productos")).isEqualTo(Prioridad.NORMAL);
+        assertThat(Prioridad.de("GET", "/api/v1/productos")).isEqualTo(Prioridad.BAJA);
+        assertThat(Prioridad.de("GET", "/api/v1/productos/stream")).isEqualTo(Prioridad.BAJA);
+        assertThat(Prioridad.de("POST", "/api/v1/productos/import")).isEqualTo(Prioridad.BAJA);
+    }
+}
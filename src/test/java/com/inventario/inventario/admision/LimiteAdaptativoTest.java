@@ -0,0 +1,86 @@
+package com.inventario.inventario.admision;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class LimiteAdaptativoTest {
+
+    private static final long OBJETIVO = 100;
+
+    // limite de 10 entre 2 y 20, objetivo de 100 ns y reduccion a la mitad
+    private final LimiteAdaptativo limite = new LimiteAdaptativo(10, 2, 20, OBJETIVO, 0.5);
+
+    @Test
+    void testLaBajaPrioridadQuedaFueraAntesQueLaCritica() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(limite.adquirir(0.5)).isTrue();
+        }
+        assertThat(limite.adquirir(0.5)).isFalse();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limite.adquirir(1.0)).isTrue();
+        }
+        assertThat(limite.adquirir(1.0)).isFalse();
+        assertThat(limite.enCurso()).isEqualTo(10);
+    }
+
+    @Test
+    void testLatenciaAlta_ReduceUnaVezPorTanda() {
+        long inicio = System.nanoTime();
+        limite.adquirir(1.0);
+        limite.adquirir(1.0);
+
+        limite.liberar(inicio, inicio + OBJETIVO * 10, true);
+        assertThat(limite.limite()).isEqualTo(5);
+        // empezo antes de la reduccion: su latencia es la del limite anterior
+        limite.liberar(inicio, inicio + OBJETIVO * 20, true);
+        assertThat(limite.limite()).isEqualTo(5);
+
+        long despues = inicio + OBJETIVO * 30;
+        limite.adquirir(1.0);
+        limite.liberar(despues, despues + OBJETIVO * 10, true);
+        assertThat(limite.limite()).isEqualTo(2);
+        assertThat(limite.enCurso()).isZero();
+    }
+
+    @Test
+    void testLatenciaBajaConUso_CreceHastaElMaximo() {
+        for (int i = 0; i < 10; i++) {
+            limite.adquirir(1.0);
+        }
+        for (int i = 0; i < 1000; i++) {
+            long inicio = System.nanoTime();
+            limite.adquirir(1.0);
+            limite.liberar(inicio, inicio + 1, true);
+        }
+        assertThat(limite.limite()).isEqualTo(20);
+    }
+
+    @Test
+    void testSinUsoNiMuestra_NoCambia() {
+        long inicio = System.nanoTime();
+        limite.adquirir(1.0);
+        limite.liberar(inicio, inicio + 1, true);
+        limite.adquirir(1.0);
+        limite.liberar(inicio, inicio + OBJETIVO * 10, false);
+
+        assertThat(limite.limite()).isEqualTo(10);
+    }
+
+    @Test
+    void testCubetaTokens_RafagaYRecarga() {
+        CubetaTokens cubeta = new CubetaTokens(10, 2, 0);
+
+        assertThat(cubeta.tomar(0)).isZero();
+        assertThat(cubeta.tomar(0)).isZero();
+        // a 10 por segundo el siguiente token llega en 100 ms
+        assertThat(cubeta.tomar(0)).isEqualTo(100_000_000L);
+        assertThat(cubeta.tomar(50_000_000L)).isEqualTo(50_000_000L);
+        assertThat(cubeta.tomar(100_000_000L)).isZero();
+        // la rafaga no acumula mas de 2
+        assertThat(cubeta.tomar(10_000_000_000L)).isZero();
+        assertThat(cubeta.tomar(10_000_000_000L)).isZero();
+        assertThat(cubeta.tomar(10_000_000_000L)).isPositive();
+    }
+}
@@ -0,0 +1,68 @@
+package com.inventario.inventario.assemblers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.hateoas.server.core.DelegatingLinkRelationProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventario.inventario.controller.ProductoControllerV2;
+import com.inventario.inventario.model.Producto;
+
+public class ProductoModelAssemblerTest {
+
+    private final ProductoModelAssembler productoAssembler = new ProductoModelAssembler();
+
+    @BeforeEach
+    void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName("inventario.perfulandia.cl");
+        request.setServerPort(9000);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void testToModel_HalIdenticoAMethodOn() throws Exception {
+        Producto producto = new Producto(42L, true, "Acqua di Gio", 50000L, 10, "Armani");
+
+        // representacion construida como lo hacia el assembler con linkTo(methodOn(...))
+        EntityModel<Producto> esperado = EntityModel.of(producto);
+        esperado.add(linkTo(methodOn(ProductoControllerV2.class).findProducto(42L, null)).withSelfRel());
+        esperado.add(linkTo(methodOn(ProductoControllerV2.class).updateProducto(42L, null)).withRel("update"));
+        esperado.add(linkTo(methodOn(ProductoControllerV2.class).deleteProducto(42L)).withRel("delete"));
+        esperado.add(linkTo(methodOn(ProductoControllerV2.class).getProductos(null)).withRel("all-products"));
+
+        ObjectMapper halMapper = new ObjectMapper().registerModule(new Jackson2HalModule());
+        halMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                        new DelegatingLinkRelationProvider(new DefaultLinkRelationProvider()), CurieProvider.NONE,
+                        MessageResolver.DEFAULTS_ONLY));
+
+        assertThat(halMapper.writeValueAsString(productoAssembler.toModel(producto)))
+                .isEqualTo(halMapper.writeValueAsString(esperado));
+    }
+
+    @Test
+    void testBaseProductos_SeResuelveUnaVezPorRequest() {
+        String base = productoAssembler.baseProductos();
+
+        assertThat(base).isEqualTo("http://inventario.perfulandia.cl:9000/api/v2/productos");
+        assertThat(productoAssembler.baseProductos()).isSameAs(base);
+    }
+}
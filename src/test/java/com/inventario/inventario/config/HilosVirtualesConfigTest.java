@@ -0,0 +1,41 @@
+package com.inventario.inventario.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+// con el modo de hilos virtuales activo, las requests de Tomcat y las tareas asincronas corren en hilos virtuales
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "inventario.hilos-virtuales.habilitado=true")
+public class HilosVirtualesConfigTest {
+
+        @Autowired
+        private ServletWebServerApplicationContext contexto;
+
+        @Autowired
+        @Qualifier("applicationTaskExecutor")
+        private AsyncTaskExecutor applicationTaskExecutor;
+
+        @Test
+        void testTomcat_UsaHilosVirtuales() {
+                Executor executor = ((TomcatWebServer) contexto.getWebServer()).getTomcat().getConnector()
+                        .getProtocolHandler().getExecutor();
+
+                assertThat(CompletableFuture.supplyAsync(() -> Thread.currentThread().isVirtual(), executor).join())
+                        .isTrue();
+        }
+
+        @Test
+        void testTareasAsincronas_UsanHilosVirtuales() throws Exception {
+                assertThat(applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get()).isTrue();
+        }
+}
@@ -0,0 +1,42 @@
+package com.inventario.inventario.config;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+// verifica que el endpoint prometheus publica las metricas por endpoint, de Hibernate (incluida la cache de
+// segundo nivel), de la cache y del pool
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricasConfigTest {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Test
+        void testPrometheus_PublicaMetricasDelServicio() throws Exception {
+                mockMvc.perform(get("/api/v1/productos/page")).andExpect(status().isNoContent());
+                mockMvc.perform(post("/api/v1/productos/id/999/reserve").param("cantidad", "1"))
+                        .andExpect(status().isNotFound());
+
+                mockMvc.perform(get("/actuator/prometheus"))
+                        .andExpect(status().isOk())
+                        .andExpect(content().string(containsString("handler=\"ProductoController.getPaginaProductos\"")))
+                        .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                        .andExpect(content().string(containsString("inventario_stock_operaciones_total{")))
+                        .andExpect(content().string(containsString("hibernate_statements_total")))
+                        .andExpect(content().string(containsString("hibernate_second_level_cache_requests_total{")))
+                        .andExpect(content().string(containsString("cache_gets_total{application=\"inventario\",cache=\"productos\"")))
+                        .andExpect(content().string(containsString("hikaricp_connections_active")));
+        }
+}
@@ -0,0 +1,68 @@
+package com.inventario.inventario.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.inventario.inventario.model.Producto;
+
+// el esquema de las migraciones (db/migration) frente a las entidades: la aplicacion arranca con Flyway y
+// ddl-auto=validate con el dialecto de MySQL, como fuera de las pruebas
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:db_inventario_migraciones;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect"
+})
+public class MigracionesTest {
+
+        @Autowired
+        private Flyway flyway;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Test
+        void testMigraciones_CoincidenConLasEntidades() {
+                assertThat(flyway.info().current().getVersion()).isEqualTo(MigrationVersion.fromVersion("3"));
+                assertThat(flyway.info().pending()).isEmpty();
+
+                jdbcTemplate.update("insert into producto (activo, nombre, precio, stock, marca, version) "
+                        + "values (true, 'Perfume Migrado', 1000, 5, 'Marca', 1)");
+                assertThat(jdbcTemplate.queryForObject("select count(*) from producto", Integer.class)).isEqualTo(1);
+        }
+
+        @Test
+        void testBaseCreadaPorUpdate_SeTomaComoVersionCeroYCompletaLasTablas() {
+                DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                        "jdbc:h2:mem:db_inventario_anterior;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+                JdbcTemplate anterior = new JdbcTemplate(dataSource);
+                // base de antes de las migraciones con datos: el DDL que generaba ddl-auto=update para la entidad original
+                anterior.execute("create table producto (id bigint not null auto_increment, activo bit not null, "
+                        + "marca varchar(100) not null, nombre varchar(100) not null, precio bigint not null, "
+                        + "stock integer not null, primary key (id)) engine=InnoDB");
+                anterior.execute("alter table producto add constraint UK_9su14n91mtgcg5ehl658v4afx unique (nombre)");
+                anterior.update("insert into producto (activo, nombre, precio, stock, marca) "
+                        + "values (true, 'Perfume Previo', 1000, 5, 'Marca')");
+
+                Flyway migraciones = Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("0").load();
+                migraciones.migrate();
+
+                assertThat(anterior.queryForObject("select nombre from producto", String.class)).isEqualTo("Perfume Previo");
+                assertThat(anterior.queryForObject("select version from producto", Long.class)).isZero();
+                assertThat(anterior.queryForObject("select count(*) from retencion_stock", Integer.class)).isZero();
+                // el duplicado se informa con el nombre propio de la restriccion
+                assertThatThrownBy(() -> anterior.update("insert into producto (activo, nombre, precio, stock, marca) "
+                        + "values (true, 'Perfume Previo', 1000, 5, 'Marca')"))
+                        .hasMessageContaining(Producto.RESTRICCION_NOMBRE.toUpperCase());
+                assertThat(migraciones.info().applied()).extracting(migracion -> migracion.getVersion().getVersion())
+                        .containsExactly("0", "1", "2", "3");
+        }
+}
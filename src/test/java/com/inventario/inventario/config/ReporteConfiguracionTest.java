@@ -0,0 +1,48 @@
+package com.inventario.inventario.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// el perfil prod sobre la base H2 de las pruebas (que ignora las propiedades propias del driver MySQL), con el
+// esquema de las migraciones como en produccion: el pool toma el tamano de la concurrencia esperada y el reporte
+// de arranque muestra los ajustes efectivos
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:db_inventario_prod;MODE=MySQL;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE",
+        "spring.flyway.enabled=true",
+        "inventario.pool.concurrencia-esperada=12"
+})
+@ActiveProfiles("prod")
+public class ReporteConfiguracionTest {
+
+        @Autowired
+        private HikariDataSource dataSource;
+
+        @Autowired
+        private ReporteConfiguracion reporteConfiguracion;
+
+        @Test
+        void testPerfilProd_DimensionaElPoolYCacheaSentencias() {
+                assertThat(dataSource.getMaximumPoolSize()).isEqualTo(12);
+                assertThat(dataSource.getMinimumIdle()).isEqualTo(12);
+                assertThat(dataSource.getDataSourceProperties())
+                        .containsEntry("cachePrepStmts", "true")
+                        .containsEntry("useServerPrepStmts", "true")
+                        .containsEntry("rewriteBatchedStatements", "true");
+        }
+
+        @Test
+        void testReporte_MuestraLaConfiguracionEfectiva() {
+                assertThat(reporteConfiguracion.lineas())
+                        .anyMatch(linea -> linea.startsWith("perfiles activos: [prod], open-in-view=false"))
+                        .anyMatch(linea -> linea.contains("maximo=12, minimo inactivas=12"))
+                        .anyMatch(linea -> linea.contains("prepStmtCacheSize=500"))
+                        .anyMatch(linea -> linea.contains("hibernate.query.plan_cache_max_size=4096")
+                                && linea.contains("hibernate.jdbc.batch_size=50"));
+        }
+}
@@ -0,0 +1,161 @@
+package com.inventario.inventario.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+
+// negociacion de compresion y de representacion (JSON, CBOR, columnar) sobre el servidor real
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class RepresentacionesTest {
+
+        private static final int PRODUCTOS = 100;
+
+        @LocalServerPort
+        private int puerto;
+
+        @Autowired
+        private ProductoRepository productoRepository;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        private final HttpClient cliente = HttpClient.newHttpClient();
+
+        @BeforeEach
+        void setUp() {
+                List<Producto> productos = new ArrayList<>();
+                for (int i = 1; i <= PRODUCTOS; i++) {
+                        productos.add(new Producto(null, true, "Perfume " + i, 10000L + i, i, "Marca " + (i % 5)));
+                }
+                productoRepository.saveAll(productos);
+        }
+
+        @AfterEach
+        void tearDown() {
+                productoRepository.deleteAll();
+        }
+
+        @Test
+        void testListado_SeComprimeConGzip() throws Exception {
+                HttpResponse<byte[]> respuesta = get("application/json", "gzip");
+
+                assertThat(respuesta.headers().firstValue("Content-Encoding")).contains("gzip");
+                assertThat(respuesta.headers().firstValue("ETag")).hasValueSatisfying(etag -> assertThat(etag).startsWith("W/"));
+                try (GZIPInputStream entrada = new GZIPInputStream(new ByteArrayInputStream(respuesta.body()))) {
+                        assertThat(objectMapper.readTree(entrada)).hasSize(PRODUCTOS);
+                }
+        }
+
+        @Test
+        void testListado_SinAcceptEncodingNoSeComprime() throws Exception {
+                HttpResponse<byte[]> respuesta = get("application/json", null);
+
+                assertThat(respuesta.headers().firstValue("Content-Encoding")).isEmpty();
+                assertThat(objectMapper.readTree(respuesta.body())).hasSize(PRODUCTOS);
+        }
+
+        @Test
+        void testListado_ComprimidoSigueValidandoElETag() throws Exception {
+                HttpResponse<byte[]> primera = get("application/json", "gzip");
+                String etag = primera.headers().firstValue("ETag").orElseThrow();
+
+                HttpResponse<byte[]> segunda = cliente.send(HttpRequest.newBuilder(uri())
+                                .header("Accept", "application/json")
+                                .header("Accept-Encoding", "gzip")
+                                .header("If-None-Match", etag)
+                                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+                assertThat(segunda.statusCode()).isEqualTo(304);
+        }
+
+        @Test
+        void testListado_CadaRepresentacionTieneSuETag() throws Exception {
+                HttpResponse<byte[]> json = get("application/json", null);
+                HttpResponse<byte[]> cbor = get("application/cbor", null);
+                String etagJson = json.headers().firstValue("ETag").orElseThrow();
+
+                assertThat(String.join(",", json.headers().allValues("Vary")).toLowerCase().split(",\\s*")).contains("accept");
+                assertThat(cbor.headers().firstValue("ETag")).isPresent().get().isNotEqualTo(etagJson);
+
+                // el ETag del JSON no valida la copia CBOR
+                HttpResponse<byte[]> revalidada = cliente.send(HttpRequest.newBuilder(uri())
+                                .header("Accept", "application/cbor")
+                                .header("If-None-Match", etagJson)
+                                .build(), HttpResponse.BodyHandlers.ofByteArray());
+                assertThat(revalidada.statusCode()).isEqualTo(200);
+                assertThat(revalidada.headers().firstValue("Content-Type")).contains("application/cbor");
+        }
+
+        @Test
+        void testListado_AcceptEquivalentesCompartenETag() throws Exception {
+                String etag = get("application/json", null).headers().firstValue("ETag").orElseThrow();
+
+                assertThat(get("application/json;q=0.9, */*;q=0.1", null).headers().firstValue("ETag")).contains(etag);
+                assertThat(get("*/*", null).headers().firstValue("ETag")).contains(etag);
+                assertThat(get("application/cbor, application/json;q=0.5", null).headers().firstValue("ETag"))
+                                .isEqualTo(get("application/cbor", null).headers().firstValue("ETag"));
+
+                HttpResponse<byte[]> revalidada = cliente.send(HttpRequest.newBuilder(uri())
+                                .header("Accept", "application/json, text/plain;q=0.5")
+                                .header("If-None-Match", etag)
+                                .build(), HttpResponse.BodyHandlers.ofByteArray());
+                assertThat(revalidada.statusCode()).isEqualTo(304);
+        }
+
+        @Test
+        void testListado_Cbor() throws Exception {
+                HttpResponse<byte[]> respuesta = get("application/cbor", null);
+
+                assertThat(respuesta.headers().firstValue("Content-Type")).contains("application/cbor");
+                JsonNode productos = new CBORMapper().readTree(respuesta.body());
+                assertThat(productos).hasSize(PRODUCTOS);
+                assertThat(productos.get(0).get("nombre").asText()).startsWith("Perfume ");
+        }
+
+        @Test
+        void testListado_ColumnarEsMasChicoQueJson() throws Exception {
+                HttpResponse<byte[]> columnar = get("application/vnd.inventario.columnar+json", null);
+                HttpResponse<byte[]> json = get("application/json", null);
+
+                JsonNode cuerpo = objectMapper.readTree(columnar.body());
+                assertThat(cuerpo.get("columnas")).hasSize(ProductosColumnaresConverter.COLUMNAS.size());
+                assertThat(cuerpo.get("filas")).hasSize(PRODUCTOS);
+                assertThat(cuerpo.get("filas").get(0).get(2).asText()).startsWith("Perfume ");
+                assertThat(columnar.body().length).isLessThan(json.body().length / 2);
+        }
+
+        private HttpResponse<byte[]> get(String accept, String acceptEncoding) throws IOException, InterruptedException {
+                HttpRequest.Builder request = HttpRequest.newBuilder(uri()).header("Accept", accept);
+                if (acceptEncoding != null) {
+                        request.header("Accept-Encoding", acceptEncoding);
+                }
+                HttpResponse<byte[]> respuesta = cliente.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                assertThat(respuesta.statusCode()).isEqualTo(200);
+                return respuesta;
+        }
+
+        private URI uri() {
+                return URI.create("http://localhost:" + puerto + "/api/v1/productos");
+        }
+}
@@ -0,0 +1,203 @@
+package com.inventario.inventario.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.service.ProductoService;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+// verifica cuantas sentencias llegan a la base por request, contadas en el DataSource (incluye las de
+// JdbcTemplate, no solo las de Hibernate): cada escritura es el insert de su evento en el outbox, cuya secuencia
+// es la version de la fila, y una sentencia sobre producto; las actualizaciones y bajas leen antes la entidad si
+// no esta en la cache de segundo nivel. El conteo es por hilo, asi las tareas programadas y los descartes de
+// eventos revertidos no se suman
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ProductoControllerStatementCountTest {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private ProductoRepository productoRepository;
+
+        @Autowired
+        private ProductoService productoService;
+
+        @Autowired
+        private EntityManagerFactory entityManagerFactory;
+
+        private Producto producto;
+
+        @BeforeEach
+        void setUp() {
+                // las lecturas parten sin el producto en la cache de segundo nivel
+                producto = productoService.save(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani"));
+                entityManagerFactory.getCache().evict(Producto.class);
+                QueryCountHolder.clear();
+        }
+
+        @AfterEach
+        void tearDown() {
+                productoRepository.deleteAll();
+        }
+
+        @Test
+        void testSaveProducto_EmiteElInsertYSuEvento() throws Exception {
+                Producto nuevo = new Producto(null, true, "Sauvage", 70000L, 4, "Dior");
+
+                mockMvc.perform(post("/api/v1/productos")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(nuevo)))
+                                .andExpect(status().isOk());
+
+                // el INSERT, el evento y la version de la fila, que es la secuencia del evento
+                assertThat(sentencias()).isEqualTo(3);
+        }
+
+        @Test
+        void testSaveProducto_NombreDuplicadoEmiteUnaSentencia() throws Exception {
+                Producto duplicado = new Producto(null, true, "Acqua di Gio", 1L, 1, "Armani");
+
+                mockMvc.perform(post("/api/v1/productos")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(duplicado)))
+                                .andExpect(status().isConflict());
+
+                assertThat(sentencias()).isEqualTo(1);
+        }
+
+        @Test
+        void testUpdateProducto_EmiteElUpdateYSuEvento() throws Exception {
+                Producto cambios = new Producto(null, true, "Acqua di Gio Profumo", 60000L, 8, "Armani");
+
+                mockMvc.perform(put("/api/v1/productos/id/{id}", producto.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(cambios)))
+                                .andExpect(status().isOk());
+
+                // la lectura de la entidad (fuera de la cache de segundo nivel), el evento, cuya secuencia es la
+                // version, y el UPDATE
+                assertThat(sentencias()).isEqualTo(3);
+                assertThat(productoRepository.findById(producto.getId()).get().getNombre()).isEqualTo("Acqua di Gio Profumo");
+        }
+
+        @Test
+        void testUpdateProducto_ConLaEntidadEnCacheEmiteElEventoYElUpdate() throws Exception {
+                productoRepository.findById(producto.getId());
+                QueryCountHolder.clear();
+                Producto cambios = new Producto(null, true, "Acqua di Gio Profumo", 60000L, 8, "Armani");
+
+                mockMvc.perform(put("/api/v1/productos/id/{id}", producto.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(cambios)))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.id").value(producto.getId().intValue()))
+                                .andExpect(jsonPath("$.stock").value(8));
+
+                assertThat(sentencias()).isEqualTo(2);
+        }
+
+        @Test
+        void testUpdateProducto_NoEncontradoEmiteSoloLaLectura() throws Exception {
+                mockMvc.perform(put("/api/v1/productos/id/{id}", producto.getId() + 1000)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(producto)))
+                                .andExpect(status().isNotFound());
+
+                assertThat(sentencias()).isEqualTo(1);
+        }
+
+        @Test
+        void testDeleteProducto_EmiteElUpdateYSuEvento() throws Exception {
+                mockMvc.perform(delete("/api/v1/productos/id/{id}", producto.getId()))
+                                .andExpect(status().isNoContent());
+
+                assertThat(sentencias()).isEqualTo(3);
+                assertThat(productoRepository.findById(producto.getId()).get().getActivo()).isFalse();
+        }
+
+        @Test
+        void testFindProducto_EmiteUnaSentenciaYLuegoUsaLaCache() throws Exception {
+                mockMvc.perform(get("/api/v1/productos/id/{id}", producto.getId()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/v1/productos/id/{id}", producto.getId()))
+                                .andExpect(status().isOk());
+
+                assertThat(sentencias()).isEqualTo(1);
+        }
+
+        @Test
+        void testFindProducto_ConETagVigenteNoConsultaLaBase() throws Exception {
+                String etag = mockMvc.perform(get("/api/v1/productos/id/{id}", producto.getId()))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+                mockMvc.perform(get("/api/v1/productos/id/{id}", producto.getId()).header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                assertThat(sentencias()).isEqualTo(1);
+        }
+
+        @Test
+        void testFindProducto_ConETagViejoDevuelveElProductoActualizado() throws Exception {
+                String etag = mockMvc.perform(get("/api/v1/productos/id/{id}", producto.getId()))
+                                .andReturn().getResponse().getHeader("ETag");
+                mockMvc.perform(post("/api/v1/productos/id/{id}/reserve", producto.getId()).param("cantidad", "1"))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/api/v1/productos/id/{id}", producto.getId()).header("If-None-Match", etag))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", not(etag)))
+                                .andExpect(jsonPath("$.stock").value(9));
+        }
+
+        private static long sentencias() {
+                return QueryCountHolder.getGrandTotal().getTotal();
+        }
+
+        @TestConfiguration
+        static class ContadorSentencias {
+
+                @Bean
+                static BeanPostProcessor contarSentencias() {
+                        return new BeanPostProcessor() {
+                                @Override
+                                public Object postProcessAfterInitialization(Object bean, String nombre) {
+                                        return bean instanceof DataSource dataSource && nombre.equals("dataSource")
+                                                        ? ProxyDataSourceBuilder.create(dataSource).countQuery().build()
+                                                        : bean;
+                                }
+                        };
+                }
+        }
+}
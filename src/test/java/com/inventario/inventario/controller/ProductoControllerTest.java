@@ -1,23 +1,38 @@
 package com.inventario.inventario.controller;
 
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.FiltroProducto;
+import com.inventario.inventario.dto.ProductoPagina;
+import com.inventario.inventario.dto.ProductoResumen;
+import com.inventario.inventario.dto.ResultadoBusqueda;
+import com.inventario.inventario.dto.ResultadoImportacion;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.exception.StockInsuficienteException;
 import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.service.ProductoImportService;
 import com.inventario.inventario.service.ProductoService;
 import com.fasterxml.jackson.databind.ObjectMapper; // Import ObjectMapper for JSON conversion
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,6 +49,9 @@ public class ProductoControllerTest {
         @MockBean
         private ProductoService productoService;
 
+        @MockBean
+        private ProductoImportService productoImportService;
+
         @Autowired
         private ObjectMapper objectMapper;
 
@@ -55,6 +73,20 @@ public class ProductoControllerTest {
                 verify(productoService, times(1)).findAll();
         }
 
+        @Test
+        void testGetProductos_ReturnsColumnarLayoutWhenRequested() throws Exception {
+                when(productoService.findAll()).thenReturn(Arrays.asList(
+                                new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony", 7L),
+                                new Producto(2L, false, "Xbox 360", 2500L, 50, "Microsoft", 8L)));
+
+                mockMvc.perform(get("/api/v1/productos").accept("application/vnd.inventario.columnar+json"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("application/vnd.inventario.columnar+json"))
+                                .andExpect(jsonPath("$.columnas", contains("id", "activo", "nombre", "precio", "stock", "marca", "version")))
+                                .andExpect(jsonPath("$.filas", hasSize(2)))
+                                .andExpect(jsonPath("$.filas[1]", contains(2, false, "Xbox 360", 2500, 50, "Microsoft", 8)));
+        }
+
         @Test
         void testGetProductos_ReturnsNoContentWhenNoProducts() throws Exception {
 
@@ -69,11 +101,92 @@ public class ProductoControllerTest {
                 verify(productoService, times(1)).findAll();
         }
 
+        @Test
+        void testGetPaginaProductos_ReturnsPageWithCursor() throws Exception {
+
+                List<Producto> productos = Arrays.asList(
+                                new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony"),
+                                new Producto(2L, true, "Xbox 360", 2500L, 50, "Microsoft"));
+                when(productoService.findPage(isNull(), anyInt())).thenReturn(new ProductoPagina(productos, 2L));
+
+                mockMvc.perform(get("/api/v1/productos/page")
+                                .param("size", "2")
+                                .contentType(MediaType.APPLICATION_JSON))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.productos", hasSize(2)))
+                                .andExpect(jsonPath("$.siguienteCursor", is(2)));
+
+                verify(productoService, times(1)).findPage(null, 2);
+        }
+
+        @Test
+        void testGetPaginaProductos_ReturnsNoContentAfterLastPage() throws Exception {
+
+                when(productoService.findPage(anyLong(), anyInt())).thenReturn(new ProductoPagina(List.of(), null));
+
+                mockMvc.perform(get("/api/v1/productos/page")
+                                .param("after", "2")
+                                .contentType(MediaType.APPLICATION_JSON))
+                                .andExpect(status().isNoContent());
+
+                verify(productoService, times(1)).findPage(2L, 100);
+        }
+
+        @Test
+        void testBuscarProductos_ReturnsMatchingPage() throws Exception {
+                List<Producto> productos = Arrays.asList(new Producto(2L, true, "Xbox 360", 2500L, 3, "Microsoft"));
+                when(productoService.buscar(any(FiltroProducto.class), eq("precio"), eq(Sort.Direction.DESC), eq(0), eq(20)))
+                                .thenReturn(new ResultadoBusqueda(productos, 0, 20, 1L));
+
+                mockMvc.perform(get("/api/v1/productos/search")
+                                .param("marca", "Microsoft").param("activo", "true").param("precioMax", "3000")
+                                .param("stockMaximo", "5").param("orden", "precio").param("direccion", "desc")
+                                .param("size", "20"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.productos", hasSize(1)))
+                                .andExpect(jsonPath("$.totalElementos", is(1)));
+
+                verify(productoService).buscar(
+                                eq(new FiltroProducto("Microsoft", true, null, 3000L, 5, null)),
+                                eq("precio"), eq(Sort.Direction.DESC), eq(0), eq(20));
+        }
+
+        @Test
+        void testBuscarProductos_ReturnsBadRequestForUnknownSort() throws Exception {
+                mockMvc.perform(get("/api/v1/productos/search").param("orden", "activo; drop table producto"))
+                                .andExpect(status().isBadRequest());
+
+                verify(productoService, times(0)).buscar(any(), any(), any(), anyInt(), anyInt());
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void testStreamProductos_WritesNdjson() throws Exception {
+
+                doAnswer(invocation -> {
+                        Consumer<Producto> consumidor = invocation.getArgument(0);
+                        consumidor.accept(new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony"));
+                        consumidor.accept(new Producto(2L, true, "Xbox 360", 2500L, 50, "Microsoft"));
+                        return null;
+                }).when(productoService).forEachProducto(any(Consumer.class));
+
+                MvcResult resultado = mockMvc.perform(get("/api/v1/productos/stream"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                mockMvc.perform(asyncDispatch(resultado))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("application/x-ndjson"))
+                                .andExpect(content().string(
+                                                objectMapper.writeValueAsString(new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony"))
+                                                                + "\n"
+                                                                + objectMapper.writeValueAsString(new Producto(2L, true, "Xbox 360", 2500L, 50, "Microsoft"))));
+        }
+
         @Test
         void testFindProducto_ReturnsOkWhenProductExists() throws Exception {
                 Long productId = 1L;
                 Producto producto = new Producto(productId, true, "Playstation 3", 1200L, 10, "Sony");
-                when(productoService.existsById(productId)).thenReturn(true);
                 when(productoService.findById(productId)).thenReturn(Optional.of(producto));
 
                 mockMvc.perform(get("/api/v1/productos/id/{id}", productId)
@@ -82,22 +195,70 @@ public class ProductoControllerTest {
                                 .andExpect(jsonPath("$.id", is(productId.intValue())))
                                 .andExpect(jsonPath("$.nombre", is("Playstation 3")));
 
-                verify(productoService, times(1)).existsById(productId);
                 verify(productoService, times(1)).findById(productId);
+                verify(productoService, times(0)).existsById(anyLong());
+        }
+
+        @Test
+        void testFindProducto_ReturnsETagAndCacheControl() throws Exception {
+                Producto producto = new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony", 42L);
+                when(productoService.findById(1L)).thenReturn(Optional.of(producto));
+                when(productoService.marcaEnMemoria(1L)).thenReturn("");
+
+                mockMvc.perform(get("/api/v1/productos/id/{id}", 1L))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"42\""))
+                                .andExpect(header().string("Cache-Control", "max-age=0, must-revalidate, public"));
+
+                verify(productoService, times(0)).findVersionById(anyLong());
+        }
+
+        @Test
+        void testFindProducto_ReturnsNotModifiedWithoutLoadingProduct() throws Exception {
+                when(productoService.findVersionById(1L)).thenReturn(Optional.of("42"));
+
+                mockMvc.perform(get("/api/v1/productos/id/{id}", 1L).header("If-None-Match", "\"42\""))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string("ETag", "\"42\""))
+                                .andExpect(content().string(""));
+
+                verify(productoService, times(0)).findById(anyLong());
+        }
+
+        @Test
+        void testFindProducto_ReturnsOkWhenETagIsStale() throws Exception {
+                Producto producto = new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony", 43L);
+                when(productoService.findVersionById(1L)).thenReturn(Optional.of("43"));
+                when(productoService.marcaEnMemoria(1L)).thenReturn("");
+                when(productoService.findById(1L)).thenReturn(Optional.of(producto));
+
+                mockMvc.perform(get("/api/v1/productos/id/{id}", 1L).header("If-None-Match", "\"42\""))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"43\""))
+                                .andExpect(jsonPath("$.nombre", is("Playstation 3")));
+        }
+
+        @Test
+        void testGetProductos_ReturnsNotModifiedWhenCatalogUnchanged() throws Exception {
+                when(productoService.findVersionCatalogo()).thenReturn("42");
+
+                mockMvc.perform(get("/api/v1/productos").header("If-None-Match", "W/\"catalogo-42\""))
+                                .andExpect(status().isNotModified());
+
+                verify(productoService, times(0)).findAll();
         }
 
         @Test
         void testFindProducto_ReturnsNotFoundWhenProductDoesNotExist() throws Exception {
 
                 Long productId = 1L;
-                when(productoService.existsById(productId)).thenReturn(false);
+                when(productoService.findById(productId)).thenReturn(Optional.empty());
 
                 mockMvc.perform(get("/api/v1/productos/id/{id}", productId)
                                 .contentType(MediaType.APPLICATION_JSON))
                                 .andExpect(status().isNotFound());
 
-                verify(productoService, times(1)).existsById(productId);
-                verify(productoService, times(0)).findById(anyLong());
+                verify(productoService, times(1)).findById(productId);
         }
 
         @Test
@@ -120,12 +281,62 @@ public class ProductoControllerTest {
                 verify(productoService, times(1)).findAllById(productIds);
         }
 
+        @Test
+        void testGetProductosById_ReportsMissingIds() throws Exception {
+                when(productoService.findAllById(Arrays.asList(3L, 1L, 2L))).thenReturn(Arrays.asList(
+                                new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony")));
+
+                mockMvc.perform(get("/api/v1/productos/by-id/").param("ids", "3", "1", "2"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$", hasSize(1)))
+                                .andExpect(header().string("X-Ids-No-Encontrados", "3,2"));
+        }
+
+        @Test
+        void testGetProductosById_ReturnsBadRequestWhenTooManyIds() throws Exception {
+                String[] ids = new String[1001];
+                Arrays.setAll(ids, String::valueOf);
+
+                mockMvc.perform(get("/api/v1/productos/by-id/").param("ids", ids))
+                                .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        void testFindResumen_ReturnsProjection() throws Exception {
+                when(productoService.findResumenById(1L)).thenReturn(Optional.of(new ProductoResumen(1L, 1200L, 10, true)));
+
+                mockMvc.perform(get("/api/v1/productos/resumen/id/1"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.precio", is(1200)))
+                                .andExpect(jsonPath("$.stock", is(10)))
+                                .andExpect(jsonPath("$.nombre").doesNotExist());
+        }
+
+        @Test
+        void testFindResumen_ReturnsNotFoundWhenProductDoesNotExist() throws Exception {
+                when(productoService.findResumenById(1L)).thenReturn(Optional.empty());
+
+                mockMvc.perform(get("/api/v1/productos/resumen/id/1"))
+                                .andExpect(status().isNotFound());
+        }
+
+        @Test
+        void testGetResumenesById_ReturnsOk() throws Exception {
+                when(productoService.findResumenByIds(Arrays.asList(2L, 1L))).thenReturn(Arrays.asList(
+                                new ProductoResumen(2L, 2500L, 50, true),
+                                new ProductoResumen(1L, 1200L, 10, true)));
+
+                mockMvc.perform(get("/api/v1/productos/resumen/by-id/").param("ids", "2", "1"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$", hasSize(2)))
+                                .andExpect(jsonPath("$[0].id", is(2)));
+        }
+
         @Test
         void testSaveProducto_ReturnsOkWhenProductDoesNotExist() throws Exception {
 
                 Producto newProducto = new Producto(3L, true, "Keyboard", 75L, 20, "Razer");
-                when(productoService.existsById(newProducto.getId())).thenReturn(false);
-                when(productoService.save(any(Producto.class))).thenReturn(newProducto);
+                when(productoService.insertIfAbsent(any(Producto.class))).thenReturn(Optional.of(newProducto));
 
                 mockMvc.perform(post("/api/v1/productos")
                                 .contentType(MediaType.APPLICATION_JSON)
@@ -134,23 +345,38 @@ public class ProductoControllerTest {
                                 .andExpect(jsonPath("$.id", is(newProducto.getId().intValue())))
                                 .andExpect(jsonPath("$.nombre", is(newProducto.getNombre())));
 
-                verify(productoService, times(1)).existsById(newProducto.getId());
-                verify(productoService, times(1)).save(any(Producto.class));
+                verify(productoService, times(1)).insertIfAbsent(any(Producto.class));
+                verify(productoService, times(0)).existsById(anyLong());
         }
 
         @Test
         void testSaveProducto_ReturnsConflictWhenProductExists() throws Exception {
 
                 Producto existingProducto = new Producto(1L, true, "Playstation 3", 1200L, 10, "Sony");
-                when(productoService.existsById(existingProducto.getId())).thenReturn(true);
+                when(productoService.insertIfAbsent(any(Producto.class))).thenReturn(Optional.empty());
 
                 mockMvc.perform(post("/api/v1/productos")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(objectMapper.writeValueAsString(existingProducto)))
                                 .andExpect(status().isConflict());
 
-                verify(productoService, times(1)).existsById(existingProducto.getId());
-                verify(productoService, times(0)).save(any(Producto.class));
+                verify(productoService, times(1)).insertIfAbsent(any(Producto.class));
+        }
+
+        @Test
+        void testSaveProducto_ReturnsBadRequestWhenRequiredFieldIsMissing() throws Exception {
+
+                mockMvc.perform(post("/api/v1/productos")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"activo\":true,\"precio\":1200,\"stock\":10,\"marca\":\"Sony\"}"))
+                                .andExpect(status().isBadRequest());
+
+                mockMvc.perform(post("/api/v1/productos")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new Producto(null, true, "Playstation 3", -1L, 10, "Sony"))))
+                                .andExpect(status().isBadRequest());
+
+                verify(productoService, times(0)).insertIfAbsent(any(Producto.class));
         }
 
         @Test
@@ -158,8 +384,7 @@ public class ProductoControllerTest {
 
                 Long productId = 1L;
                 Producto updatedProducto = new Producto(productId, true, "Playstation 3 Pro", 1500L, 15, "Sony");
-                when(productoService.existsById(productId)).thenReturn(true);
-                when(productoService.update(anyLong(), any(Producto.class))).thenReturn(updatedProducto);
+                when(productoService.update(anyLong(), any(Producto.class))).thenReturn(Optional.of(updatedProducto));
 
                 mockMvc.perform(put("/api/v1/productos/id/{id}", productId)
                                 .contentType(MediaType.APPLICATION_JSON)
@@ -168,8 +393,8 @@ public class ProductoControllerTest {
                                 .andExpect(jsonPath("$.id", is(updatedProducto.getId().intValue())))
                                 .andExpect(jsonPath("$.nombre", is(updatedProducto.getNombre())));
 
-                verify(productoService, times(1)).existsById(productId);
                 verify(productoService, times(1)).update(anyLong(), any(Producto.class));
+                verify(productoService, times(0)).existsById(anyLong());
         }
 
         @Test
@@ -177,14 +402,29 @@ public class ProductoControllerTest {
 
                 Long productId = 1L;
                 Producto updatedProducto = new Producto(productId, true, "Playstation 3 Pro", 1500L, 15, "Sony");
-                when(productoService.existsById(productId)).thenReturn(false);
+                when(productoService.update(anyLong(), any(Producto.class))).thenReturn(Optional.empty());
 
                 mockMvc.perform(put("/api/v1/productos/id/{id}", productId)
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(objectMapper.writeValueAsString(updatedProducto)))
                                 .andExpect(status().isNotFound());
 
-                verify(productoService, times(1)).existsById(productId);
+                verify(productoService, times(1)).update(anyLong(), any(Producto.class));
+        }
+
+        @Test
+        void testUpdateProducto_ReturnsBadRequestWhenRequiredFieldIsMissing() throws Exception {
+
+                mockMvc.perform(put("/api/v1/productos/id/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"activo\":true,\"nombre\":\"Playstation 3\",\"stock\":10,\"marca\":\"Sony\"}"))
+                                .andExpect(status().isBadRequest());
+
+                mockMvc.perform(put("/api/v1/productos/id/{id}", 1L)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new Producto(null, true, "Playstation 3", 1200L, -1, "Sony"))))
+                                .andExpect(status().isBadRequest());
+
                 verify(productoService, times(0)).update(anyLong(), any(Producto.class));
         }
 
@@ -192,28 +432,102 @@ public class ProductoControllerTest {
         void testDeleteProducto_ReturnsNoContentWhenProductExists() throws Exception {
 
                 Long productId = 1L;
-                when(productoService.existsById(productId)).thenReturn(true);
-                doNothing().when(productoService).deleteById(productId);
+                when(productoService.deleteById(productId)).thenReturn(true);
 
                 mockMvc.perform(delete("/api/v1/productos/id/{id}", productId)
                                 .contentType(MediaType.APPLICATION_JSON))
                                 .andExpect(status().isNoContent());
 
-                verify(productoService, times(1)).existsById(productId);
                 verify(productoService, times(1)).deleteById(productId);
+                verify(productoService, times(0)).existsById(anyLong());
         }
 
         @Test
         void testDeleteProducto_ReturnsNotFoundWhenProductDoesNotExist() throws Exception {
 
                 Long productId = 1L;
-                when(productoService.existsById(productId)).thenReturn(false);
+                when(productoService.deleteById(productId)).thenReturn(false);
 
                 mockMvc.perform(delete("/api/v1/productos/id/{id}", productId)
                                 .contentType(MediaType.APPLICATION_JSON))
                                 .andExpect(status().isNotFound());
 
-                verify(productoService, times(1)).existsById(productId);
-                verify(productoService, times(0)).deleteById(anyLong());
+                verify(productoService, times(1)).deleteById(productId);
+        }
+
+        @Test
+        void testReservarStock_ReturnsOkWhenApplied() throws Exception {
+
+                when(productoService.reservarStock(1L, 2)).thenReturn(ResultadoReserva.APLICADA);
+
+                mockMvc.perform(post("/api/v1/productos/id/{id}/reserve", 1L)
+                                .param("cantidad", "2"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.resultado", is("APLICADA")));
+        }
+
+        @Test
+        void testReservarStock_ReturnsConflictWhenStockIsInsufficient() throws Exception {
+
+                when(productoService.reservarStock(1L, 2)).thenReturn(ResultadoReserva.STOCK_INSUFICIENTE);
+
+                mockMvc.perform(post("/api/v1/productos/id/{id}/reserve", 1L)
+                                .param("cantidad", "2"))
+                                .andExpect(status().isConflict())
+                                .andExpect(jsonPath("$.resultado", is("STOCK_INSUFICIENTE")));
+        }
+
+        @Test
+        void testReservarStock_ReturnsBadRequestForNonPositiveQuantity() throws Exception {
+
+                mockMvc.perform(post("/api/v1/productos/id/{id}/reserve", 1L)
+                                .param("cantidad", "0"))
+                                .andExpect(status().isBadRequest());
+
+                verify(productoService, times(0)).reservarStock(anyLong(), anyInt());
+        }
+
+        @Test
+        void testAjustarStock_ReturnsOkWithUpdatedProducts() throws Exception {
+
+                List<AjusteStock> ajustes = Arrays.asList(new AjusteStock(1L, -2), new AjusteStock(2L, -1));
+                when(productoService.ajustarStock(anyList())).thenReturn(Arrays.asList(
+                                new Producto(1L, true, "Playstation 3", 1200L, 8, "Sony"),
+                                new Producto(2L, true, "Xbox 360", 2500L, 49, "Microsoft")));
+
+                mockMvc.perform(post("/api/v1/productos/stock/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(ajustes)))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$", hasSize(2)))
+                                .andExpect(jsonPath("$[0].stock", is(8)));
+
+                verify(productoService, times(1)).ajustarStock(ajustes);
+        }
+
+        @Test
+        void testAjustarStock_ReturnsConflictWhenAnyStockIsInsufficient() throws Exception {
+
+                List<AjusteStock> ajustes = Arrays.asList(new AjusteStock(1L, -20));
+                when(productoService.ajustarStock(anyList())).thenThrow(new StockInsuficienteException(1L));
+
+                mockMvc.perform(post("/api/v1/productos/stock/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(ajustes)))
+                                .andExpect(status().isConflict());
+        }
+
+        @Test
+        void testImportarProductos_DetectsNdjsonFormat() throws Exception {
+
+                ResultadoImportacion resultado = new ResultadoImportacion();
+                resultado.setProcesadas(1);
+                when(productoImportService.importar(any(), eq(ProductoImportService.Formato.NDJSON))).thenReturn(resultado);
+
+                mockMvc.perform(post("/api/v1/productos/import")
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .content("{\"nombre\":\"Sauvage\",\"marca\":\"Dior\",\"precio\":70000,\"stock\":4}\n"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.procesadas", is(1)));
         }
 }
@@ -0,0 +1,189 @@
+package com.inventario.inventario.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.service.ProductoService;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.servlet.http.Cookie;
+
+// dos bases H2 hacen de primaria y replica, con filas distintas para saber de donde se leyo; la segunda replica
+// no existe y debe quedar fuera de la rotacion. El retraso maximo es largo para que la replica, que no recibe los
+// eventos de la primaria, no quede fuera por atrasada entre pruebas
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:db_inventario_primaria;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "inventario.replicas.habilitado=true",
+        "inventario.replicas.urls=" + RuteoDataSourceTest.URL_REPLICA + "," + RuteoDataSourceTest.URL_CAIDA,
+        "inventario.replicas.retraso-maximo=1h",
+        "inventario.replicas.intervalo-salud-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class RuteoDataSourceTest {
+
+    static final String URL_REPLICA = "jdbc:h2:mem:db_inventario_replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    static final String URL_CAIDA = "jdbc:h2:mem:db_inventario_caida;IFEXISTS=TRUE";
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private HikariDataSource primaria;
+
+    @Autowired
+    private RuteoDataSource ruteoDataSource;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    // la replica recibe el esquema de la primaria y una sola fila propia
+    @BeforeEach
+    void setUp() throws Exception {
+        File esquema = File.createTempFile("esquema", ".sql");
+        try (Connection conexion = primaria.getConnection(); Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("SCRIPT NODATA TO '" + esquema.getAbsolutePath() + "'");
+        }
+        try (Connection conexion = DriverManager.getConnection(URL_REPLICA, "sa", "");
+                Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("DROP ALL OBJECTS");
+            sentencia.execute("RUNSCRIPT FROM '" + esquema.getAbsolutePath() + "'");
+            sentencia.execute("INSERT INTO producto (id, activo, nombre, precio, stock, marca, version) "
+                    + "VALUES (900, true, 'En replica', 1000, 1, 'Replica', 1)");
+        }
+        esquema.delete();
+        ruteoDataSource.verificarReplicas();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    @Test
+    void testVerificarReplicas_DescartaLaReplicaCaida() {
+        assertThat(ruteoDataSource.getReplicasSanas()).isEqualTo(1);
+    }
+
+    @Test
+    void testLecturaMarcada_VaALaReplica() {
+        productoService.insertIfAbsent(new Producto(null, true, "En primaria", 50000L, 10, "Armani"));
+
+        assertThat(productoService.findAll()).extracting(Producto::getNombre).containsExactly("En replica");
+        assertThat(productoService.existsById(900L)).isTrue();
+    }
+
+    @Test
+    void testLecturaDeMarcaDeAgua_VaALaPrimaria() {
+        productoService.insertIfAbsent(new Producto(null, true, "En primaria", 50000L, 10, "Armani"));
+
+        assertThat(productoService.findCambios(0L, 0L, 100).getProductos()).extracting(Producto::getNombre)
+                .containsExactly("En primaria");
+    }
+
+    @Test
+    void testSesionConEscritura_LeeSusPropiasEscrituras() throws Exception {
+        String posicion = mockMvc.perform(post("/api/v1/productos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"activo\":true,\"nombre\":\"En primaria\",\"precio\":50000,\"stock\":10,\"marca\":\"Armani\"}"))
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists(SesionReplicaFilter.COOKIE_POSICION))
+                .andReturn().getResponse().getHeader(SesionReplicaFilter.CABECERA_POSICION);
+        assertThat(posicion).isNotNull();
+
+        // la replica aun no reprodujo la escritura: con el token, por cabecera o cookie, se lee de la primaria
+        mockMvc.perform(get("/api/v1/productos").header(SesionReplicaFilter.CABECERA_POSICION, posicion))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$..nombre", Matchers.contains("En primaria")));
+        mockMvc.perform(get("/api/v1/productos").cookie(new Cookie(SesionReplicaFilter.COOKIE_POSICION, posicion)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$..nombre", Matchers.contains("En primaria")));
+
+        // sin token no hay escrituras que esperar: lee de la replica
+        mockMvc.perform(get("/api/v1/productos"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(SesionReplicaFilter.CABECERA_POSICION))
+                .andExpect(jsonPath("$..nombre", Matchers.contains("En replica")));
+
+        // la replica alcanza la posicion: el token ya no la excluye
+        try (Connection conexion = DriverManager.getConnection(URL_REPLICA, "sa", "");
+                Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("INSERT INTO evento_inventario (secuencia, producto_id, tipo, fecha_millis) "
+                    + "VALUES (" + posicion + ", 900, 'CREADO', 0)");
+        }
+        ruteoDataSource.verificarReplicas();
+        mockMvc.perform(get("/api/v1/productos").header(SesionReplicaFilter.CABECERA_POSICION, posicion))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$..nombre", Matchers.contains("En replica")));
+    }
+
+    @Test
+    void testReplicaAtrasada_QuedaFueraDeLaRotacion() throws Exception {
+        HikariDataSource atrasada = new HikariDataSource();
+        atrasada.setJdbcUrl(URL_REPLICA);
+        atrasada.setUsername("sa");
+        atrasada.setPoolName("atrasada");
+        try (RuteoDataSource ruteo = new RuteoDataSource(primaria, List.of(atrasada), Duration.ofMillis(50), Duration.ZERO)) {
+            ruteo.afterPropertiesSet();
+            // un evento en la primaria que la replica nunca recibe
+            productoService.insertIfAbsent(new Producto(null, true, "En primaria", 50000L, 10, "Armani"));
+            ruteo.verificarReplicas();
+            assertThat(ruteo.getReplicasSanas()).isEqualTo(1);
+
+            Thread.sleep(100);
+            ruteo.verificarReplicas();
+            assertThat(ruteo.getReplicasSanas()).isZero();
+            assertThat(ruteo.getRetrasos().get("atrasada")).isGreaterThan(Duration.ofMillis(50));
+        }
+    }
+
+    @Test
+    void testReplicaSinConexion_CaeEnLaPrimaria() throws Exception {
+        HikariDataSource caida = new HikariDataSource();
+        caida.setJdbcUrl(URL_CAIDA);
+        caida.setPoolName("caida");
+        try (RuteoDataSource ruteo = new RuteoDataSource(primaria, List.of(caida), Duration.ofSeconds(2), Duration.ZERO)) {
+            ruteo.afterPropertiesSet();
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            try (Connection conexion = RuteoDataSource.enReplica(false, ruteo::getConnection)) {
+                assertThat(conexion.getMetaData().getURL()).contains("db_inventario_primaria");
+            } finally {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            }
+            assertThat(ruteo.getReplicasSanas()).isZero();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.model.EventoInventario;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.TipoEventoInventario;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class EventoInventarioTest {
+
+    private static final String EVENTO = "insert into evento_inventario (secuencia, producto_id, tipo, fecha_millis) "
+            + "values (?, ?, ?, ?)";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoImportService productoImportService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private EventoInventarioService eventoInventarioService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // otras clases de prueba comparten la base y pueden dejar eventos
+    @BeforeEach
+    @AfterEach
+    void limpiar() {
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    @Test
+    void testMutaciones_AgreganEventosEnOrden() throws Exception {
+        Producto producto = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get();
+        Long id = producto.getId();
+
+        productoService.reservarStock(id, 3);
+        productoService.reservarStock(id, 100);
+        productoService.liberarStock(id, 1);
+        productoService.ajustarStock(List.of(new AjusteStock(id, 5)));
+        productoService.update(id, new Producto(null, true, "Acqua di Gio", 55000L, 13, "Armani"));
+        productoService.deleteById(id);
+        productoImportService.importar(new ByteArrayInputStream("nombre,marca,precio,stock,activo\nSauvage,Dior,80000,4,true\n"
+                .getBytes(StandardCharsets.UTF_8)), ProductoImportService.Formato.CSV);
+
+        // la reserva que no alcanzo revierte su evento y la secuencia queda ocupada por un descarte
+        List<EventoInventario> eventos = eventosConDescartes(1);
+        assertThat(eventos).extracting(EventoInventario::getTipo).containsExactly(
+                TipoEventoInventario.CREADO,
+                TipoEventoInventario.STOCK_RESERVADO,
+                TipoEventoInventario.DESCARTADO,
+                TipoEventoInventario.STOCK_LIBERADO,
+                TipoEventoInventario.STOCK_AJUSTADO,
+                TipoEventoInventario.ACTUALIZADO,
+                TipoEventoInventario.DESACTIVADO,
+                TipoEventoInventario.ACTUALIZADO);
+        assertThat(eventos.get(1).getCantidad()).isEqualTo(-3);
+        assertThat(eventos.get(4).getStock()).isEqualTo(13);
+        assertThat(eventos.get(7).getNombre()).isEqualTo("Sauvage");
+        assertThat(eventos.get(7).getProductoId()).isNotNull();
+        // cada escritura toma como version la secuencia de su evento
+        assertThat(productoRepository.findById(id).get().getVersion()).isEqualTo(eventos.get(6).getSecuencia());
+    }
+
+    @Test
+    void testNombreDuplicado_NoAgregaEvento() {
+        productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani"));
+        productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 60000L, 10, "Armani"));
+
+        assertThat(eventoInventarioRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void testLectura_SeDetieneEnUnHuecoReciente() {
+        long ahora = System.currentTimeMillis();
+        List<EventoInventario> eventos = List.of(evento(11, ahora), evento(12, ahora), evento(14, ahora), evento(15, ahora));
+
+        // la secuencia 13 puede ser de una transaccion aun abierta
+        assertThat(EventoInventarioService.prefijoContiguo(eventos, 10, ahora - 30_000))
+                .extracting(EventoInventario::getSecuencia).containsExactly(11L, 12L);
+        // el evento que sigue al hueco ya es viejo: la 13 no va a aparecer
+        assertThat(EventoInventarioService.prefijoContiguo(eventos, 10, ahora))
+                .extracting(EventoInventario::getSecuencia).containsExactly(11L, 12L, 14L, 15L);
+        assertThat(EventoInventarioService.prefijoContiguo(eventos, 8, ahora - 30_000)).isEmpty();
+    }
+
+    @Test
+    void testLongPoll_EntregaEventosPosterioresAlCursor() throws Exception {
+        Long id = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get().getId();
+        long cursor = eventoInventarioRepository.findAll().get(0).getSecuencia();
+
+        MvcResult pendiente = mockMvc.perform(get("/api/v1/productos/eventos").param("desde", String.valueOf(cursor)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        productoService.reservarStock(id, 2);
+
+        mockMvc.perform(asyncDispatch(pendiente))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$[0].tipo").value("STOCK_RESERVADO"))
+                .andExpect(jsonPath("$[0].cantidad").value(-2));
+    }
+
+    @Test
+    void testLongPoll_NoEntregaDescartes() throws Exception {
+        Long id = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get().getId();
+        long cursor = eventoInventarioRepository.findAll().get(0).getSecuencia();
+        productoService.reservarStock(id, 100);
+        eventosConDescartes(1);
+
+        MvcResult pendiente = mockMvc.perform(get("/api/v1/productos/eventos").param("desde", String.valueOf(cursor)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        productoService.reservarStock(id, 2);
+
+        mockMvc.perform(asyncDispatch(pendiente))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$[0].tipo").value("STOCK_RESERVADO"));
+    }
+
+    @Test
+    void testLongPoll_SinCambiosResponde204() throws Exception {
+        MvcResult pendiente = mockMvc.perform(get("/api/v1/productos/eventos").param("espera", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // MockMvc no vence las esperas asincronas: se simula el timeout del contenedor
+        MockAsyncContext contexto = (MockAsyncContext) pendiente.getRequest().getAsyncContext();
+        for (AsyncListener listener : contexto.getListeners()) {
+            listener.onTimeout(new AsyncEvent(contexto));
+        }
+
+        mockMvc.perform(asyncDispatch(pendiente)).andExpect(status().isNoContent());
+    }
+
+    @Test
+    void testStream_EnviaEventosSse() throws Exception {
+        productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani"));
+
+        MvcResult stream = mockMvc.perform(get("/api/v1/productos/eventos/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        long limite = System.currentTimeMillis() + 5000;
+        while (!stream.getResponse().getContentAsString().contains("\"nombre\":\"Acqua di Gio\"") && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertThat(stream.getResponse().getContentAsString()).contains("event:CREADO").contains("\"nombre\":\"Acqua di Gio\"");
+    }
+
+    @Test
+    void testPurga_CursorAnteriorALoRetenidoRecibe410() throws Exception {
+        productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani"));
+        productoService.insertIfAbsent(new Producto(null, true, "Sauvage", 70000L, 4, "Dior"));
+        List<EventoInventario> eventos = eventoInventarioRepository.findAll(Sort.by("secuencia"));
+        long primero = eventos.get(0).getSecuencia();
+        long ultimo = eventos.get(1).getSecuencia();
+        purgarTodo();
+
+        // el ultimo evento purgado queda como marca: es el limite de lo que se puede continuar
+        assertThat(eventoInventarioService.purgadoHasta()).isEqualTo(ultimo);
+        MvcResult vencido = mockMvc.perform(get("/api/v1/productos/eventos").param("desde", String.valueOf(primero)))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(vencido)).andExpect(status().isGone());
+        mockMvc.perform(get("/api/v1/productos/eventos/stream").param("desde", String.valueOf(primero)))
+                .andExpect(status().isGone());
+        mockMvc.perform(get("/api/v1/productos/eventos/stream").header("Last-Event-ID", ultimo))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void testPurga_StreamAlcanzadoRecibeResincronizar() throws Exception {
+        Long id = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get().getId();
+        long cursor = eventoInventarioRepository.findAll().get(0).getSecuencia();
+        MvcResult stream = mockMvc.perform(get("/api/v1/productos/eventos/stream").param("desde", String.valueOf(cursor)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // el consumidor queda detenido ante un hueco reciente mientras la purga pasa por encima de su cursor
+        EventoInventarioService objetivo = AopTestUtils.getTargetObject(eventoInventarioService);
+        Duration esperaHueco = (Duration) ReflectionTestUtils.getField(objetivo, "esperaHueco");
+        ReflectionTestUtils.setField(objetivo, "esperaHueco", Duration.ofMinutes(1));
+        String aviso = "event:" + EventoInventarioFeed.RESINCRONIZAR + "\ndata:" + (cursor + 2) + "\n";
+        try {
+            jdbcTemplate.update(EVENTO, cursor + 2, id, "STOCK_RESERVADO", System.currentTimeMillis());
+            purgarTodo();
+
+            long limite = System.currentTimeMillis() + 5000;
+            while (!stream.getResponse().getContentAsString().contains(aviso) && System.currentTimeMillis() < limite) {
+                Thread.sleep(20);
+            }
+        } finally {
+            ReflectionTestUtils.setField(objetivo, "esperaHueco", esperaHueco);
+        }
+        assertThat(stream.getResponse().getContentAsString()).contains(aviso);
+    }
+
+    // purga con retencion nula: todo lo registrado hasta ahora queda fuera
+    private void purgarTodo() throws InterruptedException {
+        EventoInventarioService objetivo = AopTestUtils.getTargetObject(eventoInventarioService);
+        Duration retencion = (Duration) ReflectionTestUtils.getField(objetivo, "retencion");
+        ReflectionTestUtils.setField(objetivo, "retencion", Duration.ZERO);
+        try {
+            Thread.sleep(2);
+            eventoInventarioService.purgar();
+        } finally {
+            ReflectionTestUtils.setField(objetivo, "retencion", retencion);
+        }
+    }
+
+    // eventos en orden de secuencia, una vez escritos los descartes (que llegan por detras del rollback)
+    private List<EventoInventario> eventosConDescartes(int descartes) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        List<EventoInventario> eventos = eventoInventarioRepository.findAll(Sort.by("secuencia"));
+        while (eventos.stream().filter(evento -> evento.getTipo() == TipoEventoInventario.DESCARTADO).count() < descartes
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+            eventos = eventoInventarioRepository.findAll(Sort.by("secuencia"));
+        }
+        return eventos;
+    }
+
+    private static EventoInventario evento(long secuencia, long fechaMillis) {
+        EventoInventario evento = EventoInventario.deStock(TipoEventoInventario.STOCK_RESERVADO, 1L, null, -1);
+        evento.setSecuencia(secuencia);
+        evento.setFechaMillis(fechaMillis);
+        return evento;
+    }
+}
@@ -0,0 +1,92 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+
+import com.inventario.inventario.dto.FiltroProducto;
+import com.inventario.inventario.dto.ProductoResumen;
+import com.inventario.inventario.dto.ResultadoBusqueda;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+
+@SpringBootTest
+public class ProductoBusquedaTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository.saveAll(List.of(
+                new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani"),
+                new Producto(null, true, "Acqua di Gio Profumo", 70000L, 2, "Armani"),
+                new Producto(null, false, "Armani Code", 60000L, 0, "Armani"),
+                new Producto(null, true, "Sauvage", 80000L, 4, "Dior"),
+                new Producto(null, true, "100%_Natural", 20000L, 1, "Natura")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        productoRepository.deleteAll();
+    }
+
+    @Test
+    void testBuscar_FiltraPorMarcaActivoYRangoDePrecio() {
+        FiltroProducto filtro = new FiltroProducto("Armani", true, 40000L, 75000L, null, null);
+
+        ResultadoBusqueda resultado = productoService.buscar(filtro, "precio", Sort.Direction.DESC, 0, 10);
+
+        assertThat(resultado.getProductos()).extracting(Producto::getNombre)
+                .containsExactly("Acqua di Gio Profumo", "Acqua di Gio");
+        assertThat(resultado.getTotalElementos()).isEqualTo(2);
+    }
+
+    @Test
+    void testBuscar_StockBajoYPrefijoDeNombre() {
+        assertThat(productoService.buscar(new FiltroProducto(null, null, null, null, 2, null), "stock",
+                Sort.Direction.ASC, 0, 10).getProductos())
+                .extracting(Producto::getNombre)
+                .containsExactly("Armani Code", "100%_Natural", "Acqua di Gio Profumo");
+
+        assertThat(productoService.buscar(new FiltroProducto(null, null, null, null, null, "Acqua di Gio"), "id",
+                Sort.Direction.ASC, 0, 10).getProductos())
+                .extracting(Producto::getNombre)
+                .containsExactly("Acqua di Gio", "Acqua di Gio Profumo");
+
+        // los comodines del prefijo se buscan literalmente
+        assertThat(productoService.buscar(new FiltroProducto(null, null, null, null, null, "100%_"), "id",
+                Sort.Direction.ASC, 0, 10).getTotalElementos()).isEqualTo(1);
+        assertThat(productoService.buscar(new FiltroProducto(null, null, null, null, null, "%"), "id",
+                Sort.Direction.ASC, 0, 10).getTotalElementos()).isZero();
+    }
+
+    @Test
+    void testBuscar_PaginaConTotal() {
+        ResultadoBusqueda segunda = productoService.buscar(new FiltroProducto(), "marca", Sort.Direction.ASC, 1, 2);
+
+        assertThat(segunda.getProductos()).extracting(Producto::getNombre)
+                .containsExactly("Armani Code", "Sauvage");
+        assertThat(segunda.getPagina()).isEqualTo(1);
+        assertThat(segunda.getTotalElementos()).isEqualTo(5);
+    }
+
+    @Test
+    void testFindResumenPage_ProyeccionOrdenadaPorId() {
+        List<ProductoResumen> resumenes = productoService.findResumenPage(null, 3);
+
+        assertThat(resumenes).hasSize(3);
+        assertThat(resumenes).extracting(ProductoResumen::getPrecio).containsExactly(50000L, 70000L, 60000L);
+        assertThat(productoService.findResumenPage(resumenes.get(2).getId(), 10)).hasSize(2);
+    }
+}
@@ -0,0 +1,126 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.inventario.inventario.config.CacheSegundoNivelConfig;
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+
+// cada llamada al repositorio corre en su propia transaccion: las cargas repetidas salen de la cache de segundo
+// nivel, y cada escritura del servicio (por entidad o por JDBC) refresca o descarta solo la entrada de su producto
+@SpringBootTest
+public class ProductoCacheSegundoNivelTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoImportService productoImportService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estadisticas;
+
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        id = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get().getId();
+        entityManagerFactory.getCache().evictAll();
+        estadisticas.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    @Test
+    void testFindById_SegundaCargaSinConsultar() {
+        productoRepository.findById(id);
+        long consultas = estadisticas.getPrepareStatementCount();
+
+        assertThat(productoRepository.findById(id)).get().extracting(Producto::getStock).isEqualTo(10);
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(consultas);
+        assertThat(estadisticas.getDomainDataRegionStatistics(CacheSegundoNivelConfig.REGION_PRODUCTO).getHitCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void testEscrituras_SeVenEnLaSiguienteCarga() {
+        productoRepository.findById(id);
+        productoService.update(id, new Producto(null, true, "Acqua di Gio", 55000L, 10, "Armani"));
+        assertThat(productoRepository.findById(id).get().getPrecio()).isEqualTo(55000L);
+
+        productoService.reservarStock(id, 3);
+        assertThat(productoRepository.findById(id).get().getStock()).isEqualTo(7);
+
+        productoService.ajustarStock(List.of(new AjusteStock(id, 5)));
+        assertThat(productoRepository.findById(id).get().getStock()).isEqualTo(12);
+
+        productoService.deleteById(id);
+        assertThat(productoRepository.findById(id).get().getActivo()).isFalse();
+    }
+
+    @Test
+    void testImportacion_DescartaSusProductos() throws Exception {
+        long versionAnterior = productoRepository.findById(id).get().getVersion();
+
+        productoImportService.importar(new ByteArrayInputStream("nombre,marca,precio,stock,activo\nAcqua di Gio,Armani,60000,3,true\n"
+                .getBytes(StandardCharsets.UTF_8)), ProductoImportService.Formato.CSV);
+
+        Producto importado = productoRepository.findById(id).get();
+        assertThat(importado.getStock()).isEqualTo(3);
+        assertThat(importado.getVersion()).isGreaterThan(versionAnterior);
+    }
+
+    @Test
+    void testEscrituras_ConservanLosDemasProductosEnCache() throws Exception {
+        Long otro = productoService.insertIfAbsent(new Producto(null, true, "Sauvage", 70000L, 4, "Dior")).get().getId();
+        Cache cache = entityManagerFactory.getCache();
+        productoRepository.findById(id);
+        productoRepository.findById(otro);
+
+        // la reserva va por JDBC y descarta solo la entrada de su producto
+        productoService.reservarStock(id, 3);
+        assertThat(cache.contains(Producto.class, id)).isFalse();
+        assertThat(cache.contains(Producto.class, otro)).isTrue();
+
+        productoService.liberarStock(id, 1);
+        productoService.update(id, new Producto(null, true, "Acqua di Gio", 55000L, 8, "Armani"));
+        productoService.deleteById(id);
+        productoImportService.importar(new ByteArrayInputStream("nombre,marca,precio,stock,activo\nAcqua di Gio,Armani,60000,3,true\n"
+                .getBytes(StandardCharsets.UTF_8)), ProductoImportService.Formato.CSV);
+        assertThat(cache.contains(Producto.class, otro)).isTrue();
+
+        long consultas = estadisticas.getPrepareStatementCount();
+        assertThat(productoRepository.findById(otro)).get().extracting(Producto::getStock).isEqualTo(4);
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(consultas);
+    }
+}
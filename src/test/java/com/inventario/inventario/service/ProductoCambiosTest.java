@@ -0,0 +1,137 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.ProductoCambios;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+
+@SpringBootTest
+public class ProductoCambiosTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoImportService productoImportService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private EventoInventarioService eventoInventarioService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final String EVENTO = "insert into evento_inventario (secuencia, producto_id, tipo, fecha_millis) "
+            + "values (?, ?, ?, ?)";
+
+    @AfterEach
+    void tearDown() {
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    // siguiente pagina de cambios a partir del cursor de la anterior
+    private ProductoCambios despuesDe(ProductoCambios anteriores, int tamano) {
+        return productoService.findCambios(anteriores.getSiguienteVersion(), anteriores.getSiguienteId(), tamano);
+    }
+
+    @Test
+    void testFindCambios_SoloFilasModificadasDespuesDeLaMarca() {
+        Long acqua = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get().getId();
+        Long sauvage = productoService.insertIfAbsent(new Producto(null, true, "Sauvage", 80000L, 4, "Dior")).get().getId();
+        ProductoCambios marca = productoService.findCambios(0L, 0L, 100);
+
+        productoService.reservarStock(acqua, 2);
+        ProductoCambios cambios = despuesDe(marca, 100);
+
+        assertThat(cambios.getProductos()).extracting(Producto::getId).containsExactly(acqua);
+        assertThat(cambios.getProductos().get(0).getStock()).isEqualTo(8);
+        assertThat(cambios.getSiguienteVersion()).isGreaterThan(marca.getSiguienteVersion());
+        assertThat(cambios.isHayMas()).isFalse();
+        assertThat(despuesDe(cambios, 100).getProductos()).isEmpty();
+
+        // el borrado logico tambien es un cambio
+        productoService.deleteById(sauvage);
+        cambios = despuesDe(cambios, 100);
+        assertThat(cambios.getProductos()).extracting(Producto::getId).containsExactly(sauvage);
+        assertThat(cambios.getProductos().get(0).getActivo()).isFalse();
+    }
+
+    @Test
+    void testFindCambios_PaginasPorVersionCubrenTodasLasEscrituras() throws Exception {
+        Long acqua = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get().getId();
+        Long sauvage = productoService.insertIfAbsent(new Producto(null, true, "Sauvage", 80000L, 4, "Dior")).get().getId();
+        ProductoCambios marca = productoService.findCambios(0L, 0L, 100);
+
+        productoService.ajustarStock(List.of(new AjusteStock(sauvage, 1)));
+        productoService.update(acqua, new Producto(null, true, "Acqua di Gio", 55000L, 10, "Armani"));
+        productoService.liberarStock(sauvage, 1);
+        productoImportService.importar(new ByteArrayInputStream("nombre,marca,precio,stock,activo\nCode,Armani,60000,3,true\n"
+                .getBytes(StandardCharsets.UTF_8)), ProductoImportService.Formato.CSV);
+
+        ProductoCambios primera = despuesDe(marca, 2);
+        assertThat(primera.getProductos()).extracting(Producto::getId).containsExactly(acqua, sauvage);
+        assertThat(primera.isHayMas()).isTrue();
+
+        ProductoCambios segunda = despuesDe(primera, 2);
+        assertThat(segunda.getProductos()).extracting(Producto::getNombre).containsExactly("Code");
+        assertThat(segunda.isHayMas()).isFalse();
+    }
+
+    @Test
+    void testFindCambios_IncluyeFilasSinVersionYDesempataPorId() {
+        // filas anteriores a las versiones (version 0): la sincronizacion inicial tambien las entrega, y como
+        // comparten version el id desempata el corte de pagina
+        productoRepository.saveAll(List.of(new Producto(null, true, "Uno", 100L, 1, "Marca"),
+                new Producto(null, true, "Dos", 100L, 1, "Marca"), new Producto(null, true, "Tres", 100L, 1, "Marca")));
+
+        ProductoCambios primera = productoService.findCambios(0L, 0L, 2);
+        ProductoCambios segunda = despuesDe(primera, 2);
+        assertThat(primera.getProductos()).extracting(Producto::getNombre).containsExactly("Uno", "Dos");
+        assertThat(segunda.getProductos()).extracting(Producto::getNombre).containsExactly("Tres");
+        assertThat(segunda.getProductos().get(0).getVersion()).isZero().isEqualTo(primera.getSiguienteVersion());
+    }
+
+    @Test
+    void testFindCambios_NoPasaDeUnaEscrituraEnCurso() {
+        Long acqua = productoService.insertIfAbsent(new Producto(null, true, "Acqua di Gio", 50000L, 10, "Armani")).get().getId();
+        ProductoCambios marca = productoService.findCambios(0L, 0L, 100);
+
+        // una escritura confirmada con la secuencia siguiente a la de otra aun abierta: la version queda retenida
+        // hasta que la secuencia anterior se confirma (o se descarta). Las pruebas no esperan huecos: aca si
+        EventoInventarioService eventos = AopTestUtils.getTargetObject(eventoInventarioService);
+        ReflectionTestUtils.setField(eventos, "esperaHueco", Duration.ofMinutes(1));
+        try {
+            long enCurso = Math.max(eventoInventarioService.marcaDeAgua(), marca.getSiguienteVersion()) + 1;
+            jdbcTemplate.update(EVENTO, enCurso + 1, acqua, "STOCK_RESERVADO", System.currentTimeMillis());
+            jdbcTemplate.update("update producto set version = ? where id = ?", enCurso + 1, acqua);
+            assertThat(despuesDe(marca, 100).getProductos()).isEmpty();
+
+            jdbcTemplate.update(EVENTO, enCurso, acqua, "DESCARTADO", System.currentTimeMillis());
+            assertThat(despuesDe(marca, 100).getProductos()).extracting(Producto::getId).containsExactly(acqua);
+        } finally {
+            ReflectionTestUtils.setField(eventos, "esperaHueco", Duration.ZERO);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+
+public class ProductoCargaAgrupadaTest {
+
+    private final ProductoRepository productoRepository = mock(ProductoRepository.class);
+
+    @Test
+    void testCargar_ConsultaEnLotesAcotadosYOrdenados() {
+        when(productoRepository.findAllById(anyList())).thenAnswer(invocacion -> productos(invocacion.getArgument(0)));
+        ProductoCargaAgrupada carga = new ProductoCargaAgrupada(productoRepository, 4, Duration.ZERO);
+
+        Map<Long, Producto> cargados = carga.cargar(List.of(9L, 1L, 5L, 3L, 7L, 2L, 1L, 8L, 6L, 4L));
+
+        assertThat(cargados).hasSize(9);
+        verify(productoRepository).findAllById(List.of(1L, 2L, 3L, 4L));
+        verify(productoRepository).findAllById(List.of(5L, 6L, 7L, 8L));
+        verify(productoRepository).findAllById(List.of(9L));
+    }
+
+    @Test
+    void testCargar_OmiteIdsInexistentes() {
+        when(productoRepository.findAllById(anyList())).thenReturn(productos(List.of(1L)));
+        ProductoCargaAgrupada carga = new ProductoCargaAgrupada(productoRepository, 100, Duration.ZERO);
+
+        assertThat(carga.cargar(List.of(1L, 2L))).containsOnlyKeys(1L);
+    }
+
+    @Test
+    void testCargar_JuntaLlamadoresConcurrentesDeLaVentana() {
+        when(productoRepository.findAllById(anyList())).thenAnswer(invocacion -> productos(invocacion.getArgument(0)));
+        ProductoCargaAgrupada carga = new ProductoCargaAgrupada(productoRepository, 100, Duration.ofMillis(200));
+        try {
+            List<CompletableFuture<Map<Long, Producto>>> llamadas = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                List<Long> ids = LongStream.rangeClosed(1, 10 + i % 3).boxed().toList();
+                llamadas.add(CompletableFuture.supplyAsync(() -> carga.cargar(ids)));
+            }
+
+            llamadas.forEach(llamada -> assertThat(llamada.join()).containsKeys(1L, 10L));
+            verify(productoRepository, times(1)).findAllById(anyList());
+            verify(productoRepository).findAllById(LongStream.rangeClosed(1, 12).boxed().toList());
+        } finally {
+            carga.cerrar();
+        }
+    }
+
+    private static List<Producto> productos(List<Long> ids) {
+        return ids.stream().map(id -> new Producto(id, true, "Perfume " + id, 1000L, 1, "Marca")).toList();
+    }
+}
@@ -0,0 +1,103 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.inventario.inventario.dto.ErrorImportacion;
+import com.inventario.inventario.dto.ResultadoImportacion;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+
+@SpringBootTest(properties = "inventario.importacion.tamano-lote=2")
+public class ProductoImportServiceTest {
+
+    @Autowired
+    private ProductoImportService productoImportService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @AfterEach
+    void tearDown() {
+        productoRepository.deleteAll();
+    }
+
+    @Test
+    void testImportarCsv() throws Exception {
+        productoRepository.save(new Producto(null, true, "Acqua di Gio", 50000L, 5, "Armani"));
+
+        String csv = "nombre,marca,precio,stock,activo\n"
+                + "Acqua di Gio,Armani,55000,12,true\n"
+                + "\"Eau de Parfum, Edicion Limitada\",Chanel,90000,3,\n"
+                + "Sauvage,Dior,abc,4,true\n"
+                + "Light Blue,Dolce & Gabbana,40000,8,false\n"
+                + "Light Blue,Dolce & Gabbana,42000,9,true\n";
+
+        ResultadoImportacion resultado = productoImportService.importar(entrada(csv), ProductoImportService.Formato.CSV);
+
+        assertThat(resultado.getProcesadas()).isEqualTo(3);
+        assertThat(resultado.getDuplicadas()).isEqualTo(1);
+        assertThat(resultado.getRechazadas()).isEqualTo(1);
+        assertThat(resultado.getErrores()).hasSize(1);
+        assertThat(resultado.getErrores().get(0).getLinea()).isEqualTo(4);
+
+        assertThat(productoRepository.count()).isEqualTo(3);
+        Producto actualizado = buscar("Acqua di Gio");
+        assertThat(actualizado.getPrecio()).isEqualTo(55000L);
+        assertThat(actualizado.getStock()).isEqualTo(12);
+        assertThat(buscar("Eau de Parfum, Edicion Limitada").getActivo()).isTrue();
+        assertThat(buscar("Light Blue").getPrecio()).isEqualTo(42000L);
+    }
+
+    @Test
+    void testImportarNdjson() throws Exception {
+        String ndjson = "{\"nombre\":\"Sauvage\",\"marca\":\"Dior\",\"precio\":70000,\"stock\":4}\n"
+                + "{\"nombre\":\"Invictus\",\"marca\":\"Paco Rabanne\",\"precio\":-1,\"stock\":4}\n"
+                + "no es json\n"
+                + "{\"nombre\":\"One Million\",\"marca\":\"Paco Rabanne\",\"precio\":65000,\"stock\":7,\"activo\":false}\n";
+
+        ResultadoImportacion resultado = productoImportService.importar(entrada(ndjson), ProductoImportService.Formato.NDJSON);
+
+        assertThat(resultado.getProcesadas()).isEqualTo(2);
+        assertThat(resultado.getRechazadas()).isEqualTo(2);
+        assertThat(buscar("One Million").getActivo()).isFalse();
+    }
+
+    @Test
+    void testImportar_StockFueraDeRangoSeRechaza() throws Exception {
+        String csv = "nombre,marca,precio,stock\n"
+                + "Sauvage,Dior,70000,-4294967295\n"
+                + "Invictus,Paco Rabanne,60000,2147483648\n"
+                + "One Million,Paco Rabanne,65000,2147483647\n";
+
+        ResultadoImportacion resultado = productoImportService.importar(entrada(csv), ProductoImportService.Formato.CSV);
+
+        assertThat(resultado.getProcesadas()).isEqualTo(1);
+        assertThat(resultado.getRechazadas()).isEqualTo(2);
+        assertThat(resultado.getErrores()).extracting(ErrorImportacion::getLinea).containsExactly(2L, 3L);
+        assertThat(buscar("One Million").getStock()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testSepararCsv() {
+        assertThat(ProductoImportService.separarCsv("a,\"b,\"\"c\"\"\",,d"))
+                .containsExactly("a", "b,\"c\"", "", "d");
+    }
+
+    private Producto buscar(String nombre) {
+        return productoRepository.findAll().stream()
+                .filter(producto -> producto.getNombre().equals(nombre))
+                .findFirst().get();
+    }
+
+    private static ByteArrayInputStream entrada(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
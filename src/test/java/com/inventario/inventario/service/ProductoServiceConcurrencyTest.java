@@ -0,0 +1,137 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.repository.ProductoRepository;
+
+// pruebas de concurrencia sobre la base de datos embebida
+@SpringBootTest
+public class ProductoServiceConcurrencyTest {
+
+    private static final int HILOS = 32;
+
+    private static final int INTENTOS = 2000;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @AfterEach
+    void tearDown() {
+        productoRepository.deleteAll();
+    }
+
+    @Test
+    void testReservasConcurrentesNoSobrevenden() throws Exception {
+        int stockInicial = 500;
+        Producto producto = productoRepository.save(new Producto(null, true, "Perfume Hot Sale", 30000L, stockInicial, "Perfulandia"));
+
+        AtomicInteger aplicadas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        for (int i = 0; i < INTENTOS; i++) {
+            tareas.add(executor.submit(() -> {
+                largada.await();
+                ResultadoReserva resultado = productoService.reservarStock(producto.getId(), 1);
+                if (resultado == ResultadoReserva.APLICADA) {
+                    aplicadas.incrementAndGet();
+                } else {
+                    assertThat(resultado).isEqualTo(ResultadoReserva.STOCK_INSUFICIENTE);
+                    rechazadas.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(aplicadas.get()).isEqualTo(stockInicial);
+        assertThat(rechazadas.get()).isEqualTo(INTENTOS - stockInicial);
+        assertThat(productoRepository.findById(producto.getId()).get().getStock()).isZero();
+    }
+
+    @Test
+    void testReservasYLiberacionesConcurrentesConservanElStock() throws Exception {
+        int stockInicial = 50;
+        Producto producto = productoRepository.save(new Producto(null, true, "Perfume Clasico", 25000L, stockInicial, "Perfulandia"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // cada reserva aplicada se libera despues, por lo que el stock final debe volver al inicial
+        for (int i = 0; i < INTENTOS; i++) {
+            tareas.add(executor.submit(() -> {
+                if (productoService.reservarStock(producto.getId(), 2) == ResultadoReserva.APLICADA) {
+                    assertThat(productoService.liberarStock(producto.getId(), 2)).isEqualTo(ResultadoReserva.APLICADA);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(productoRepository.findById(producto.getId()).get().getStock()).isEqualTo(stockInicial);
+    }
+
+    @Test
+    void testLotesConcurrentesEnDistintoOrdenNoSeBloqueanNiSobrevenden() throws Exception {
+        Producto a = productoRepository.save(new Producto(null, true, "Perfume A", 10000L, 100, "Perfulandia"));
+        Producto b = productoRepository.save(new Producto(null, true, "Perfume B", 20000L, 100, "Perfulandia"));
+
+        AtomicInteger aplicados = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // la mitad de los lotes llega con los ids en orden inverso
+        for (int i = 0; i < 400; i++) {
+            List<AjusteStock> lote = i % 2 == 0
+                    ? List.of(new AjusteStock(a.getId(), -1), new AjusteStock(b.getId(), -1))
+                    : List.of(new AjusteStock(b.getId(), -1), new AjusteStock(a.getId(), -1));
+            tareas.add(executor.submit(() -> {
+                try {
+                    productoService.ajustarStock(lote);
+                    aplicados.incrementAndGet();
+                } catch (StockInsuficienteException e) {
+                    // lote rechazado completo
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(aplicados.get()).isEqualTo(100);
+        assertThat(productoRepository.findById(a.getId()).get().getStock()).isZero();
+        assertThat(productoRepository.findById(b.getId()).get().getStock()).isZero();
+    }
+}
@@ -1,34 +1,138 @@
 package com.inventario.inventario.service;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.inventario.inventario.cache.ProductoCache;
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.ProductoCambios;
+import com.inventario.inventario.dto.ProductoPagina;
+import com.inventario.inventario.dto.ProductoResumen;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.exception.ProductoNoEncontradoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.metrics.InventarioMetricas;
+import com.inventario.inventario.model.EventoInventario;
 import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.TipoEventoInventario;
 import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.stock.MotorStock;
 
 public class ProductoServiceTest {
 
     @Mock
     private ProductoRepository productoRepository;
 
+    @Spy
+    private ProductoCache productoCache = new ProductoCache(100, Duration.ofMinutes(1));
+
+    @Spy
+    private InventarioMetricas inventarioMetricas = new InventarioMetricas(new SimpleMeterRegistry());
+
+    @Mock
+    private EventoInventarioService eventoInventarioService;
+
+    private PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+    // sin fracciones salvo que la prueba diga lo contrario
+    @Mock
+    private StockFraccionadoService stockFraccionadoService;
+
+    // las reservas y liberaciones no aplican (ninguna fila) salvo que la prueba diga lo contrario
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    // stock en memoria deshabilitado salvo que la prueba diga lo contrario
+    @Mock
+    private MotorStock motorStock;
+
     @InjectMocks
     private ProductoService productoService;
 
+    private ProductoCargaAgrupada productoCargaAgrupada;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        productoCargaAgrupada = new ProductoCargaAgrupada(productoRepository, 100, Duration.ZERO);
+        ReflectionTestUtils.setField(productoService, "productoCargaAgrupada", productoCargaAgrupada);
+        when(stockFraccionadoService.decrementar(anyLong(), anyInt())).thenReturn(ResultadoReserva.NO_ENCONTRADO);
+        when(stockFraccionadoService.incrementar(anyLong(), anyInt())).thenReturn(ResultadoReserva.NO_ENCONTRADO);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocacion -> new SimpleTransactionStatus());
+        // el outbox asigna secuencias correlativas, que son las versiones de las filas
+        AtomicLong secuencia = new AtomicLong(100);
+        when(eventoInventarioService.registrar(any(EventoInventario.class))).thenAnswer(invocacion -> secuencia.incrementAndGet());
+        doAnswer(invocacion -> {
+            List<EventoInventario> eventos = invocacion.getArgument(0);
+            eventos.forEach(evento -> evento.setSecuencia(secuencia.incrementAndGet()));
+            return null;
+        }).when(eventoInventarioService).registrar(anyList());
+    }
+
+    @Test
+    void testFindCambios_DevuelveElUltimoComoCursor() {
+        Producto primero = new Producto(1L, true, "PlayStation 5", 50000L, 10, "Sony", 100L);
+        Producto segundo = new Producto(2L, false, "Xbox One", 15000L, 64, "Microsoft", 105L);
+        when(eventoInventarioService.marcaDeAgua()).thenReturn(200L);
+        when(productoRepository.findModificados(eq(90L), eq(7L), eq(200L), any())).thenReturn(Arrays.asList(primero, segundo));
+
+        ProductoCambios cambios = productoService.findCambios(90L, 7L, 2);
+
+        assertEquals(105L, cambios.getSiguienteVersion());
+        assertEquals(2L, cambios.getSiguienteId());
+        assertTrue(cambios.isHayMas());
+        verify(productoRepository).findModificados(eq(90L), eq(7L), eq(200L), eq(PageRequest.of(0, 2)));
+    }
+
+    @Test
+    void testFindCambios_SinCambiosConservaLaMarca() {
+        when(productoRepository.findModificados(eq(90L), eq(7L), anyLong(), any())).thenReturn(List.of());
+
+        ProductoCambios cambios = productoService.findCambios(90L, 7L, 100);
+
+        assertEquals(90L, cambios.getSiguienteVersion());
+        assertEquals(7L, cambios.getSiguienteId());
+        assertTrue(cambios.getProductos().isEmpty());
     }
 
     @Test
@@ -42,6 +146,31 @@ public class ProductoServiceTest {
         verify(productoRepository).findAll();
     }
 
+    @Test
+    void testFindPage() {
+        Producto p1 = new Producto(3L, true, "Playstation 2", 20000L, 32, "Sony");
+        Producto p2 = new Producto(4L, true, "Xbox One", 15000L, 64, "Microsoft");
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(2L, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(p1, p2));
+
+        ProductoPagina pagina = productoService.findPage(2L, 2);
+
+        assertThat(pagina.getProductos()).containsExactly(p1, p2);
+        assertThat(pagina.getSiguienteCursor()).isEqualTo(4L);
+    }
+
+    @Test
+    void testFindPage_UltimaPaginaSinCursorYTamanoAcotado() {
+        Producto p1 = new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony");
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 500)))
+                .thenReturn(Arrays.asList(p1));
+
+        ProductoPagina pagina = productoService.findPage(null, 100000);
+
+        assertThat(pagina.getProductos()).containsExactly(p1);
+        assertThat(pagina.getSiguienteCursor()).isNull();
+    }
+
     @Test
     void testFindById() {
         Producto producto = new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony");
@@ -54,6 +183,47 @@ public class ProductoServiceTest {
         verify(productoRepository).findById(1L);
     }
 
+    @Test
+    void testFindById_SegundaLecturaDesdeCache() {
+        Producto producto = new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony");
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(producto));
+
+        productoService.findById(1L);
+        Producto resultado = productoService.findById(1L).get();
+
+        assertThat(resultado).isEqualTo(producto).isNotSameAs(producto);
+        assertThat(productoCache.estadisticas().hitCount()).isEqualTo(1);
+        verify(productoRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testFindById_ReservaInvalidaLaCache() {
+        when(productoRepository.findById(1L))
+                .thenReturn(Optional.of(new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony")))
+                .thenReturn(Optional.of(new Producto(1L, true, "Playstation 2", 20000L, 31, "Sony")));
+        when(jdbcTemplate.update(eq(ProductoService.DESCONTAR_STOCK), eq(1), anyLong(), eq(1L), eq(1))).thenReturn(1);
+
+        productoService.findById(1L);
+        productoService.reservarStock(1L, 1);
+
+        assertThat(productoService.findById(1L).get().getStock()).isEqualTo(31);
+        verify(productoRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testFindAllById_SoloCargaLosAusentesEnCache() {
+        Producto p1 = new Producto(1L, true, "Xbox Series X", 45000L, 15, "Microsoft");
+        Producto p2 = new Producto(2L, true, "PlayStation 5", 50000L, 20, "Sony");
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(p1));
+        when(productoRepository.findAllById(Arrays.asList(2L))).thenReturn(Arrays.asList(p2));
+
+        productoService.findById(1L);
+        List<Producto> productos = productoService.findAllById(Arrays.asList(2L, 1L));
+
+        assertThat(productos).containsExactly(p2, p1);
+        verify(productoRepository).findAllById(Arrays.asList(2L));
+    }
+
     @Test
     public void testFindAllById() {
         Producto p1 = new Producto(1L, true, "Xbox Series X", 45000L, 15, "Microsoft");
@@ -82,6 +252,17 @@ public class ProductoServiceTest {
         verify(productoRepository).existsById(idExistente);
     }
 
+    @Test
+    void testFindResumenByIds_OrdenDelPedidoSinInexistentes() {
+        when(productoRepository.findResumenByIdIn(Arrays.asList(3L, 1L, 9L))).thenReturn(Arrays.asList(
+                new ProductoResumen(1L, 1200L, 10, true),
+                new ProductoResumen(3L, 3000L, 0, false)));
+
+        List<ProductoResumen> resumenes = productoService.findResumenByIds(Arrays.asList(3L, 1L, 9L));
+
+        assertThat(resumenes).extracting(ProductoResumen::getId).containsExactly(3L, 1L);
+    }
+
     @Test
     void testSave() {
         Producto producto = new Producto(null, true, "Playstation 2", 20000L, 32, "Sony");
@@ -96,27 +277,192 @@ public class ProductoServiceTest {
         verify(productoRepository).save(producto);
     }
 
+    @Test
+    void testInsertIfAbsent() {
+        Producto producto = new Producto(7L, true, "Playstation 2", 20000L, 32, "Sony");
+        Producto productoGuardado = new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony");
+        when(productoRepository.save(producto)).thenReturn(productoGuardado);
+
+        Optional<Producto> resultado = productoService.insertIfAbsent(producto);
+
+        assertThat(resultado).contains(productoGuardado);
+        assertThat(producto.getId()).isNull();
+        verify(productoRepository, never()).existsById(anyLong());
+    }
+
+    @Test
+    void testInsertIfAbsent_NombreDuplicado() {
+        Producto producto = new Producto(null, true, "Playstation 2", 20000L, 32, "Sony");
+        when(productoRepository.save(producto)).thenThrow(violacion("producto.uk_producto_nombre"));
+
+        assertThat(productoService.insertIfAbsent(producto)).isEmpty();
+    }
+
+    @Test
+    void testInsertIfAbsent_OtraViolacionSePropaga() {
+        Producto producto = new Producto(null, true, "Playstation 2", 20000L, 32, "Sony");
+        when(productoRepository.save(producto)).thenThrow(violacion("fk_producto_categoria"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> productoService.insertIfAbsent(producto));
+    }
+
+    @Test
+    void testInsertIfAbsent_ProductoIncompleto() {
+        Producto producto = new Producto(null, true, " ", 20000L, 32, "Sony");
+
+        assertThrows(IllegalArgumentException.class, () -> productoService.insertIfAbsent(producto));
+        verify(productoRepository, never()).save(any());
+    }
+
+    private static DataIntegrityViolationException violacion(String restriccion) {
+        return new DataIntegrityViolationException("violacion",
+                new ConstraintViolationException("violacion", new SQLException("violacion"), restriccion));
+    }
+
     @Test
     void testUpdate() {
+        Producto p1 = new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony", 90L);
+        Producto p2 = new Producto(null, true, "Xbox One", 15000L, 64, "Microsoft");
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(p1));
+
+        Optional<Producto> resultado = productoService.update(1L, p2);
+
+        // se modifica la entidad leida; la version es la secuencia del evento
+        assertThat(p1).usingRecursiveComparison()
+                .isEqualTo(new Producto(1L, true, "Xbox One", 15000L, 64, "Microsoft", 101L));
+        assertThat(resultado.get()).usingRecursiveComparison().isEqualTo(p1);
+        verify(productoRepository, never()).save(any(Producto.class));
+    }
+
+    @Test
+    void testUpdate_NoEncontrado() {
+        Producto p2 = new Producto(null, true, "Xbox One", 15000L, 64, "Microsoft");
+        when(productoRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThat(productoService.update(1L, p2)).isEmpty();
+        verify(eventoInventarioService, never()).registrar(any(EventoInventario.class));
+    }
+
+    @Test
+    void testUpdate_ProductoIncompleto() {
+        Producto p2 = new Producto(null, true, "Xbox One", null, 64, "Microsoft");
+
+        assertThrows(IllegalArgumentException.class, () -> productoService.update(1L, p2));
+        verify(productoRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void testReservarStock() {
+        when(jdbcTemplate.update(ProductoService.DESCONTAR_STOCK, 3, 101L, 1L, 3)).thenReturn(1);
+
+        assertThat(productoService.reservarStock(1L, 3)).isEqualTo(ResultadoReserva.APLICADA);
+        verify(productoRepository, never()).existsById(1L);
+        verify(eventoInventarioService).registrar(any(EventoInventario.class));
+    }
+
+    @Test
+    void testReservarStock_StockInsuficiente() {
+        when(productoRepository.existsById(1L)).thenReturn(true);
+
+        assertThat(productoService.reservarStock(1L, 3)).isEqualTo(ResultadoReserva.STOCK_INSUFICIENTE);
+        // el evento registrado para tomar la version se revierte
+        verify(transactionManager).commit(ArgumentMatchers.argThat(TransactionStatus::isRollbackOnly));
+        verify(inventarioMetricas).registrarOperacionStock("reservar", ResultadoReserva.STOCK_INSUFICIENTE);
+    }
+
+    @Test
+    void testReservarStock_NoEncontrado() {
+        when(productoRepository.existsById(1L)).thenReturn(false);
+
+        assertThat(productoService.reservarStock(1L, 3)).isEqualTo(ResultadoReserva.NO_ENCONTRADO);
+    }
+
+    @Test
+    void testReservarStock_FraccionadoNoTocaLaFilaDeProducto() {
+        when(stockFraccionadoService.esFraccionado(1L)).thenReturn(true);
+        when(stockFraccionadoService.decrementar(1L, 3)).thenReturn(ResultadoReserva.APLICADA);
+
+        assertThat(productoService.reservarStock(1L, 3)).isEqualTo(ResultadoReserva.APLICADA);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verify(eventoInventarioService).registrar(any(EventoInventario.class));
+    }
+
+    @Test
+    void testReservarStock_EnMemoriaNoConsultaLaBase() {
+        when(motorStock.isHabilitado()).thenReturn(true);
+        when(motorStock.sumar(1L, -3)).thenReturn(ResultadoReserva.APLICADA);
+
+        assertThat(productoService.reservarStock(1L, 3)).isEqualTo(ResultadoReserva.APLICADA);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verify(eventoInventarioService, never()).registrar(any(EventoInventario.class));
+    }
+
+    @Test
+    void testLiberarStock() {
+        when(jdbcTemplate.update(ProductoService.DEVOLVER_STOCK, 3, 101L, 1L, Integer.MAX_VALUE - 3)).thenReturn(1);
+
+        assertThat(productoService.liberarStock(1L, 3)).isEqualTo(ResultadoReserva.APLICADA);
+    }
+
+    @Test
+    void testLiberarStock_RechazaPasarElMaximo() {
+        when(productoRepository.existsById(1L)).thenReturn(true);
+
+        assertThat(productoService.liberarStock(1L, 3)).isEqualTo(ResultadoReserva.STOCK_EXCEDIDO);
+    }
+
+    @Test
+    void testAjustarStock_AgrupaPorIdYAplicaTodo() {
         Producto p1 = new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony");
-        Producto p2 = new Producto(1L, true, "Xbox One", 15000L, 64, "Microsoft");
+        Producto p2 = new Producto(2L, true, "Xbox One", 15000L, 64, "Microsoft");
+        when(productoRepository.findAllByIdForUpdate(anyCollection())).thenReturn(Arrays.asList(p1, p2));
 
-        when(productoRepository.findById(1L)).thenReturn(Optional.of(p1));
+        productoService.ajustarStock(Arrays.asList(new AjusteStock(2L, -4), new AjusteStock(1L, -2), new AjusteStock(2L, 1)));
+
+        assertThat(p1.getStock()).isEqualTo(30);
+        assertThat(p2.getStock()).isEqualTo(61);
+        assertThat(p1.getVersion()).isEqualTo(101L);
+        assertThat(p2.getVersion()).isEqualTo(102L);
+        verify(productoRepository).findAllByIdForUpdate(new TreeSet<>(Arrays.asList(1L, 2L)));
+    }
 
-        productoService.update(1L, p2);
+    @Test
+    void testAjustarStock_StockInsuficiente() {
+        Producto p1 = new Producto(1L, true, "Playstation 2", 20000L, 3, "Sony");
+        when(productoRepository.findAllByIdForUpdate(anyCollection())).thenReturn(Arrays.asList(p1));
 
-        verify(productoRepository).save(p2);
+        assertThrows(StockInsuficienteException.class,
+                () -> productoService.ajustarStock(Arrays.asList(new AjusteStock(1L, -4))));
+    }
+
+    @Test
+    void testAjustarStock_ProductoNoEncontrado() {
+        Producto p1 = new Producto(1L, true, "Playstation 2", 20000L, 3, "Sony");
+        when(productoRepository.findAllByIdForUpdate(anyCollection())).thenReturn(Arrays.asList(p1));
+
+        ProductoNoEncontradoException error = assertThrows(ProductoNoEncontradoException.class,
+                () -> productoService.ajustarStock(Arrays.asList(new AjusteStock(1L, -1), new AjusteStock(9L, -1))));
+        assertThat(error.getIds()).containsExactly(9L);
     }
 
     @Test
     public void testDeleteById() {
-        Producto existingProduct = new Producto(1L, true, "Xbox One", 15000L, 64, "Microsoft");
+        Producto p1 = new Producto(1L, true, "Playstation 2", 20000L, 32, "Sony");
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(p1));
 
-        when(productoRepository.findById(1L)).thenReturn(Optional.of(existingProduct));
+        assertTrue(productoService.deleteById(1L));
+        assertThat(p1.getActivo()).isFalse();
+        assertThat(p1.getVersion()).isEqualTo(101L);
+        verify(eventoInventarioService).registrar(ArgumentMatchers.<EventoInventario>argThat(
+                evento -> evento.getTipo() == TipoEventoInventario.DESACTIVADO && evento.getProductoId() == 1L));
+    }
 
-        productoService.deleteById(1L);
+    @Test
+    public void testDeleteById_NoEncontrado() {
+        when(productoRepository.findById(1L)).thenReturn(Optional.empty());
 
-        assertThat(existingProduct.getActivo()).isEqualTo(false);
+        assertThat(productoService.deleteById(1L)).isFalse();
+        verify(eventoInventarioService, never()).registrar(any(EventoInventario.class));
     }
 
-}
\ No newline at end of file
+}
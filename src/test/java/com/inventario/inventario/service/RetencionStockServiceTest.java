@@ -0,0 +1,140 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inventario.inventario.dto.StockDisponible;
+import com.inventario.inventario.exception.ProductoNoEncontradoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.RetencionStock;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.repository.RetencionStockRepository;
+
+// retenciones sobre la base de datos embebida (rueda de 100 ms en las pruebas)
+@SpringBootTest
+public class RetencionStockServiceTest {
+
+    @Autowired
+    private RetencionStockService retencionStockService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private RetencionStockRepository retencionStockRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    @Autowired
+    private ScheduledTaskHolder tareasProgramadas;
+
+    @AfterEach
+    void tearDown() {
+        retencionStockRepository.deleteAll();
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    @Test
+    void testElTicDeLaRuedaNoEsperaAOtrasTareasProgramadas() {
+        // un hilo por tarea @Scheduled: una purga o consolidacion larga no atrasa los vencimientos
+        assertThat(taskScheduler.getPoolSize()).isGreaterThanOrEqualTo(tareasProgramadas.getScheduledTasks().size());
+    }
+
+    @Test
+    void testRetenerDescuentaDelDisponible() {
+        Long id = producto("Zapatilla Retenida", 10);
+
+        retencionStockService.retener(id, 3, Duration.ofMinutes(15));
+        retencionStockService.retener(id, 2, Duration.ofMinutes(15));
+
+        assertThat(retencionStockService.findDisponible(id)).contains(new StockDisponible(id, 10, 5, 5));
+        assertThatThrownBy(() -> retencionStockService.retener(id, 6, Duration.ofMinutes(15)))
+                .isInstanceOf(StockInsuficienteException.class);
+        assertThatThrownBy(() -> retencionStockService.retener(999_999L, 1, Duration.ofMinutes(15)))
+                .isInstanceOf(ProductoNoEncontradoException.class);
+    }
+
+    @Test
+    void testLaReservaYLaRetencionSeConfirmanJuntas() {
+        Long id = producto("Zapatilla Revertida", 10);
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            retencionStockService.retener(id, 3, Duration.ofMinutes(15));
+            estado.setRollbackOnly();
+        });
+
+        assertThat(retencionStockService.findDisponible(id)).contains(new StockDisponible(id, 10, 0, 10));
+        assertThat(retencionStockRepository.count()).isZero();
+    }
+
+    @Test
+    void testLaRetencionVencidaDevuelveElStock() throws Exception {
+        Long id = producto("Zapatilla Abandonada", 10);
+        retencionStockService.retener(id, 4, Duration.ZERO);
+
+        Thread.sleep(250);
+        retencionStockService.vencer();
+
+        assertThat(retencionStockService.findDisponible(id)).contains(new StockDisponible(id, 10, 0, 10));
+        assertThat(retencionStockRepository.count()).isZero();
+    }
+
+    @Test
+    void testConfirmarYCancelar() throws Exception {
+        Long id = producto("Zapatilla Vendida", 10);
+        RetencionStock vendida = retencionStockService.retener(id, 3, Duration.ofMillis(100));
+        RetencionStock cancelada = retencionStockService.retener(id, 2, Duration.ofMinutes(15));
+
+        assertThat(retencionStockService.confirmar(vendida.getId())).isTrue();
+        assertThat(retencionStockService.cancelar(cancelada.getId())).isTrue();
+        assertThat(retencionStockService.cancelar(cancelada.getId())).isFalse();
+
+        // la confirmada ya no devuelve stock al vencer
+        Thread.sleep(250);
+        retencionStockService.vencer();
+        assertThat(retencionStockService.findDisponible(id)).contains(new StockDisponible(id, 7, 0, 7));
+    }
+
+    @Test
+    void testRecargaLasRetencionesAlReiniciar() throws Exception {
+        Long id = producto("Zapatilla Persistida", 10);
+        // retencion de una ejecucion anterior: su stock ya esta descontado
+        productoService.reservarStock(id, 4);
+        retencionStockRepository.save(new RetencionStock(null, id, 4, System.currentTimeMillis() + 50));
+
+        retencionStockService.cargar();
+        Thread.sleep(250);
+        retencionStockService.vencer();
+        // una segunda instancia (o el barrido) que tambien la tenia no la devuelve dos veces
+        retencionStockService.barrer();
+
+        assertThat(retencionStockService.findDisponible(id)).contains(new StockDisponible(id, 10, 0, 10));
+    }
+
+    private Long producto(String nombre, int stock) {
+        return productoService.insertIfAbsent(new Producto(null, true, nombre, 50000L, stock, "Nike")).get().getId();
+    }
+}
@@ -0,0 +1,179 @@
+package com.inventario.inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.StockFraccion;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.repository.StockFraccionRepository;
+
+// stock fraccionado sobre la base de datos embebida: ninguna fraccion ni el total bajan de cero
+@SpringBootTest
+public class StockFraccionadoServiceTest {
+
+    private static final int HILOS = 32;
+
+    private static final int INTENTOS = 2000;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private StockFraccionadoService stockFraccionadoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private StockFraccionRepository stockFraccionRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @AfterEach
+    void tearDown() {
+        stockFraccionRepository.deleteAll();
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    @Test
+    void testReservasConcurrentesNoSobrevenden() throws Exception {
+        int stockInicial = 500;
+        Long id = fraccionado("Perfume Hot Sale", stockInicial, 8);
+
+        AtomicInteger aplicadas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        for (int i = 0; i < INTENTOS; i++) {
+            tareas.add(executor.submit(() -> {
+                largada.await();
+                ResultadoReserva resultado = productoService.reservarStock(id, 1);
+                if (resultado == ResultadoReserva.APLICADA) {
+                    aplicadas.incrementAndGet();
+                } else {
+                    assertThat(resultado).isEqualTo(ResultadoReserva.STOCK_INSUFICIENTE);
+                    rechazadas.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(aplicadas.get()).isEqualTo(stockInicial);
+        assertThat(rechazadas.get()).isEqualTo(INTENTOS - stockInicial);
+        assertThat(stockFraccionRepository.findAll()).hasSize(8).allSatisfy(fraccion -> assertThat(fraccion.getStock()).isZero());
+        assertThat(productoService.findResumenById(id).get().getStock()).isZero();
+
+        // la foto consolidada no cambia la version del producto
+        long version = productoRepository.findById(id).get().getVersion();
+        stockFraccionadoService.consolidar();
+        assertThat(productoRepository.findById(id).get().getStock()).isZero();
+        assertThat(productoRepository.findById(id).get().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    void testReservasYLiberacionesConcurrentesConservanElStock() throws Exception {
+        int stockInicial = 50;
+        Long id = fraccionado("Perfume Clasico", stockInicial, 4);
+
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        for (int i = 0; i < INTENTOS; i++) {
+            tareas.add(executor.submit(() -> {
+                if (productoService.reservarStock(id, 2) == ResultadoReserva.APLICADA) {
+                    assertThat(productoService.liberarStock(id, 2)).isEqualTo(ResultadoReserva.APLICADA);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(productoService.findResumenById(id).get().getStock()).isEqualTo(stockInicial);
+    }
+
+    @Test
+    void testRebalanceaCuandoNingunaFraccionAlcanzaSola() {
+        // 10 en 4 fracciones: 3, 3, 2, 2
+        Long id = fraccionado("Perfume Rebalanceo", 10, 4);
+
+        assertThat(productoService.reservarStock(id, 5)).isEqualTo(ResultadoReserva.APLICADA);
+        assertThat(stockFraccionRepository.findAll()).extracting(StockFraccion::getStock).containsExactlyInAnyOrder(2, 1, 1, 1);
+
+        assertThat(productoService.reservarStock(id, 6)).isEqualTo(ResultadoReserva.STOCK_INSUFICIENTE);
+        assertThat(productoService.reservarStock(id, 5)).isEqualTo(ResultadoReserva.APLICADA);
+        assertThat(productoService.findResumenById(id).get().getStock()).isZero();
+    }
+
+    @Test
+    void testAjusteActualizacionYVueltaAUnContador() {
+        Long id = fraccionado("Perfume Ajustes", 20, 4);
+        productoService.reservarStock(id, 3);
+
+        productoService.ajustarStock(List.of(new AjusteStock(id, 5)));
+        assertThat(productoService.findResumenById(id).get().getStock()).isEqualTo(22);
+        assertThat(productoRepository.findById(id).get().getStock()).isEqualTo(22);
+
+        productoService.update(id, new Producto(null, true, "Perfume Ajustes", 30000L, 40, "Perfulandia"));
+        assertThat(stockFraccionRepository.findAll()).extracting(StockFraccion::getStock).containsOnly(10);
+
+        productoService.reservarStock(id, 1);
+        assertThat(productoService.fraccionarStock(id, 1)).isTrue();
+        assertThat(stockFraccionRepository.findAll()).isEmpty();
+        assertThat(productoRepository.findById(id).get().getStock()).isEqualTo(39);
+        assertThat(productoService.reservarStock(id, 39)).isEqualTo(ResultadoReserva.APLICADA);
+        assertThat(productoService.findResumenById(id).get().getStock()).isZero();
+    }
+
+    @Test
+    void testLiberarNoPasaElMaximoDelStock() {
+        Long id = fraccionado("Perfume Tope", 0, 2);
+        Long plano = productoService.insertIfAbsent(
+                new Producto(null, true, "Perfume Tope Plano", 30000L, Integer.MAX_VALUE - 1, "Perfulandia")).get().getId();
+
+        assertThat(productoService.liberarStock(id, Integer.MAX_VALUE / 2 + 1)).isEqualTo(ResultadoReserva.STOCK_EXCEDIDO);
+        assertThat(productoService.liberarStock(plano, 2)).isEqualTo(ResultadoReserva.STOCK_EXCEDIDO);
+        assertThat(productoService.liberarStock(plano, 1)).isEqualTo(ResultadoReserva.APLICADA);
+        assertThat(productoService.findResumenById(id).get().getStock()).isZero();
+        assertThat(productoService.findResumenById(plano).get().getStock()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testFraccionarProductoInexistente() {
+        assertThat(productoService.fraccionarStock(999_999L, 4)).isFalse();
+    }
+
+    private Long fraccionado(String nombre, int stock, int fracciones) {
+        Long id = productoService.insertIfAbsent(new Producto(null, true, nombre, 30000L, stock, "Perfulandia")).get().getId();
+        assertThat(productoService.fraccionarStock(id, fracciones)).isTrue();
+        return id;
+    }
+}
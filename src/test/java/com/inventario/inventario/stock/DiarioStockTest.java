@@ -0,0 +1,118 @@
+package com.inventario.inventario.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DiarioStockTest {
+
+    @TempDir
+    private Path directorio;
+
+    @Test
+    void testReabrirReproduceLosRegistros() throws Exception {
+        try (DiarioStock diario = abrir()) {
+            vaciar(diario);
+            diario.registrar(1L, MotorStock.palabra(1, 10));
+            diario.registrar(2L, MotorStock.palabra(1, 20));
+            diario.registrar(1L, MotorStock.palabra(2, 9));
+        }
+
+        try (DiarioStock diario = abrir()) {
+            assertThat(reproducir(diario)).containsEntry(1L, MotorStock.palabra(2, 9)).containsEntry(2L, MotorStock.palabra(1, 20));
+        }
+    }
+
+    @Test
+    void testGanaLaVersionMasRecienteAunqueEsteFueraDeOrden() throws Exception {
+        try (DiarioStock diario = abrir()) {
+            vaciar(diario);
+            diario.registrar(1L, MotorStock.palabra(3, 7));
+            diario.registrar(1L, MotorStock.palabra(2, 8));
+            assertThat(reproducir(diario)).containsEntry(1L, MotorStock.palabra(3, 7));
+        }
+    }
+
+    @Test
+    void testDescartaUnRegistroAMedioEscribir() throws Exception {
+        try (DiarioStock diario = abrir()) {
+            vaciar(diario);
+            diario.registrar(1L, MotorStock.palabra(1, 10));
+            diario.registrar(1L, MotorStock.palabra(2, 5));
+        }
+        // el segundo registro quedo con la palabra escrita pero sin su control
+        try (FileChannel canal = FileChannel.open(directorio.resolve("stock-0.diario"), StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.allocate(8), DiarioStock.TAMANO_REGISTRO + 16);
+        }
+
+        try (DiarioStock diario = abrir()) {
+            assertThat(reproducir(diario)).containsExactly(Map.entry(1L, MotorStock.palabra(1, 10)));
+        }
+    }
+
+    @Test
+    void testRotarYVaciarElSegmentoAnterior() throws Exception {
+        try (DiarioStock diario = abrir()) {
+            vaciar(diario);
+            for (int i = 1; i <= 30; i++) {
+                diario.registrar(i, MotorStock.palabra(1, i));
+            }
+            assertThat(diario.ocupacion()).isGreaterThan(0.5);
+
+            int anterior = diario.rotar();
+            diario.registrar(31L, MotorStock.palabra(1, 31));
+            diario.vaciar(anterior);
+
+            assertThat(diario.ocupacion()).isLessThan(0.5);
+            assertThat(reproducir(diario)).containsOnlyKeys(31L);
+        }
+    }
+
+    @Test
+    void testReservaDescartadaNoSeReproduceNiCortaLaLectura() throws Exception {
+        try (DiarioStock diario = abrir()) {
+            vaciar(diario);
+            diario.reservar().descartar();
+            DiarioStock.Reserva reserva = diario.reservar();
+            diario.registrar(2L, MotorStock.palabra(1, 20));
+            reserva.escribir(1L, MotorStock.palabra(1, 10));
+
+            assertThat(reproducir(diario)).containsOnlyKeys(1L, 2L);
+        }
+    }
+
+    @Test
+    void testUnSegundoDiarioSobreElMismoDirectorioFalla() throws Exception {
+        try (DiarioStock diario = abrir()) {
+            assertThatThrownBy(this::abrir).isInstanceOf(IllegalStateException.class).hasMessageContaining("en uso");
+        }
+        // cerrado el primero, el directorio queda libre
+        abrir().close();
+    }
+
+    // segmentos de 48 registros
+    private DiarioStock abrir() throws Exception {
+        return new DiarioStock(directorio, 48 * DiarioStock.TAMANO_REGISTRO, false, Duration.ofMillis(100));
+    }
+
+    private static void vaciar(DiarioStock diario) {
+        diario.vaciar(0);
+        diario.vaciar(1);
+    }
+
+    private static Map<Long, Long> reproducir(DiarioStock diario) {
+        Map<Long, Long> ultimas = new HashMap<>();
+        diario.reproducir((id, palabra) -> ultimas.merge(id, palabra, MotorStock::posterior));
+        return ultimas;
+    }
+}
@@ -0,0 +1,230 @@
+package com.inventario.inventario.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inventario.inventario.dto.AjusteStock;
+import com.inventario.inventario.dto.ResultadoReserva;
+import com.inventario.inventario.exception.StockExcedidoException;
+import com.inventario.inventario.exception.StockInsuficienteException;
+import com.inventario.inventario.model.Producto;
+import com.inventario.inventario.model.TipoEventoInventario;
+import com.inventario.inventario.model.TitularStockMemoria;
+import com.inventario.inventario.repository.EventoInventarioRepository;
+import com.inventario.inventario.repository.ProductoRepository;
+import com.inventario.inventario.repository.TitularStockMemoriaRepository;
+import com.inventario.inventario.service.ProductoService;
+
+// stock en memoria sobre la base de datos embebida y un diario en un directorio temporal
+@SpringBootTest
+public class MotorStockTest {
+
+    private static final int HILOS = 32;
+
+    private static final int INTENTOS = 2000;
+
+    @DynamicPropertySource
+    static void propiedades(DynamicPropertyRegistry registro) throws IOException {
+        String directorio = Files.createTempDirectory("diario-stock").toString();
+        registro.add("inventario.stock.memoria.habilitado", () -> "true");
+        registro.add("inventario.stock.memoria.directorio", () -> directorio);
+        registro.add("inventario.stock.memoria.tamano-segmento", () -> "16KB");
+        registro.add("inventario.stock.memoria.capacidad", () -> "1024");
+        // la escritura por detras solo corre cuando la prueba la pide
+        registro.add("inventario.stock.memoria.intervalo-escritura-ms", () -> "3600000");
+    }
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private MotorStock motorStock;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EventoInventarioRepository eventoInventarioRepository;
+
+    @Autowired
+    private TitularStockMemoriaRepository titularRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        motorStock.escribirPendientes();
+        productoRepository.deleteAll();
+        eventoInventarioRepository.deleteAll();
+    }
+
+    @Test
+    void testReservasConcurrentesSeEscribenPorDetras() throws Exception {
+        int stockInicial = 500;
+        Long id = producto("Consola Preventa", stockInicial);
+
+        AtomicInteger aplicadas = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        for (int i = 0; i < INTENTOS; i++) {
+            tareas.add(executor.submit(() -> {
+                largada.await();
+                ResultadoReserva resultado = productoService.reservarStock(id, 1);
+                if (resultado == ResultadoReserva.APLICADA) {
+                    aplicadas.incrementAndGet();
+                } else {
+                    assertThat(resultado).isEqualTo(ResultadoReserva.STOCK_INSUFICIENTE);
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(aplicadas.get()).isEqualTo(stockInicial);
+        assertThat(productoService.findResumenById(id).get().getStock()).isZero();
+        // la tabla aun no vio las reservas
+        assertThat(productoRepository.findStockById(id)).contains(stockInicial);
+
+        motorStock.escribirPendientes();
+        assertThat(productoRepository.findStockById(id)).contains(0);
+        assertThat(eventoInventarioRepository.findAll())
+                .filteredOn(evento -> evento.getTipo() == TipoEventoInventario.STOCK_AJUSTADO)
+                .singleElement()
+                .satisfies(evento -> {
+                    assertThat(evento.getStock()).isZero();
+                    assertThat(evento.getCantidad()).isEqualTo(-stockInicial);
+                });
+    }
+
+    @Test
+    void testReproduceElDiarioTrasUnaCaida() throws Exception {
+        Long id = producto("Consola Reproducida", 100);
+        assertThat(productoService.reservarStock(id, 30)).isEqualTo(ResultadoReserva.APLICADA);
+        assertThat(productoService.liberarStock(id, 5)).isEqualTo(ResultadoReserva.APLICADA);
+
+        // caida antes de la escritura por detras: solo el diario tiene los cambios
+        ((DiarioStock) ReflectionTestUtils.getField(motorStock, "diario")).close();
+        assertThat(productoRepository.findStockById(id)).contains(100);
+
+        motorStock.iniciar();
+        assertThat(productoRepository.findStockById(id)).contains(75);
+        assertThat(motorStock.stock(id)).hasValue(75);
+        assertThat(productoService.reservarStock(id, 75)).isEqualTo(ResultadoReserva.APLICADA);
+    }
+
+    @Test
+    void testAjusteTodoONada() {
+        Long primero = producto("Consola Ajuste", 10);
+        Long segundo = producto("Control Ajuste", 2);
+
+        assertThatThrownBy(() -> productoService.ajustarStock(List.of(new AjusteStock(primero, 5), new AjusteStock(segundo, -3))))
+                .isInstanceOf(StockInsuficienteException.class);
+        assertThat(motorStock.stock(primero)).hasValue(10);
+        assertThat(motorStock.stock(segundo)).hasValue(2);
+
+        assertThat(productoService.ajustarStock(List.of(new AjusteStock(primero, -4), new AjusteStock(segundo, 3))))
+                .extracting(Producto::getStock).containsExactly(6, 5);
+        assertThat(productoService.reservarStock(999_999L, 1)).isEqualTo(ResultadoReserva.NO_ENCONTRADO);
+    }
+
+    @Test
+    void testRechazaElStockPorEncimaDelMaximo() {
+        Long id = producto("Consola Desbordada", Integer.MAX_VALUE - 1);
+        Long otro = producto("Control Desbordado", 10);
+
+        assertThat(productoService.liberarStock(id, 5)).isEqualTo(ResultadoReserva.STOCK_EXCEDIDO);
+        assertThat(motorStock.stock(id)).hasValue(Integer.MAX_VALUE - 1);
+
+        assertThatThrownBy(() -> productoService.ajustarStock(List.of(new AjusteStock(otro, -4), new AjusteStock(id, 5))))
+                .isInstanceOf(StockExcedidoException.class);
+        assertThat(motorStock.stock(otro)).hasValue(10);
+        assertThat(motorStock.stock(id)).hasValue(Integer.MAX_VALUE - 1);
+    }
+
+    @Test
+    void testLaVersionDelETagAvanzaAntesDeLaEscrituraPorDetras() {
+        Long id = producto("Consola Versionada", 10);
+        String antes = productoService.findVersionById(id).get();
+        String catalogo = productoService.findVersionCatalogo();
+
+        productoService.reservarStock(id, 1);
+        assertThat(productoService.findVersionById(id).get()).isNotEqualTo(antes);
+        assertThat(productoService.findVersionCatalogo()).isNotEqualTo(catalogo);
+    }
+
+    @Test
+    void testOtraInstanciaConLaTitularidadVigenteImpideArrancar() throws Exception {
+        motorStock.cerrar();
+        transactionTemplate.executeWithoutResult(estado -> titularRepository.save(new TitularStockMemoria(
+                TitularStockMemoria.UNICO, "otro-host:/diario-stock", System.currentTimeMillis() + 60_000)));
+
+        assertThatThrownBy(motorStock::iniciar)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("otro-host");
+
+        // vencida, la toma la que arranca
+        transactionTemplate.executeWithoutResult(estado -> titularRepository.save(new TitularStockMemoria(
+                TitularStockMemoria.UNICO, "otro-host:/diario-stock", 0)));
+        motorStock.iniciar();
+        assertThat(titularRepository.findById(TitularStockMemoria.UNICO).get().getTitular()).isNotEqualTo("otro-host:/diario-stock");
+    }
+
+    @Test
+    void testActualizarFijaElStockEnMemoria() {
+        Long id = producto("Consola Actualizada", 10);
+        productoService.reservarStock(id, 4);
+
+        productoService.update(id, new Producto(null, true, "Consola Actualizada", 30000L, 40, "Sony"));
+        assertThat(productoService.findById(id).get().getStock()).isEqualTo(40);
+
+        motorStock.escribirPendientes();
+        assertThat(productoRepository.findStockById(id)).contains(40);
+    }
+
+    @Test
+    void testFijarNoCambiaLaMemoriaSiLaTransaccionSeRevierte() {
+        Long id = producto("Consola Revertida", 10);
+        productoService.reservarStock(id, 1);
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            motorStock.fijarAlConfirmar(Map.of(id, 99));
+            estado.setRollbackOnly();
+        });
+        assertThat(motorStock.stock(id)).hasValue(9);
+
+        transactionTemplate.executeWithoutResult(estado -> motorStock.fijarAlConfirmar(Map.of(id, 99)));
+        assertThat(motorStock.stock(id)).hasValue(99);
+    }
+
+    private Long producto(String nombre, int stock) {
+        return productoService.insertIfAbsent(new Producto(null, true, nombre, 30000L, stock, "Sony")).get().getId();
+    }
+}
@@ -0,0 +1,52 @@
+package com.inventario.inventario.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class RuedaVencimientosTest {
+
+    // 8 ranuras de 100 ms: una vuelta dura 800 ms
+    private final RuedaVencimientos<String> rueda = new RuedaVencimientos<>(8, 100, 0);
+
+    @Test
+    void testNadaVenceAntesDeSuHora() {
+        rueda.agregar("a", 250);
+        rueda.agregar("b", 300);
+
+        assertThat(rueda.avanzar(200)).isEmpty();
+        assertThat(rueda.avanzar(299)).isEmpty();
+        assertThat(rueda.avanzar(300)).containsExactlyInAnyOrder("a", "b");
+        assertThat(rueda.pendientes()).isZero();
+    }
+
+    @Test
+    void testVencimientoAMasDeUnaVuelta() {
+        rueda.agregar("cerca", 150);
+        // misma ranura que 'cerca', dos vueltas despues
+        rueda.agregar("lejos", 1750);
+
+        assertThat(rueda.avanzar(200)).containsExactly("cerca");
+        assertThat(rueda.avanzar(1000)).isEmpty();
+        assertThat(rueda.avanzar(1800)).containsExactly("lejos");
+    }
+
+    @Test
+    void testPausaLargaLiberaTodoLoVencido() {
+        for (int i = 0; i < 100; i++) {
+            rueda.agregar("r" + i, i * 37L);
+        }
+        rueda.agregar("futuro", 20_000);
+
+        assertThat(rueda.avanzar(10_000)).hasSize(100);
+        assertThat(rueda.pendientes()).isEqualTo(1);
+    }
+
+    @Test
+    void testLoYaVencidoQuedaParaElProximoTic() {
+        rueda.avanzar(1000);
+        rueda.agregar("atrasado", 500);
+
+        assertThat(rueda.avanzar(1100)).containsExactly("atrasado");
+    }
+}